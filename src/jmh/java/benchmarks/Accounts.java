@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import bank.db.AccountStore;
+import bank.db.DBHandler;
+import bank.db.InMemoryAccountStore;
+import bank.transactions.utils.AccountType;
+
+/**
+ * Builds the stores the benchmarks run against: one client per card, each
+ * with a chequing and a savings account holding enough to never run dry
+ * during a run.
+ */
+final class Accounts {
+	static final int USERS = 64;
+	static final long BALANCE = 100_000_000_000L;
+	static final char[] PIN = "1234".toCharArray();
+
+	private Accounts() {
+	}
+
+	static String card(int user) {
+		return String.format("4%015d", user);
+	}
+
+	static String user(int user) {
+		return "user" + user;
+	}
+
+	/**
+	 * @param kind memory, or sqlite for a database in a fresh temporary file
+	 */
+	static AccountStore create(String kind) throws IOException, SQLException {
+		if ("memory".equals(kind)) {
+			InMemoryAccountStore store = new InMemoryAccountStore();
+			for (int i = 0; i < USERS; i++) {
+				store.addClient(user(i), i % 2 == 0);
+				store.addCard(card(i), user(i), PIN.clone());
+				store.addAccount(user(i), AccountType.Chequing, BALANCE);
+				store.addAccount(user(i), AccountType.Savings, BALANCE);
+			}
+			return store;
+		}
+
+		Path file = Files.createTempFile("bank-benchmark", ".db");
+		file.toFile().deleteOnExit();
+		String url = "jdbc:sqlite:" + file;
+		// Creates the tables
+		new DBHandler(url, 1).closeConnection();
+		try (Connection conn = DriverManager.getConnection(url)) {
+			conn.setAutoCommit(false);
+			try (PreparedStatement clients = conn.prepareStatement("INSERT INTO clients VALUES (?, ?, ?, ?);");
+					PreparedStatement cards = conn.prepareStatement("INSERT INTO cards VALUES (?, ?, ?);");
+					PreparedStatement accounts = conn.prepareStatement("INSERT INTO accounts VALUES (?, ?, ?);")) {
+				for (int i = 0; i < USERS; i++) {
+					clients.setString(1, user(i));
+					clients.setString(2, "First");
+					clients.setString(3, "Last");
+					clients.setInt(4, i % 2 == 0 ? 1 : 0);
+					clients.executeUpdate();
+					cards.setString(1, card(i));
+					cards.setString(2, user(i));
+					cards.setString(3, new String(PIN));
+					cards.executeUpdate();
+					for (AccountType type : new AccountType[] { AccountType.Chequing, AccountType.Savings }) {
+						accounts.setString(1, user(i));
+						accounts.setInt(2, type.ordinal());
+						accounts.setLong(3, BALANCE);
+						accounts.executeUpdate();
+					}
+				}
+			}
+			conn.commit();
+		}
+		return new DBHandler(url, 4);
+	}
+}
@@ -0,0 +1,210 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import bank.BankFacade;
+import bank.BankHandler;
+import bank.db.AccountStore;
+import bank.transactions.BankDeposit;
+import bank.transactions.BankTransfer;
+import bank.transactions.BankWithdrawal;
+import bank.transactions.utils.AccountType;
+import bank.transactions.utils.TransactionCodec;
+import bank.transactions.utils.TransactionData;
+import bank.transactions.utils.TransactionJson;
+import bank.transactions.utils.TransactionType;
+import bank.utils.FeesCalculator;
+
+/**
+ * A deposit through {@link BankHandler#performTransaction}, from request body
+ * to response body, without the HTTP server around it. The store is in
+ * memory so decoding and encoding dominate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BankHandlerBenchmark {
+	@Param({ "json", "binary" })
+	public String format;
+
+	private BankHandler handler;
+	private String contentType;
+	private byte[][] requests;
+	private final AtomicInteger clients = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		AccountStore accountStore = Accounts.create("memory");
+		FeesCalculator feesCalculator = new FeesCalculator();
+		handler = new BankHandler(new BankFacade(accountStore, new BankWithdrawal(feesCalculator, accountStore),
+				new BankDeposit(feesCalculator, accountStore), new BankTransfer(feesCalculator, accountStore)));
+
+		requests = new byte[Accounts.USERS][];
+		for (int i = 0; i < Accounts.USERS; i++) {
+			TransactionData data = new TransactionData(Accounts.card(i), Accounts.PIN, TransactionType.Deposit,
+					new AccountType[] { AccountType.Chequing }, 2000);
+			if ("json".equals(format)) {
+				requests[i] = TransactionJson.gson().toJson(data).getBytes(StandardCharsets.UTF_8);
+			} else {
+				ByteBuffer buffer = ByteBuffer.allocate(256);
+				TransactionCodec.writeTransaction(buffer, data);
+				requests[i] = Arrays.copyOf(buffer.array(), buffer.position());
+			}
+		}
+		contentType = "json".equals(format) ? "application/json" : TransactionCodec.CONTENT_TYPE;
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+		byte[] request;
+		Exchange exchange;
+
+		@Setup(Level.Trial)
+		public void setUp(BankHandlerBenchmark benchmark) {
+			request = benchmark.requests[benchmark.clients.getAndIncrement() % Accounts.USERS];
+			exchange = new Exchange(benchmark.contentType);
+		}
+	}
+
+	@Benchmark
+	public int performTransaction(Client client) {
+		client.exchange.reset(client.request);
+		handler.performTransaction(client.exchange);
+		return client.exchange.response.size();
+	}
+
+	/**
+	 * Exchange over in-memory streams, reused from one request to the next.
+	 */
+	static class Exchange extends HttpExchange {
+		private final Headers requestHeaders = new Headers();
+		private final Headers responseHeaders = new Headers();
+		private final ByteArrayOutputStream response = new ByteArrayOutputStream(256);
+		private InputStream request;
+		private int responseCode;
+
+		Exchange(String contentType) {
+			requestHeaders.set("Content-Type", contentType);
+		}
+
+		void reset(byte[] body) {
+			request = new ByteArrayInputStream(body);
+			response.reset();
+			responseHeaders.clear();
+			responseCode = -1;
+		}
+
+		@Override
+		public Headers getRequestHeaders() {
+			return requestHeaders;
+		}
+
+		@Override
+		public Headers getResponseHeaders() {
+			return responseHeaders;
+		}
+
+		@Override
+		public URI getRequestURI() {
+			return URI.create("/performTransaction");
+		}
+
+		@Override
+		public String getRequestMethod() {
+			return "POST";
+		}
+
+		@Override
+		public HttpContext getHttpContext() {
+			return null;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public InputStream getRequestBody() {
+			return request;
+		}
+
+		@Override
+		public OutputStream getResponseBody() {
+			return response;
+		}
+
+		@Override
+		public void sendResponseHeaders(int rCode, long responseLength) {
+			responseCode = rCode;
+		}
+
+		@Override
+		public InetSocketAddress getRemoteAddress() {
+			return null;
+		}
+
+		@Override
+		public int getResponseCode() {
+			return responseCode;
+		}
+
+		@Override
+		public InetSocketAddress getLocalAddress() {
+			return null;
+		}
+
+		@Override
+		public String getProtocol() {
+			return "HTTP/1.1";
+		}
+
+		@Override
+		public Object getAttribute(String name) {
+			return null;
+		}
+
+		@Override
+		public void setAttribute(String name, Object value) {
+		}
+
+		@Override
+		public void setStreams(InputStream i, OutputStream o) {
+		}
+
+		@Override
+		public HttpPrincipal getPrincipal() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Takes the usual JMH command line, runs the
+ * selected benchmarks once per thread count in the jmh.threads system
+ * property (1,4 by default) and always profiles allocations.
+ *
+ * <pre>
+ * java -Djmh.threads=1,8 -jar target/benchmarks.jar Transaction -p store=memory
+ * </pre>
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args) throws IOException, RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+				|| commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		for (String threads : System.getProperty("jmh.threads", "1,4").split(",")) {
+			Options options = new OptionsBuilder()
+					.parent(commandLine)
+					.threads(Integer.parseInt(threads.trim()))
+					.addProfiler(GCProfiler.class)
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
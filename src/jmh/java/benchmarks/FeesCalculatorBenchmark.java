@@ -0,0 +1,79 @@
+package benchmarks;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bank.utils.FeesCalculator;
+
+/**
+ * Fee and interest calculation over inputs spread across every threshold, so
+ * the branch predictor cannot learn a single path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FeesCalculatorBenchmark {
+	private static final int INPUTS = 1024;
+
+	private FeesCalculator feesCalculator;
+	private long[] amounts;
+	private long[] balances;
+	private boolean[] students;
+	private int[] days;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		feesCalculator = new FeesCalculator();
+		Random random = new Random(42);
+		amounts = new long[INPUTS];
+		balances = new long[INPUTS];
+		students = new boolean[INPUTS];
+		days = new int[INPUTS];
+		for (int i = 0; i < INPUTS; i++) {
+			amounts[i] = random.nextInt(1000) * 100L;
+			balances[i] = random.nextInt(20000) * 100L;
+			students[i] = random.nextBoolean();
+			days[i] = Calendar.SUNDAY + random.nextInt(7);
+		}
+	}
+
+	private int nextIndex() {
+		next = (next + 1) & (INPUTS - 1);
+		return next;
+	}
+
+	@Benchmark
+	public long withdrawalFee() {
+		int i = nextIndex();
+		return feesCalculator.calculateWithdrawalFeeCents(amounts[i], balances[i], students[i], days[i]);
+	}
+
+	@Benchmark
+	public long depositInterest() {
+		int i = nextIndex();
+		return feesCalculator.calculateDepositInterestCents(amounts[i], balances[i], students[i]);
+	}
+
+	@Benchmark
+	public long transferFee() {
+		int i = nextIndex();
+		return feesCalculator.calculateTransferFeeCents(amounts[i], balances[i], balances[(i + 1) & (INPUTS - 1)],
+				students[i]);
+	}
+}
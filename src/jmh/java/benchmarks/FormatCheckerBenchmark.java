@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import atm.exceptions.InvalidCardNumberException;
+import atm.utils.FormatChecker;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatCheckerBenchmark {
+	@Param({ "4000000000000002", "4000-0000 0000-0002", "4000000000000000", "1234" })
+	public String card;
+
+	private final FormatChecker formatChecker = new FormatChecker();
+
+	@Benchmark
+	public boolean checkCardFormat() {
+		try {
+			formatChecker.checkCardFormat(card);
+			return true;
+		} catch (InvalidCardNumberException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bank.BankFacade;
+import bank.db.AccountStore;
+import bank.transactions.BankDeposit;
+import bank.transactions.BankTransaction;
+import bank.transactions.BankTransfer;
+import bank.transactions.BankWithdrawal;
+import bank.transactions.utils.AccountType;
+import bank.transactions.utils.TransactionData;
+import bank.transactions.utils.TransactionResult;
+import bank.transactions.utils.TransactionType;
+import bank.utils.FeesCalculator;
+
+/**
+ * Each transaction type performed against the in-memory store and SQLite.
+ * Every benchmark thread works on its own client, so the numbers show the
+ * cost of a transaction rather than contention on one account; the facade
+ * benchmark adds credential checks and, with -Dbank.shards, shard routing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionBenchmark {
+	private static final AccountType[] CHEQUING = { AccountType.Chequing };
+	private static final AccountType[] CHEQUING_TO_SAVINGS = { AccountType.Chequing, AccountType.Savings };
+
+	@Param({ "memory", "sqlite" })
+	public String store;
+
+	private AccountStore accountStore;
+	private BankTransaction withdrawal;
+	private BankTransaction deposit;
+	private BankTransaction transfer;
+	private BankFacade facade;
+	private final AtomicInteger clients = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		accountStore = Accounts.create(store);
+		FeesCalculator feesCalculator = new FeesCalculator();
+		withdrawal = new BankWithdrawal(feesCalculator, accountStore);
+		deposit = new BankDeposit(feesCalculator, accountStore);
+		transfer = new BankTransfer(feesCalculator, accountStore);
+		facade = new BankFacade(accountStore, withdrawal, deposit, transfer);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		accountStore.closeConnection();
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+		TransactionData withdrawal;
+		TransactionData deposit;
+		TransactionData transfer;
+
+		@Setup(Level.Trial)
+		public void setUp(TransactionBenchmark benchmark) {
+			String card = Accounts.card(benchmark.clients.getAndIncrement() % Accounts.USERS);
+			withdrawal = new TransactionData(card, Accounts.PIN, TransactionType.Withdrawal, CHEQUING, 2000);
+			deposit = new TransactionData(card, Accounts.PIN, TransactionType.Deposit, CHEQUING, 2000);
+			transfer = new TransactionData(card, Accounts.PIN, TransactionType.Transfer, CHEQUING_TO_SAVINGS, 2000);
+		}
+	}
+
+	@Benchmark
+	public TransactionResult withdrawal(Client client) {
+		return withdrawal.perform(client.withdrawal);
+	}
+
+	@Benchmark
+	public TransactionResult deposit(Client client) {
+		return deposit.perform(client.deposit);
+	}
+
+	@Benchmark
+	public TransactionResult transfer(Client client) {
+		return transfer.perform(client.transfer);
+	}
+
+	@Benchmark
+	public TransactionResult facadeDeposit(Client client) {
+		return facade.performTransaction(client.deposit);
+	}
+}
@@ -1,16 +1,22 @@
+import java.io.IOException;
+
 import javax.swing.JFrame;
 
 import atm.ATM;
+import atm.dispatcher.BinaryDispatcher;
 import atm.dispatcher.JavaDispatcher;
 import atm.dispatcher.MessageDispatcher;
 import atm.dispatcher.RESTDispatcher;
+import atm.dispatcher.SocketTransport;
 import atm.ui.MainUI;
 import atm.ui.panels.MainPanel;
 import atm.utils.FormatChecker;
 import atm.utils.CredentialsCheck;
 import bank.BankFacade;
 import bank.BankServer;
-import bank.db.DBHandler;
+import bank.NioBankServer;
+import bank.db.AccountStore;
+import bank.logging.Logger;
 import bank.transactions.BankDeposit;
 import bank.transactions.BankTransaction;
 import bank.transactions.BankTransfer;
@@ -18,24 +24,40 @@ import bank.transactions.BankWithdrawal;
 import bank.utils.FeesCalculator;
 
 public class Main {
+	private static final Logger LOG = Logger.get(Main.class);
+
 	public static void start(boolean usesAPI) {
-		FeesCalculator feesCalculator = new FeesCalculator();
-		DBHandler dbHandler = new DBHandler();
-		BankTransaction withdrawal = new BankWithdrawal(feesCalculator, dbHandler);
-		BankTransaction deposit = new BankDeposit(feesCalculator, dbHandler);
-		BankTransaction transfer = new BankTransfer(feesCalculator, dbHandler);
-		BankFacade facade = new BankFacade(dbHandler, withdrawal, deposit, transfer);
+		FeesCalculator feesCalculator = FeesCalculator.fromSystemProperties();
+		AccountStore accountStore = AccountStore.fromSystemProperties();
+		BankTransaction withdrawal = new BankWithdrawal(feesCalculator, accountStore);
+		BankTransaction deposit = new BankDeposit(feesCalculator, accountStore);
+		BankTransaction transfer = new BankTransfer(feesCalculator, accountStore);
+		BankFacade facade = new BankFacade(accountStore, withdrawal, deposit, transfer);
 		
 		MessageDispatcher dispatcher;
 		if (usesAPI) {
-			dispatcher = new RESTDispatcher();
-			BankServer server = new BankServer(facade);
-			server.start();
+			String protocol = System.getProperty("atm.protocol");
+			if ("socket".equals(protocol)) {
+				dispatcher = new BinaryDispatcher(new SocketTransport());
+				NioBankServer server = NioBankServer.fromSystemProperties(facade);
+				try {
+					server.start();
+				} catch (IOException e) {
+					LOG.error("Could not start server", e);
+				}
+			} else {
+				if ("binary".equals(protocol))
+					dispatcher = new BinaryDispatcher();
+				else
+					dispatcher = new RESTDispatcher();
+				BankServer server = new BankServer(facade);
+				server.start();
+			}
 		} else {
 			dispatcher = new JavaDispatcher(facade);
 		}
 		
-		FormatChecker cardNumberChecker = new FormatChecker();
+		FormatChecker cardNumberChecker = FormatChecker.fromSystemProperties();
 		CredentialsCheck credentialsCheck = new CredentialsCheck(dispatcher);
 		ATM atm = new ATM(cardNumberChecker, credentialsCheck, dispatcher);
 		
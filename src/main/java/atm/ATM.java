@@ -1,16 +1,21 @@
 package atm;
 
+import java.util.concurrent.Executor;
+
+import javax.swing.SwingUtilities;
+
 import atm.dispatcher.MessageDispatcher;
 import atm.exceptions.InvalidAmountException;
 import atm.exceptions.InvalidCardNumberException;
 import atm.exceptions.InvalidCredentialsException;
 import atm.exceptions.InvalidPinFormatException;
 import atm.session.Session;
+import atm.session.SessionView;
 import atm.session.transactions.ATMTransactionFactory;
-import atm.ui.panels.MainPanel;
 import atm.utils.CredentialsCheck;
 import atm.utils.FormatChecker;
 import bank.transactions.utils.AccountType;
+import bank.transactions.utils.TransactionResult;
 import bank.transactions.utils.TransactionType;
 
 public class ATM {
@@ -18,7 +23,8 @@ public class ATM {
 	private FormatChecker formatCheck;
 	private CredentialsCheck credentialsCheck;
 	private MessageDispatcher dispatcher;
-	private MainPanel mainPanel;
+	private SessionView mainPanel;
+	private Executor uiExecutor;
 
 	public ATM(FormatChecker formatCheck, CredentialsCheck credentialsCheck, MessageDispatcher dispatcher) {
 		super();
@@ -27,13 +33,22 @@ public class ATM {
 		this.dispatcher = dispatcher;
 	}
 
-	public void setMainPanel(MainPanel mainPanel) {
+	public void setMainPanel(SessionView mainPanel) {
+		setMainPanel(mainPanel, SwingUtilities::invokeLater);
+	}
+
+	/**
+	 * Shows sessions on the given view; the uiExecutor runs the completion of
+	 * their bank calls.
+	 */
+	public void setMainPanel(SessionView mainPanel, Executor uiExecutor) {
 		this.mainPanel = mainPanel;
+		this.uiExecutor = uiExecutor;
 	}
 
 
 	public void createSession() {
-		session = new Session(mainPanel, dispatcher);
+		session = new Session(mainPanel, dispatcher, uiExecutor);
 		session.insertCard();
 	}
 	
@@ -69,11 +84,22 @@ public class ATM {
 		
 	}
 
+	/**
+	 * Returns the result of the session's last transaction, or null while it
+	 * is still being processed.
+	 */
+	public TransactionResult getResult() {
+		return session == null ? null : session.getResult();
+	}
+
 	public void anotherTransaction() {
 		session.newTransaction();
 	}
 
 	public void endSession() {
+		// The session cannot be left while the bank is still processing its transaction
+		if (session != null && session.isProcessing())
+			return;
 		session = null;
 		mainPanel.changeLayout("InsertCard");
 		
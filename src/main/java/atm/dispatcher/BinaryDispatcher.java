@@ -0,0 +1,134 @@
+package atm.dispatcher;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import atm.exceptions.BankUnavailableException;
+import atm.session.transactions.ATMTransaction;
+import bank.BankFacade;
+import bank.transactions.utils.AccountType;
+import bank.transactions.utils.TransactionCodec;
+import bank.transactions.utils.TransactionData;
+import bank.transactions.utils.TransactionResult;
+import bank.transactions.utils.TransactionType;
+
+/**
+ * Talks to the bank like {@link RESTDispatcher}, but with the compact binary
+ * encoding of {@link TransactionCodec} instead of JSON. The frames travel
+ * over HTTP or, with a {@link SocketTransport}, over raw TCP connections.
+ */
+public class BinaryDispatcher implements MessageDispatcher {
+	private static final String BANK_UNAVAILABLE = "Bank is unavailable.";
+	private static final int BUFFER_BYTES = 1024;
+
+	private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_BYTES));
+	private Map<String, String> sessionTokens = new ConcurrentHashMap<>();
+	private FrameTransport transport;
+	private Executor executor;
+
+	public BinaryDispatcher() {
+		this(new HttpTransport(), DispatcherThreads.newExecutor("binary-dispatcher"));
+	}
+
+	public BinaryDispatcher(FrameTransport transport) {
+		this(transport, DispatcherThreads.newExecutor("binary-dispatcher"));
+	}
+
+	public BinaryDispatcher(HttpTransport transport, Executor executor) {
+		this(new HttpFrameTransport(transport), executor);
+	}
+
+	public BinaryDispatcher(FrameTransport transport, Executor executor) {
+		super();
+		this.transport = transport;
+		this.executor = executor;
+	}
+
+	@Override
+	public boolean checkCredentials(String cardNumber, char[] pin) {
+		ByteBuffer out = buffers.get();
+		out.clear();
+		TransactionCodec.writeCredentials(out, cardNumber, pin);
+
+		TransactionCodec.Authentication authentication;
+		try {
+			ByteBuffer in = sendMessage("checkCredentials", out, TransactionCodec.CREDENTIALS_RESPONSE);
+			authentication = TransactionCodec.readAuthentication(in);
+		} catch (BankUnavailableException | IllegalArgumentException e) {
+			return false;
+		}
+
+		if (authentication.isSuccessful() && authentication.getToken() != null)
+			sessionTokens.put(cardNumber, authentication.getToken());
+		else
+			sessionTokens.remove(cardNumber);
+		return authentication.isSuccessful();
+	}
+
+	@Override
+	public TransactionResult performTransaction(String cardNumber, char[] pin, ATMTransaction transaction) {
+		TransactionType transactionType = transaction.getTransactionType();
+		long amount = transaction.getAmountCents();
+
+		AccountType[] accounts;
+		if (transactionType == TransactionType.Transfer) {
+			accounts = new AccountType[] { transaction.getFromAccount(), transaction.getToAccount() };
+		} else if (transactionType == TransactionType.Deposit) {
+			accounts = new AccountType[] { transaction.getToAccount() };
+		} else {
+			accounts = new AccountType[] { transaction.getFromAccount() };
+		}
+
+		String token = sessionTokens.get(cardNumber);
+		if (token != null) {
+			TransactionResult result = sendTransaction(
+					new TransactionData(cardNumber, null, token, transactionType, accounts, amount));
+			if (!BankFacade.SESSION_EXPIRED.equals(result.getReason()))
+				return result;
+			sessionTokens.remove(cardNumber, token);
+		}
+
+		return sendTransaction(new TransactionData(cardNumber, pin, transactionType, accounts, amount));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> checkCredentialsAsync(String cardNumber, char[] pin) {
+		return CompletableFuture.supplyAsync(() -> checkCredentials(cardNumber, pin), executor);
+	}
+
+	@Override
+	public CompletableFuture<TransactionResult> performTransactionAsync(String cardNumber, char[] pin,
+			ATMTransaction transaction) {
+		return CompletableFuture.supplyAsync(() -> performTransaction(cardNumber, pin, transaction), executor);
+	}
+
+	private TransactionResult sendTransaction(TransactionData data) {
+		ByteBuffer out = buffers.get();
+		out.clear();
+		TransactionCodec.writeTransaction(out, data);
+
+		try {
+			ByteBuffer in = sendMessage("performTransaction", out, TransactionCodec.TRANSACTION_RESPONSE);
+			return TransactionCodec.readResult(in);
+		} catch (BankUnavailableException | IllegalArgumentException e) {
+			return new TransactionResult(false, BANK_UNAVAILABLE, 0, null);
+		}
+	}
+
+	private ByteBuffer sendMessage(String endpoint, ByteBuffer out, byte expectedKind)
+			throws BankUnavailableException {
+		out.flip();
+		ByteBuffer in = transport.exchange(endpoint, out);
+		try {
+			if (TransactionCodec.readHeader(in) == expectedKind)
+				return in;
+		} catch (BufferUnderflowException e) {
+			// Reported below
+		}
+		throw new IllegalArgumentException("Unexpected response from " + endpoint);
+	}
+}
@@ -0,0 +1,57 @@
+package atm.dispatcher;
+
+/**
+ * Stops calls to the bank after too many consecutive failures. While open,
+ * requests fail straight away; once the open period is over a single trial
+ * request is let through, and its outcome decides whether the breaker closes
+ * again or stays open for another period.
+ */
+public class CircuitBreaker {
+	private enum State {
+		Closed, Open, HalfOpen
+	}
+
+	private final int failureThreshold;
+	private final long openMillis;
+	private State state;
+	private int failures;
+	private long openedAt;
+
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+		this.state = State.Closed;
+	}
+
+	public synchronized boolean allowRequest() {
+		switch (state) {
+		case Closed:
+			return true;
+		case Open:
+			if (System.currentTimeMillis() - openedAt < openMillis)
+				return false;
+			state = State.HalfOpen;
+			return true;
+		default:
+			// A trial request is already in flight
+			return false;
+		}
+	}
+
+	public synchronized void recordSuccess() {
+		failures = 0;
+		state = State.Closed;
+	}
+
+	public synchronized void recordFailure() {
+		failures++;
+		if (state == State.HalfOpen || failures >= failureThreshold) {
+			state = State.Open;
+			openedAt = System.currentTimeMillis();
+		}
+	}
+
+	public synchronized boolean isOpen() {
+		return state != State.Closed;
+	}
+}
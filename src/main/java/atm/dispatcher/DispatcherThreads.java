@@ -0,0 +1,25 @@
+package atm.dispatcher;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Daemon thread pools the dispatchers run their asynchronous calls on. The
+ * pool size is shared by all sessions of an ATM host and set with the
+ * atm.dispatcher.threads system property.
+ */
+final class DispatcherThreads {
+	private DispatcherThreads() {
+	}
+
+	static ExecutorService newExecutor(String name) {
+		int threads = Integer.getInteger("atm.dispatcher.threads", 4);
+		AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
@@ -0,0 +1,17 @@
+package atm.dispatcher;
+
+import java.nio.ByteBuffer;
+
+import atm.exceptions.BankUnavailableException;
+
+/**
+ * Carries {@link bank.transactions.utils.TransactionCodec} frames to the bank
+ * and back.
+ */
+public interface FrameTransport {
+	/**
+	 * Sends the frame between the request's position and limit to the endpoint
+	 * and returns the response frame, positioned at its header.
+	 */
+	ByteBuffer exchange(String endpoint, ByteBuffer request) throws BankUnavailableException;
+}
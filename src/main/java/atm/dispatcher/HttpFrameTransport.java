@@ -0,0 +1,34 @@
+package atm.dispatcher;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import atm.exceptions.BankUnavailableException;
+import bank.logging.Logger;
+import bank.transactions.utils.TransactionCodec;
+
+/**
+ * Posts frames to the bank's HTTP endpoints.
+ */
+public class HttpFrameTransport implements FrameTransport {
+	private static final Logger LOG = Logger.get(HttpFrameTransport.class);
+
+	private HttpTransport transport;
+
+	public HttpFrameTransport(HttpTransport transport) {
+		super();
+		this.transport = transport;
+	}
+
+	@Override
+	public ByteBuffer exchange(String endpoint, ByteBuffer request) throws BankUnavailableException {
+		byte[] message = Arrays.copyOfRange(request.array(), request.arrayOffset() + request.position(),
+				request.arrayOffset() + request.limit());
+		HttpTransport.Response response = transport.post(endpoint, TransactionCodec.CONTENT_TYPE, message);
+		if (response.getCode() != 200) {
+			LOG.warn("Bank answered with an error", "endpoint", endpoint, "code", response.getCode());
+			throw new BankUnavailableException();
+		}
+		return ByteBuffer.wrap(response.getBody());
+	}
+}
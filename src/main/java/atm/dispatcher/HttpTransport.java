@@ -0,0 +1,223 @@
+package atm.dispatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import atm.exceptions.BankUnavailableException;
+import bank.logging.Logger;
+
+/**
+ * Sends requests to the bank over HTTP. Responses, including error
+ * responses, are always read to the end so that HttpURLConnection can keep
+ * the connection alive and reuse it. Requests the bank provably did not
+ * process are retried with exponential backoff and full jitter, and a
+ * {@link CircuitBreaker} makes callers fail fast while the bank is down.
+ */
+public class HttpTransport {
+	private static final Logger LOG = Logger.get(HttpTransport.class);
+	private static final String DEFAULT_BASE_URL = "http://localhost:9000/";
+
+	static {
+		// HttpURLConnection otherwise silently resends a POST whose response
+		// it did not get, which would apply a transaction twice
+		if (System.getProperty("sun.net.http.retryPost") == null)
+			System.setProperty("sun.net.http.retryPost", "false");
+	}
+
+	private final String baseUrl;
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+	private final int maxAttempts;
+	private final long baseBackoffMillis;
+	private final long maxBackoffMillis;
+	private final CircuitBreaker breaker;
+	private final Map<String, URL> urls;
+
+	public HttpTransport() {
+		this(DEFAULT_BASE_URL, 2000, 5000, 4, 50, 1000, new CircuitBreaker(5, 10000));
+	}
+
+	public HttpTransport(String baseUrl, int connectTimeoutMillis, int readTimeoutMillis, int maxAttempts,
+			long baseBackoffMillis, long maxBackoffMillis, CircuitBreaker breaker) {
+		this.baseUrl = baseUrl;
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+		this.maxAttempts = maxAttempts;
+		this.baseBackoffMillis = baseBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.breaker = breaker;
+		this.urls = new ConcurrentHashMap<>();
+	}
+
+	public static class Response {
+		private final int code;
+		private final byte[] body;
+		private final Map<String, List<String>> headers;
+
+		Response(int code, byte[] body, Map<String, List<String>> headers) {
+			this.code = code;
+			this.body = body;
+			this.headers = headers;
+		}
+
+		public int getCode() {
+			return code;
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+
+		public String getHeader(String name) {
+			for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+				if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty())
+					return header.getValue().get(0);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Thrown when the connection could not be opened, so the request never
+	 * reached the bank.
+	 */
+	private static class NotSentException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		NotSentException(IOException cause) {
+			super(cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * Posts the body to the endpoint and returns the first response that is
+	 * not a load-shedding one. Only requests the bank provably did not
+	 * process, connection failures and 503 or 429 responses, are retried, up
+	 * to maxAttempts times. A failure after the request was sent, such as a
+	 * read timeout, is not, since the bank may already have applied it.
+	 */
+	public Response post(String endpoint, String contentType, byte[] body) throws BankUnavailableException {
+		URL url = url(endpoint);
+		for (int attempt = 0; attempt < maxAttempts; attempt++) {
+			if (!breaker.allowRequest())
+				throw new BankUnavailableException();
+
+			long retryAfterMillis = 0;
+			try {
+				Response response = send(url, contentType, body);
+				if (!isRetryable(response.getCode())) {
+					if (response.getCode() >= 500)
+						breaker.recordFailure();
+					else
+						breaker.recordSuccess();
+					return response;
+				}
+				retryAfterMillis = retryAfterMillis(response);
+			} catch (NotSentException e) {
+				LOG.warn("Could not connect to the bank", "url", url, "reason", e.getMessage());
+			} catch (IOException e) {
+				LOG.warn("Request failed after it was sent", "url", url, "reason", e.getMessage());
+				breaker.recordFailure();
+				throw new BankUnavailableException();
+			}
+			breaker.recordFailure();
+
+			if (attempt + 1 < maxAttempts && !sleep(Math.max(retryAfterMillis, backoffMillis(attempt))))
+				break;
+		}
+		throw new BankUnavailableException();
+	}
+
+	public boolean isCircuitOpen() {
+		return breaker.isOpen();
+	}
+
+	private Response send(URL url, String contentType, byte[] body) throws IOException {
+		HttpURLConnection con = (HttpURLConnection) url.openConnection();
+		con.setConnectTimeout(connectTimeoutMillis);
+		con.setReadTimeout(readTimeoutMillis);
+		con.setRequestMethod("POST");
+		con.setRequestProperty("Content-Type", contentType);
+		con.setDoOutput(true);
+
+		try {
+			con.connect();
+		} catch (IOException e) {
+			throw new NotSentException(e);
+		}
+		try (OutputStream os = con.getOutputStream()) {
+			os.write(body);
+		}
+
+		int code = con.getResponseCode();
+		InputStream in = code < 400 ? con.getInputStream() : con.getErrorStream();
+		byte[] responseBody = in == null ? new byte[0] : readFully(in);
+		return new Response(code, responseBody, con.getHeaderFields());
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		try (InputStream is = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = is.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	private static boolean isRetryable(int code) {
+		// Requests shed by the bank's RequestExecutor before they ran
+		return code == 503 || code == 429;
+	}
+
+	private long retryAfterMillis(Response response) {
+		String retryAfter = response.getHeader("Retry-After");
+		if (retryAfter == null)
+			return 0;
+		try {
+			return Math.min(maxBackoffMillis, Long.parseLong(retryAfter.trim()) * 1000);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private long backoffMillis(int attempt) {
+		long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	private static boolean sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private URL url(String endpoint) throws BankUnavailableException {
+		URL url = urls.get(endpoint);
+		if (url == null) {
+			try {
+				url = new URL(baseUrl + endpoint);
+			} catch (MalformedURLException e) {
+				LOG.error("Invalid bank URL", e, "url", baseUrl + endpoint);
+				throw new BankUnavailableException();
+			}
+			urls.put(endpoint, url);
+		}
+		return url;
+	}
+}
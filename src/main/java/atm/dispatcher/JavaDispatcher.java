@@ -1,5 +1,10 @@
 package atm.dispatcher;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
 import atm.session.transactions.ATMTransaction;
 import atm.session.transactions.ATMWithdrawal;
 import bank.BankFacade;
@@ -13,14 +18,28 @@ import bank.transactions.utils.TransactionType;
 
 public class JavaDispatcher implements MessageDispatcher {
 	private BankFacade bankFacade;
+	private Map<String, String> sessionTokens;
+	private Executor executor;
 
 	public JavaDispatcher(BankFacade bankFacade) {
+		this(bankFacade, DispatcherThreads.newExecutor("java-dispatcher"));
+	}
+
+	public JavaDispatcher(BankFacade bankFacade, Executor executor) {
 		super();
 		this.bankFacade = bankFacade;
+		this.sessionTokens = new ConcurrentHashMap<>();
+		this.executor = executor;
 	}
 
 	public boolean checkCredentials(String cardNumber, char[] pin) {
-		return bankFacade.checkCredentials(cardNumber, pin);
+		String token = bankFacade.authenticate(cardNumber, pin);
+		if (token == null) {
+			sessionTokens.remove(cardNumber);
+			return false;
+		}
+		sessionTokens.put(cardNumber, token);
+		return true;
 	}
 
 	public TransactionResult performTransaction(String cardNumber, char[] pin, ATMTransaction transaction) {
@@ -46,11 +65,31 @@ public class JavaDispatcher implements MessageDispatcher {
 			accounts = null;
 		}
 		
-		double amount = transaction.getAmount();
+		long amount = transaction.getAmountCents();
+		String token = sessionTokens.get(cardNumber);
+		if (token != null) {
+			result = bankFacade.performTransaction(
+					new TransactionData(cardNumber, null, token, transactionType, accounts, amount));
+			if (!BankFacade.SESSION_EXPIRED.equals(result.getReason()))
+				return result;
+			sessionTokens.remove(cardNumber, token);
+		}
+		
 		TransactionData bankTransaction = new TransactionData(cardNumber, pin, transactionType, accounts, amount);
 		result = bankFacade.performTransaction(bankTransaction);
 		
 		return result;
 	}
 
+	@Override
+	public CompletableFuture<Boolean> checkCredentialsAsync(String cardNumber, char[] pin) {
+		return CompletableFuture.supplyAsync(() -> checkCredentials(cardNumber, pin), executor);
+	}
+
+	@Override
+	public CompletableFuture<TransactionResult> performTransactionAsync(String cardNumber, char[] pin,
+			ATMTransaction transaction) {
+		return CompletableFuture.supplyAsync(() -> performTransaction(cardNumber, pin, transaction), executor);
+	}
+
 }
@@ -1,9 +1,24 @@
 package atm.dispatcher;
 
+import java.util.concurrent.CompletableFuture;
+
 import atm.session.transactions.ATMTransaction;
 import bank.transactions.utils.TransactionResult;
 
 public interface MessageDispatcher {
 	public boolean checkCredentials(String cardNumber, char[] pin);
 	public TransactionResult performTransaction(String cardNumber, char[] pin, ATMTransaction transaction);
+
+	/**
+	 * Asynchronous variants. Dispatchers that talk to the bank override them
+	 * to run off the calling thread; the defaults complete synchronously.
+	 */
+	public default CompletableFuture<Boolean> checkCredentialsAsync(String cardNumber, char[] pin) {
+		return CompletableFuture.completedFuture(checkCredentials(cardNumber, pin));
+	}
+
+	public default CompletableFuture<TransactionResult> performTransactionAsync(String cardNumber, char[] pin,
+			ATMTransaction transaction) {
+		return CompletableFuture.completedFuture(performTransaction(cardNumber, pin, transaction));
+	}
 }
@@ -1,27 +1,48 @@
 package atm.dispatcher;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.lang.reflect.Type;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 
+import atm.exceptions.BankUnavailableException;
 import atm.session.transactions.ATMTransaction;
+import bank.BankFacade;
+import bank.BankHandler;
+import bank.logging.Logger;
 import bank.transactions.utils.AccountType;
 import bank.transactions.utils.TransactionData;
+import bank.transactions.utils.TransactionJson;
 import bank.transactions.utils.TransactionResult;
 import bank.transactions.utils.TransactionType;
 
 public class RESTDispatcher implements MessageDispatcher {
-	private Gson gson = new Gson();
+	private static final Logger LOG = Logger.get(RESTDispatcher.class);
+	private static final String SESSION_TOKEN_HEADER = BankHandler.SESSION_TOKEN_HEADER;
+	private static final String CONTENT_TYPE = "application/json; utf-8";
+	private static final String BANK_UNAVAILABLE = "Bank is unavailable.";
+	
+	private Gson gson = TransactionJson.gson();
+	private Map<String, String> sessionTokens = new ConcurrentHashMap<>();
+	private HttpTransport transport;
+	private Executor executor;
+	
+	public RESTDispatcher() {
+		this(new HttpTransport(), DispatcherThreads.newExecutor("rest-dispatcher"));
+	}
+	
+	public RESTDispatcher(HttpTransport transport, Executor executor) {
+		super();
+		this.transport = transport;
+		this.executor = executor;
+	}
 
 	@Override
 	public boolean checkCredentials(String cardNumber, char[] pin) {
@@ -29,16 +50,26 @@ public class RESTDispatcher implements MessageDispatcher {
 		credentials.put("cardNumber", cardNumber);
 		credentials.put("pin", String.valueOf(pin));
 		String message = gson.toJson(credentials);
-		String response = sendMessage("checkCredentials", message);
+		Response response;
+		try {
+			response = sendMessage("checkCredentials", message);
+		} catch (BankUnavailableException e) {
+			return false;
+		}
 		
-		return Boolean.parseBoolean(response);
+		boolean result = Boolean.parseBoolean(response.body);
+		if (result && response.sessionToken != null)
+			sessionTokens.put(cardNumber, response.sessionToken);
+		else
+			sessionTokens.remove(cardNumber);
+		return result;
 		
 	}
 
 	@Override
 	public TransactionResult performTransaction(String cardNumber, char[] pin, ATMTransaction transaction) {
 		TransactionType transactionType = transaction.getTransactionType();
-		double amount = transaction.getAmount();
+		long amount = transaction.getAmountCents();
 		
 		AccountType[] accounts = new AccountType[2];
 		if (transactionType == TransactionType.Withdrawal) {
@@ -50,55 +81,71 @@ public class RESTDispatcher implements MessageDispatcher {
 			accounts[1] = transaction.getToAccount();
 		}
 		
-		TransactionData data = new TransactionData(cardNumber, pin, transactionType, accounts, amount);
+		String token = sessionTokens.get(cardNumber);
+		if (token != null) {
+			TransactionResult result = sendTransaction(
+					new TransactionData(cardNumber, null, token, transactionType, accounts, amount));
+			if (!BankFacade.SESSION_EXPIRED.equals(result.getReason()))
+				return result;
+			sessionTokens.remove(cardNumber, token);
+		}
+		
+		return sendTransaction(new TransactionData(cardNumber, pin, transactionType, accounts, amount));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> checkCredentialsAsync(String cardNumber, char[] pin) {
+		return CompletableFuture.supplyAsync(() -> checkCredentials(cardNumber, pin), executor);
+	}
+
+	@Override
+	public CompletableFuture<TransactionResult> performTransactionAsync(String cardNumber, char[] pin,
+			ATMTransaction transaction) {
+		return CompletableFuture.supplyAsync(() -> performTransaction(cardNumber, pin, transaction), executor);
+	}
+	
+	private TransactionResult sendTransaction(TransactionData data) {
 		String message = gson.toJson(data);
-		String response = sendMessage("performTransaction", message);	
+		Response response;
+		try {
+			response = sendMessage("performTransaction", message);
+		} catch (BankUnavailableException e) {
+			return new TransactionResult(false, BANK_UNAVAILABLE, 0, null);
+		}
 		
 		Type type = new TypeToken<TransactionResult>() {}.getType();
-		TransactionResult result = gson.fromJson(response, type);
+		TransactionResult result;
+		try {
+			result = gson.fromJson(response.body, type);
+		} catch (JsonSyntaxException e) {
+			result = null;
+		}
+		if (result == null)
+			return new TransactionResult(false, BANK_UNAVAILABLE, 0, null);
 		return result;
 	}
 	
-	private String sendMessage(String endpoint, String message) {
-		URL url;
+	private Response sendMessage(String endpoint, String message) throws BankUnavailableException {
+		LOG.debug("Sending message", "endpoint", endpoint, "bytes", message.length());
+		HttpTransport.Response response = transport.post(endpoint, CONTENT_TYPE,
+				message.getBytes(StandardCharsets.UTF_8));
+		if (response.getCode() != 200) {
+			LOG.warn("Bank answered with an error", "endpoint", endpoint, "code", response.getCode());
+			throw new BankUnavailableException();
+		}
 		
-		//TODO How many retries??
-		while (true) {
-			try {
-				System.out.println("Sending message => " + message);
-				url = new URL("http://localhost:9000/" + endpoint);
-
-				HttpURLConnection con = (HttpURLConnection) url.openConnection();
-				con.setRequestMethod("POST");
-
-				con.setRequestProperty("Content-Type", "application/json; utf-8");
-				con.setDoOutput(true);
-
-				try (OutputStream os = con.getOutputStream()) {
-					byte[] input = message.getBytes("utf-8");
-					os.write(input, 0, input.length);
-				}
-
-				int responseCode = con.getResponseCode();
-				
-				if (responseCode == 200) {
-					try(BufferedReader br = new BufferedReader(new InputStreamReader(con.getInputStream(), "utf-8"))) {
-						StringBuilder response = new StringBuilder();
-						String responseLine = null;
-						while ((responseLine = br.readLine()) != null) {
-							response.append(responseLine.trim());
-						}
-						System.out.println(response.toString());
-						return response.toString();
-					}
-				}
-			} catch (MalformedURLException e) {
-				System.out.println(e.getMessage());
-				e.printStackTrace();
-			} catch (IOException e) {
-				System.out.println(e.getMessage());
-				e.printStackTrace();
-			}
+		String body = new String(response.getBody(), StandardCharsets.UTF_8);
+		LOG.debug("Bank answered", "endpoint", endpoint, "bytes", body.length());
+		return new Response(body, response.getHeader(SESSION_TOKEN_HEADER));
+	}
+	
+	private static class Response {
+		final String body;
+		final String sessionToken;
+		
+		Response(String body, String sessionToken) {
+			this.body = body;
+			this.sessionToken = sessionToken;
 		}
 	}
 
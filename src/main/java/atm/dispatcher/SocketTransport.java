@@ -0,0 +1,162 @@
+package atm.dispatcher;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import atm.exceptions.BankUnavailableException;
+import bank.logging.Logger;
+
+/**
+ * Exchanges frames with a {@link bank.NioBankServer} over persistent TCP
+ * connections. Idle connections are kept in a pool and reused, so a busy
+ * ATM pays for the TCP handshake only once per concurrent request. The
+ * endpoint is implied by the frame kind and is not sent.
+ */
+public class SocketTransport implements FrameTransport {
+	private static final Logger LOG = Logger.get(SocketTransport.class);
+	private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+	private final String host;
+	private final int port;
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+	private final CircuitBreaker breaker;
+	private final Queue<Connection> idle;
+
+	public SocketTransport() {
+		this("localhost", Integer.getInteger("bank.nio.port", 9001), 2000, 5000, new CircuitBreaker(5, 10000));
+	}
+
+	public SocketTransport(String host, int port, int connectTimeoutMillis, int readTimeoutMillis,
+			CircuitBreaker breaker) {
+		this.host = host;
+		this.port = port;
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+		this.breaker = breaker;
+		this.idle = new ConcurrentLinkedQueue<>();
+	}
+
+	/**
+	 * Thrown when a connection turns out to be closed before the bank sent
+	 * back any byte of the response: the write failed, or the first read hit
+	 * end of stream or a reset.
+	 */
+	private static class StaleConnectionException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		StaleConnectionException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+
+	private static class Connection {
+		private final Socket socket;
+		private final DataInputStream in;
+		private final OutputStream out;
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = socket.getOutputStream();
+		}
+
+		ByteBuffer exchange(ByteBuffer request) throws IOException {
+			int first;
+			try {
+				out.write(request.array(), request.arrayOffset() + request.position(), request.remaining());
+				out.flush();
+				// A read timeout is not a SocketException: the bank may be
+				// working on the request, so it must not be sent again
+				first = in.read();
+			} catch (SocketException e) {
+				throw new StaleConnectionException(e.getMessage(), e);
+			}
+			if (first == -1)
+				throw new StaleConnectionException("Connection closed by the bank", null);
+
+			int length = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+			if (length < 1 || length > MAX_FRAME_BYTES)
+				throw new IOException("Invalid frame length " + length);
+			byte[] frame = new byte[4 + length];
+			in.readFully(frame, 4, length);
+			ByteBuffer response = ByteBuffer.wrap(frame);
+			response.putInt(0, length);
+			return response;
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Already gone
+			}
+		}
+	}
+
+	/**
+	 * Sends the request on an idle connection, or on a new one if there is
+	 * none. A pooled connection may have been closed by the bank while it was
+	 * idle, so if one turns out to be closed before any of the response came
+	 * back, the request is sent once more on a new connection. Any other
+	 * failure, a read timeout in particular, is not retried, since the bank
+	 * may already have applied the request.
+	 */
+	@Override
+	public ByteBuffer exchange(String endpoint, ByteBuffer request) throws BankUnavailableException {
+		if (!breaker.allowRequest())
+			throw new BankUnavailableException();
+
+		Connection connection = idle.poll();
+		boolean reused = connection != null;
+		while (true) {
+			try {
+				if (connection == null)
+					connection = connect();
+				ByteBuffer response = connection.exchange(request.duplicate());
+				idle.offer(connection);
+				breaker.recordSuccess();
+				return response;
+			} catch (IOException e) {
+				if (connection != null)
+					connection.close();
+				connection = null;
+				if (!reused || !(e instanceof StaleConnectionException)) {
+					LOG.warn("Request failed", "host", host, "port", port, "reason", e.getMessage());
+					breaker.recordFailure();
+					throw new BankUnavailableException();
+				}
+				reused = false;
+			}
+		}
+	}
+
+	public void close() {
+		Connection connection;
+		while ((connection = idle.poll()) != null) {
+			connection.close();
+		}
+	}
+
+	private Connection connect() throws IOException {
+		Socket socket = new Socket();
+		try {
+			socket.setTcpNoDelay(true);
+			socket.setKeepAlive(true);
+			socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+			socket.setSoTimeout(readTimeoutMillis);
+			return new Connection(socket);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,5 @@
+package atm.exceptions;
+
+public class BankUnavailableException extends Exception {
+
+}
@@ -0,0 +1,132 @@
+package atm.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import atm.dispatcher.BinaryDispatcher;
+import atm.dispatcher.HttpTransport;
+import atm.dispatcher.JavaDispatcher;
+import atm.dispatcher.MessageDispatcher;
+import atm.dispatcher.RESTDispatcher;
+import atm.dispatcher.SocketTransport;
+import bank.BankFacade;
+import bank.db.AccountStore;
+import bank.transactions.BankDeposit;
+import bank.transactions.BankTransfer;
+import bank.transactions.BankWithdrawal;
+import bank.utils.FeesCalculator;
+
+/**
+ * Headless load generator: drives a fleet of {@link SimulatedATM}s against
+ * the bank for a fixed time and reports throughput, latency percentiles and
+ * error rates per transaction type. Configured with system properties:
+ *
+ * <ul>
+ * <li>loadgen.dispatcher: java (in-process bank, the default), rest or socket</li>
+ * <li>loadgen.atms: number of ATMs, 1000 by default</li>
+ * <li>loadgen.seconds: length of the run, 60 by default</li>
+ * <li>loadgen.mix: transaction mix, Withdrawal=40,Deposit=40,Transfer=20 by default</li>
+ * <li>loadgen.thinkMillis: mean think time between two steps, 1000 by default</li>
+ * <li>loadgen.transactionsPerSession: transactions before the card is taken out, 5 by default</li>
+ * <li>loadgen.cards: card:pin pairs the ATMs use in turn, 4000000000000000:5555 by default</li>
+ * <li>loadgen.threads: threads driving the ATMs and sending their requests, 64 by default</li>
+ * <li>loadgen.reportSeconds: interval of the progress lines, 10 by default</li>
+ * </ul>
+ */
+public class LoadGenerator {
+	private static final long STOP_TIMEOUT_SECONDS = 30;
+
+	public static void main(String[] args) throws InterruptedException {
+		int atmCount = Integer.getInteger("loadgen.atms", 1000);
+		int seconds = Integer.getInteger("loadgen.seconds", 60);
+		long thinkMillis = Long.getLong("loadgen.thinkMillis", 1000);
+		int transactionsPerSession = Integer.getInteger("loadgen.transactionsPerSession", 5);
+		int threads = Integer.getInteger("loadgen.threads", 64);
+		int reportSeconds = Integer.getInteger("loadgen.reportSeconds", 10);
+		TransactionMix mix = TransactionMix.parse(
+				System.getProperty("loadgen.mix", "Withdrawal=40,Deposit=40,Transfer=20"));
+		List<String[]> cards = parseCards(System.getProperty("loadgen.cards", "4000000000000000:5555"));
+
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(threads, daemonThreads("loadgen"));
+		ExecutorService senders = Executors.newFixedThreadPool(threads, daemonThreads("loadgen-sender"));
+		AccountStore accountStore = null;
+		MessageDispatcher dispatcher;
+		String kind = System.getProperty("loadgen.dispatcher", "java");
+		switch (kind) {
+		case "java":
+			FeesCalculator feesCalculator = FeesCalculator.fromSystemProperties();
+			accountStore = AccountStore.fromSystemProperties();
+			BankFacade facade = new BankFacade(accountStore, new BankWithdrawal(feesCalculator, accountStore),
+					new BankDeposit(feesCalculator, accountStore), new BankTransfer(feesCalculator, accountStore));
+			dispatcher = new JavaDispatcher(facade, senders);
+			break;
+		case "rest":
+			dispatcher = new RESTDispatcher(new HttpTransport(), senders);
+			break;
+		case "socket":
+			dispatcher = new BinaryDispatcher(new SocketTransport(), senders);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown dispatcher " + kind);
+		}
+
+		LoadStats stats = new LoadStats();
+		AtomicBoolean running = new AtomicBoolean(true);
+		CountDownLatch stopped = new CountDownLatch(atmCount);
+		for (int i = 0; i < atmCount; i++) {
+			String[] card = cards.get(i % cards.size());
+			new SimulatedATM(dispatcher, card[0], card[1].toCharArray(), mix, stats, scheduler,
+					running::get, stopped, thinkMillis, transactionsPerSession, i).start();
+		}
+		System.out.println("Running " + atmCount + " ATMs over " + kind + " for " + seconds + "s");
+
+		long start = System.nanoTime();
+		long[] lastCount = new long[1];
+		scheduler.scheduleAtFixedRate(() -> {
+			long count = stats.getCount();
+			System.out.println(String.format("%6.0fs %9.1f tx/s", (System.nanoTime() - start) / 1e9,
+					(double) (count - lastCount[0]) / reportSeconds));
+			lastCount[0] = count;
+		}, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		running.set(false);
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		if (!stopped.await(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+			System.out.println(stopped.getCount() + " ATMs still had a transaction in flight");
+
+		stats.report(System.out, elapsed);
+		scheduler.shutdownNow();
+		senders.shutdownNow();
+		if (accountStore != null)
+			accountStore.closeConnection();
+	}
+
+	private static List<String[]> parseCards(String cards) {
+		List<String[]> parsed = new ArrayList<>();
+		for (String entry : cards.split(",")) {
+			String[] parts = entry.trim().split(":");
+			if (parts.length != 2)
+				throw new IllegalArgumentException("Expected card:pin, got " + entry.trim());
+			parsed.add(parts);
+		}
+		return parsed;
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
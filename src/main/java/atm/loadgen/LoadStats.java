@@ -0,0 +1,83 @@
+package atm.loadgen;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import bank.metrics.LatencyHistogram;
+import bank.transactions.utils.TransactionResult;
+import bank.transactions.utils.TransactionType;
+
+/**
+ * Latencies and outcomes of the simulated transactions, per transaction
+ * type. A transaction counts as an error when the bank did not perform it,
+ * whatever the reason; the reasons are tallied separately.
+ */
+public class LoadStats {
+	private final Map<TransactionType, LatencyHistogram> latencies;
+	private final Map<TransactionType, LongAdder> errors;
+	private final Map<String, LongAdder> reasons;
+	private final LongAdder loginFailures;
+
+	public LoadStats() {
+		latencies = new EnumMap<>(TransactionType.class);
+		errors = new EnumMap<>(TransactionType.class);
+		for (TransactionType type : TransactionType.values()) {
+			latencies.put(type, new LatencyHistogram());
+			errors.put(type, new LongAdder());
+		}
+		reasons = new ConcurrentHashMap<>();
+		loginFailures = new LongAdder();
+	}
+
+	public void record(TransactionType type, long nanos, TransactionResult result) {
+		latencies.get(type).record(nanos);
+		if (result == null || !result.isSuccessful()) {
+			errors.get(type).increment();
+			String reason = result == null ? "No result." : result.getReason();
+			reasons.computeIfAbsent(reason, r -> new LongAdder()).increment();
+		}
+	}
+
+	public void loginFailed() {
+		loginFailures.increment();
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LatencyHistogram latency : latencies.values()) {
+			count += latency.getCount();
+		}
+		return count;
+	}
+
+	public void report(PrintStream out, double seconds) {
+		out.println(String.format("%-11s %9s %8s %7s %9s %9s %9s %9s %9s", "Type", "Count", "Errors", "Error%",
+				"Tx/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+		long totalCount = 0;
+		long totalErrors = 0;
+		for (TransactionType type : TransactionType.values()) {
+			LatencyHistogram latency = latencies.get(type);
+			long count = latency.getCount();
+			long errorCount = errors.get(type).sum();
+			totalCount += count;
+			totalErrors += errorCount;
+			if (count == 0)
+				continue;
+			out.println(String.format("%-11s %9d %8d %6.2f%% %9.1f %9.2f %9.2f %9.2f %9.2f", type, count, errorCount,
+					100.0 * errorCount / count, count / seconds,
+					latency.getPercentile(50, TimeUnit.MILLISECONDS), latency.getPercentile(99, TimeUnit.MILLISECONDS),
+					latency.getPercentile(99.9, TimeUnit.MILLISECONDS), latency.getMax() / 1e6));
+		}
+		out.println(String.format("%-11s %9d %8d %6.2f%% %9.1f", "Total", totalCount, totalErrors,
+				totalCount == 0 ? 0.0 : 100.0 * totalErrors / totalCount, totalCount / seconds));
+		out.println("Login failures: " + loginFailures.sum());
+		if (!reasons.isEmpty()) {
+			out.println("Failure reasons:");
+			reasons.forEach((reason, count) -> out.println("\t" + count.sum() + "\t" + reason));
+		}
+	}
+}
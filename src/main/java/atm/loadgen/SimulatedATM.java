@@ -0,0 +1,162 @@
+package atm.loadgen;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import atm.ATM;
+import atm.dispatcher.MessageDispatcher;
+import atm.exceptions.InvalidAmountException;
+import atm.exceptions.InvalidCardNumberException;
+import atm.exceptions.InvalidCredentialsException;
+import atm.exceptions.InvalidPinFormatException;
+import atm.session.SessionView;
+import atm.utils.CredentialsCheck;
+import atm.utils.FormatChecker;
+import bank.logging.Logger;
+import bank.transactions.utils.AccountType;
+import bank.transactions.utils.TransactionType;
+
+/**
+ * One customer at one ATM, going through the same screens as the Swing UI:
+ * card, PIN, then a few transactions (type, accounts, amount) before leaving
+ * and coming back. It thinks between steps and never has more than one
+ * transaction in flight, so the load is closed-loop.
+ */
+public class SimulatedATM {
+	private static final Logger LOG = Logger.get(SimulatedATM.class);
+	// Amounts every transaction type accepts
+	private static final int[] AMOUNTS = { 20, 40, 50, 100, 200 };
+
+	private final ATM atm;
+	private final String card;
+	private final char[] pin;
+	private final TransactionMix mix;
+	private final LoadStats stats;
+	private final ScheduledExecutorService scheduler;
+	private final BooleanSupplier running;
+	private final CountDownLatch stopped;
+	private final long thinkMillis;
+	private final int transactionsPerSession;
+	private final Random random;
+
+	private int transactionsLeft;
+	private TransactionType type;
+	private long started;
+
+	public SimulatedATM(MessageDispatcher dispatcher, String card, char[] pin, TransactionMix mix, LoadStats stats,
+			ScheduledExecutorService scheduler, BooleanSupplier running, CountDownLatch stopped, long thinkMillis,
+			int transactionsPerSession, long seed) {
+		this.atm = new ATM(FormatChecker.fromSystemProperties(), new CredentialsCheck(dispatcher), dispatcher);
+		this.card = card;
+		this.pin = pin;
+		this.mix = mix;
+		this.stats = stats;
+		this.scheduler = scheduler;
+		this.running = running;
+		this.stopped = stopped;
+		this.thinkMillis = thinkMillis;
+		this.transactionsPerSession = transactionsPerSession;
+		this.random = new Random(seed);
+		// Results are handled on the scheduler, after the session has moved to its result screen
+		atm.setMainPanel(new HeadlessView(),
+				r -> scheduler.execute(() -> step(() -> {
+					r.run();
+					transactionCompleted();
+				})));
+	}
+
+	public void start() {
+		later(this::beginSession);
+	}
+
+	private void beginSession() {
+		if (!running.getAsBoolean()) {
+			stopped.countDown();
+			return;
+		}
+
+		atm.createSession();
+		try {
+			atm.checkCardNumber(card);
+			atm.checkPin(pin.clone());
+		} catch (InvalidCardNumberException | InvalidPinFormatException | InvalidCredentialsException e) {
+			stats.loginFailed();
+			atm.endSession();
+			later(this::beginSession);
+			return;
+		}
+		transactionsLeft = transactionsPerSession;
+		later(this::nextTransaction);
+	}
+
+	private void nextTransaction() {
+		type = mix.next(random);
+		int amount = AMOUNTS[random.nextInt(AMOUNTS.length)];
+		atm.setTransaction(type);
+		switch (type) {
+		case Withdrawal:
+			atm.setFromAccount(AccountType.Chequing);
+			break;
+		case Deposit:
+			atm.setToAccount(AccountType.Chequing);
+			break;
+		default:
+			// Both ways, so that neither account runs dry
+			boolean toSavings = random.nextBoolean();
+			atm.setFromAccount(toSavings ? AccountType.Chequing : AccountType.Savings);
+			atm.setToAccount(toSavings ? AccountType.Savings : AccountType.Chequing);
+		}
+
+		started = System.nanoTime();
+		try {
+			atm.setAmount(amount);
+			if (type == TransactionType.Deposit)
+				atm.insertMoney(amount);
+		} catch (InvalidAmountException e) {
+			throw new IllegalStateException("Rejected amount " + amount, e);
+		}
+	}
+
+	private void transactionCompleted() {
+		stats.record(type, System.nanoTime() - started, atm.getResult());
+		if (--transactionsLeft > 0 && running.getAsBoolean()) {
+			atm.anotherTransaction();
+			later(this::nextTransaction);
+		} else {
+			atm.endSession();
+			later(this::beginSession);
+		}
+	}
+
+	private void later(Runnable task) {
+		long delay = thinkMillis <= 0 ? 0 : (long) (-thinkMillis * Math.log(1 - random.nextDouble()));
+		scheduler.schedule(() -> step(task), delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs the steps of this ATM one at a time: the answer of the bank may
+	 * arrive before the step that sent the transaction has returned. A
+	 * failing ATM stops rather than silently vanishing from the load.
+	 */
+	private synchronized void step(Runnable task) {
+		try {
+			task.run();
+		} catch (RuntimeException e) {
+			LOG.error("Simulated ATM step failed", e);
+			stopped.countDown();
+		}
+	}
+
+	private static class HeadlessView implements SessionView {
+		@Override
+		public void changeLayout(String layout) {
+		}
+
+		@Override
+		public void setResult(String resultText) {
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package atm.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import bank.transactions.utils.TransactionType;
+
+/**
+ * Relative weights of the transaction types the simulated customers pick,
+ * written as "Withdrawal=40,Deposit=40,Transfer=20".
+ */
+public class TransactionMix {
+	private final TransactionType[] types;
+	private final int[] cumulativeWeights;
+
+	private TransactionMix(TransactionType[] types, int[] cumulativeWeights) {
+		this.types = types;
+		this.cumulativeWeights = cumulativeWeights;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the mix is malformed or all its
+	 *                                  weights are zero
+	 */
+	public static TransactionMix parse(String mix) {
+		List<TransactionType> types = new ArrayList<>();
+		List<Integer> weights = new ArrayList<>();
+		int total = 0;
+		for (String entry : mix.split(",")) {
+			String[] parts = entry.split("=");
+			if (parts.length != 2)
+				throw new IllegalArgumentException("Expected Type=weight, got " + entry.trim());
+			int weight;
+			try {
+				types.add(TransactionType.valueOf(parts[0].trim()));
+				weight = Integer.parseInt(parts[1].trim());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid transaction mix entry " + entry.trim());
+			}
+			if (weight < 0)
+				throw new IllegalArgumentException("Negative weight in " + entry.trim());
+			total += weight;
+			weights.add(total);
+		}
+		if (total == 0)
+			throw new IllegalArgumentException("Transaction mix has no weight: " + mix);
+
+		int[] cumulativeWeights = new int[weights.size()];
+		for (int i = 0; i < cumulativeWeights.length; i++) {
+			cumulativeWeights[i] = weights.get(i);
+		}
+		return new TransactionMix(types.toArray(new TransactionType[0]), cumulativeWeights);
+	}
+
+	public TransactionType next(Random random) {
+		int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		int i = 0;
+		while (pick >= cumulativeWeights[i]) {
+			i++;
+		}
+		return types[i];
+	}
+}
@@ -1,20 +1,26 @@
 package atm.session;
 
+import java.util.concurrent.Executor;
+
+import javax.swing.SwingUtilities;
+
 import atm.dispatcher.MessageDispatcher;
 import atm.exceptions.InvalidAmountException;
 import atm.session.states.PendingCardState;
 import atm.session.states.PinNumberState;
+import atm.session.states.ProcessingState;
 import atm.session.states.SessionState;
 import atm.session.transactions.ATMTransaction;
-import atm.ui.panels.MainPanel;
 import atm.utils.CashValidator;
 import bank.transactions.utils.AccountType;
 import bank.transactions.utils.TransactionResult;
 import bank.transactions.utils.TransactionType;
+import bank.utils.Money;
 
 public class Session {
-	private MainPanel mainPanel;
+	private SessionView mainPanel;
 	private MessageDispatcher dispatcher;
+	private Executor uiExecutor;
 	private SessionState state;
 	private String card;
 	private char[] pin;
@@ -24,10 +30,19 @@ public class Session {
 
 
 
-	public Session(MainPanel mainPanel, MessageDispatcher dispatcher) {
+	public Session(SessionView mainPanel, MessageDispatcher dispatcher) {
+		this(mainPanel, dispatcher, SwingUtilities::invokeLater);
+	}
+
+	/**
+	 * The uiExecutor runs the completion of asynchronous bank calls; by
+	 * default that is the Swing event thread.
+	 */
+	public Session(SessionView mainPanel, MessageDispatcher dispatcher, Executor uiExecutor) {
 		super();
 		this.mainPanel = mainPanel;
 		this.dispatcher = dispatcher;
+		this.uiExecutor = uiExecutor;
 		state = new PendingCardState();
 	}
 
@@ -35,7 +50,7 @@ public class Session {
 		this.state = state;
 	}
 	
-	public MainPanel getMainPanel() {
+	public SessionView getMainPanel() {
 		return mainPanel;
 	}
 
@@ -106,11 +121,38 @@ public class Session {
 		state.perform(this);
 	}
 	
+	/**
+	 * Sends the transaction to the bank without waiting for the answer. The
+	 * session moves on from the current state once the result arrives.
+	 */
 	public void performTransaction() {
-		result = transaction.perform(card, pin, dispatcher);
+		result = null;
+		transaction.performAsync(card, pin, dispatcher)
+				.whenComplete((r, e) -> uiExecutor.execute(() -> transactionCompleted(r, e)));
+	}
+
+	private void transactionCompleted(TransactionResult r, Throwable e) {
+		if (e != null || r == null)
+			r = new TransactionResult(false, "Bank is unavailable.", 0, null);
+		result = r;
+		state.perform(this);
+	}
+
+	public boolean hasResult() {
+		return result != null;
+	}
+
+	public TransactionResult getResult() {
+		return result;
+	}
+
+	public boolean isProcessing() {
+		return state instanceof ProcessingState;
 	}
 
 	public void newTransaction() {
+		if (isProcessing())
+			return;
 		transaction = null;
 		result = null;
 		state = new PinNumberState();
@@ -146,8 +188,8 @@ public class Session {
 		resultString.append("\tTransaction Outcome: \n");
 		if (result.isSuccessful()) {
 			resultString.append("Successful");
-			resultString.append("\tAmount "+ actionVerb +": " + transaction.getAmount() + "\n");
-			resultString.append("\t"+ moneyVerb + ": " + result.getFees() + "\n");
+			resultString.append("\tAmount "+ actionVerb +": " + Money.format(transaction.getAmountCents()) + "\n");
+			resultString.append("\t"+ moneyVerb + ": " + Money.format(result.getFeesCents()) + "\n");
 		} else {
 			resultString.append("Unsuccessful\n");
 			resultString.append("\t\tReason: " + result.getReason() + "\n");
@@ -155,17 +197,20 @@ public class Session {
 		
 		resultString.append("----------------------------------------------------------\n");
 		resultString.append("New Balances:\n");
-		if (transactionType == TransactionType.Withdrawal) {
+		long[] balances = result.getAccountBalancesCents();
+		if (balances == null) {
+			resultString.append("\tUnchanged\n");
+		} else if (transactionType == TransactionType.Withdrawal) {
 			resultString.append("\t" + transaction.getFromAccount().toString() 
-					+ " => " + result.getAccountBalances()[0] + "\n");
+					+ " => " + Money.format(balances[0]) + "\n");
 		} else if (transactionType == TransactionType.Deposit) {
 			resultString.append("\t" + transaction.getToAccount().toString() 
-					+ " => " + result.getAccountBalances()[0] + "\n");
+					+ " => " + Money.format(balances[0]) + "\n");
 		} else if (transactionType == TransactionType.Transfer) {
 			resultString.append("\t" + transaction.getFromAccount().toString() 
-					+ " => " + result.getAccountBalances()[0] + "\n");
+					+ " => " + Money.format(balances[0]) + "\n");
 			resultString.append("\t" + transaction.getToAccount().toString() 
-					+ " => " + result.getAccountBalances()[1] + "\n");
+					+ " => " + Money.format(balances[1]) + "\n");
 		}
 		
 		return resultString.toString();
@@ -0,0 +1,10 @@
+package atm.session;
+
+/**
+ * What a session shows to the customer: the screen it is on and the text
+ * of the result screen.
+ */
+public interface SessionView {
+	public void changeLayout(String layout);
+	public void setResult(String resultText);
+}
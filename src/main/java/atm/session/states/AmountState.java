@@ -10,10 +10,10 @@ public class AmountState implements SessionState {
 			session.getMainPanel().changeLayout("InsertMoney");
 			session.setState(new InsertMoneyState());
 		} else {
-			session.performTransaction();
-			session.getMainPanel().setResult(session.createResultText());
+			session.getMainPanel().setResult("Processing transaction...");
 			session.getMainPanel().changeLayout("Result");
-			session.setState(new ResultState());
+			session.setState(new ProcessingState());
+			session.performTransaction();
 		}
 	}
 
@@ -5,10 +5,10 @@ import atm.session.Session;
 public class InsertMoneyState implements SessionState {
 
 	public void perform(Session session) {
-		session.performTransaction();
-		session.getMainPanel().setResult(session.createResultText());
+		session.getMainPanel().setResult("Processing transaction...");
 		session.getMainPanel().changeLayout("Result");
-		session.setState(new ResultState());
+		session.setState(new ProcessingState());
+		session.performTransaction();
 	}
 
 }
@@ -0,0 +1,16 @@
+package atm.session.states;
+
+import atm.session.Session;
+
+public class ProcessingState implements SessionState {
+
+	public void perform(Session session) {
+		// Waiting for the bank; only the result of the transaction moves the session on
+		if (!session.hasResult())
+			return;
+		session.getMainPanel().setResult(session.createResultText());
+		session.getMainPanel().changeLayout("Result");
+		session.setState(new ResultState());
+	}
+
+}
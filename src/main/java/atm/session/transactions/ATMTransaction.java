@@ -1,16 +1,19 @@
 package atm.session.transactions;
 
+import java.util.concurrent.CompletableFuture;
+
 import atm.ATM;
 import atm.dispatcher.MessageDispatcher;
 import bank.transactions.utils.AccountType;
 import bank.transactions.utils.TransactionResult;
 import bank.transactions.utils.TransactionType;
+import bank.utils.Money;
 
 abstract public class ATMTransaction {
 	protected TransactionType type;
 	protected AccountType from;
 	protected AccountType to;
-	protected double amount;
+	protected long amountCents;
 	
 	public ATMTransaction(TransactionType type) {
 		this.type = type;
@@ -32,8 +35,11 @@ abstract public class ATMTransaction {
 	}
 
 
-	public void setAmount(double amount) {
-		this.amount = amount;
+	/**
+	 * Sets the amount in whole units, the only amounts the ATM handles.
+	 */
+	public void setAmount(int amount) {
+		this.amountCents = amount * Money.CENTS_PER_UNIT;
 	}
 
 	public AccountType getFromAccount() {
@@ -46,12 +52,17 @@ abstract public class ATMTransaction {
 	}
 
 
-	public double getAmount() {
-		return amount;
+	public long getAmountCents() {
+		return amountCents;
 	}
 
 	public TransactionResult perform(String cardNumber, char[] pin, MessageDispatcher dispatcher) {
 		TransactionResult result = dispatcher.performTransaction(cardNumber, pin, this);
 		return result;
 	}
+
+	public CompletableFuture<TransactionResult> performAsync(String cardNumber, char[] pin,
+			MessageDispatcher dispatcher) {
+		return dispatcher.performTransactionAsync(cardNumber, pin, this);
+	}
 }
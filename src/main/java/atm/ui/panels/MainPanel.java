@@ -5,8 +5,9 @@ import java.awt.CardLayout;
 import javax.swing.JPanel;
 
 import atm.ATM;
+import atm.session.SessionView;
 
-public class MainPanel extends JPanel{
+public class MainPanel extends JPanel implements SessionView {
 	/** The card layout for this panel
      */
     private CardLayout mainLayout;
@@ -1,36 +1,109 @@
 package atm.utils;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import atm.exceptions.InvalidCardNumberException;
 import atm.exceptions.InvalidPinFormatException;
 
 public class FormatChecker {
+	public enum CardNetwork {
+		Visa, Mastercard, Amex, Discover, Diners, JCB
+	}
 
-	public void checkCardFormat(String card) throws InvalidCardNumberException {
-		String regex = "^(?:(?<visa>4[0-9]{12}(?:[0-9]{3})?)|" + 
-					   "(?<mastercard>5[1-5][0-9]{14})|" + 
-					   "(?<discover>6(?:011|5[0-9]{2})[0-9]{12})|" + 
-					   "(?<amex>3[47][0-9]{13})|" + 
-					   "(?<diners>3(?:0[0-5]|[68][0-9])?[0-9]{11})|" + 
-					   "(?<jcb>(?:2131|1800|35[0-9]{3})[0-9]{11}))$";
+	private static final int MAX_CARD_DIGITS = 19;
+	// Digits of the issuer identification number the networks are told apart by
+	private static final int IIN_DIGITS = 6;
 
-		Pattern pattern = Pattern.compile(regex);
+	private final boolean checkLuhn;
 
-		// Strip all hyphens
-		card = card.replaceAll("-", "");
-		// Strip all spaces
-		card = card.replaceAll(" ", "");
+	public FormatChecker() {
+		this(false);
+	}
 
-		// Match the card
-		Matcher matcher = pattern.matcher(card);
+	public FormatChecker(boolean checkLuhn) {
+		this.checkLuhn = checkLuhn;
+	}
 
-		if (!matcher.matches()) {
+	/**
+	 * Checks the Luhn check digit only if atm.card.luhn is true. It is off by
+	 * default because the seeded card in bank.db has no valid check digit.
+	 */
+	public static FormatChecker fromSystemProperties() {
+		return new FormatChecker(Boolean.getBoolean("atm.card.luhn"));
+	}
+
+	/**
+	 * Validates a card number in a single pass, ignoring hyphens and spaces,
+	 * and returns the network that issued it.
+	 */
+	public CardNetwork checkCardFormat(String card) throws InvalidCardNumberException {
+		if (card == null)
 			throw new InvalidCardNumberException();
+
+		int digits = 0;
+		int iin = 0;
+		// Luhn sums doubling the digits at even and at odd positions from the
+		// left; which one applies is only known once the length is
+		int evenDoubled = 0;
+		int oddDoubled = 0;
+		for (int i = 0; i < card.length(); i++) {
+			char c = card.charAt(i);
+			if (c == '-' || c == ' ')
+				continue;
+			if (c < '0' || c > '9' || digits == MAX_CARD_DIGITS)
+				throw new InvalidCardNumberException();
+
+			int digit = c - '0';
+			int doubled = digit < 5 ? 2 * digit : 2 * digit - 9;
+			if ((digits & 1) == 0) {
+				evenDoubled += doubled;
+				oddDoubled += digit;
+			} else {
+				evenDoubled += digit;
+				oddDoubled += doubled;
+			}
+			if (digits < IIN_DIGITS)
+				iin = iin * 10 + digit;
+			digits++;
 		}
+		if (digits < IIN_DIGITS)
+			throw new InvalidCardNumberException();
+
+		// The check digit is never doubled, so an even length doubles the even positions
+		int luhnSum = (digits & 1) == 0 ? evenDoubled : oddDoubled;
+		if (checkLuhn && luhnSum % 10 != 0)
+			throw new InvalidCardNumberException();
+
+		CardNetwork network = network(iin, digits);
+		if (network == null)
+			throw new InvalidCardNumberException();
+		return network;
 	}
-	
+
+	private static CardNetwork network(int iin, int digits) {
+		int two = iin / 10000;
+		int three = iin / 1000;
+		int four = iin / 100;
+		boolean sixteenToNineteen = digits >= 16;
+
+		if (two / 10 == 4)
+			return digits == 13 || digits == 16 || digits == 19 ? CardNetwork.Visa : null;
+		if ((two >= 51 && two <= 55) || (four >= 2221 && four <= 2720))
+			return digits == 16 ? CardNetwork.Mastercard : null;
+		// Short Diners Club numbers
+		if (two / 10 == 3 && digits == 12)
+			return CardNetwork.Diners;
+		if (two == 34 || two == 37)
+			return digits == 15 ? CardNetwork.Amex : null;
+		if (four == 2131 || four == 1800)
+			return digits == 15 ? CardNetwork.JCB : null;
+		if (four == 6011 || two == 65 || (three >= 644 && three <= 649) || (iin >= 622126 && iin <= 622925))
+			return sixteenToNineteen ? CardNetwork.Discover : null;
+		if (four >= 3528 && four <= 3589)
+			return sixteenToNineteen ? CardNetwork.JCB : null;
+		if ((three >= 300 && three <= 305) || four == 3095 || two == 36 || two == 38 || two == 39)
+			return digits >= 14 ? CardNetwork.Diners : null;
+		return null;
+	}
+
 	public void checkPinFormat(char[] pin) throws InvalidPinFormatException {
 		if (pin.length == 4) {
 			for (int i = 0; i < 4; i++) {
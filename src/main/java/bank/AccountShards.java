@@ -0,0 +1,83 @@
+package bank;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Partitions users across single-threaded executors. Every transaction on a
+ * user's accounts runs on the thread of that user's shard, so a shard is the
+ * only writer of its users' balances and their transactions never contend
+ * with each other.
+ */
+public class AccountShards {
+	private final ExecutorService[] shards;
+	private final Thread[] threads;
+
+	public AccountShards(int shardCount) {
+		this.shards = new ExecutorService[shardCount];
+		this.threads = new Thread[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			int shard = i;
+			shards[i] = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "account-shard-" + shard);
+				thread.setDaemon(true);
+				threads[shard] = thread;
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Returns the shards configured by the bank.shards system property, or
+	 * null if sharding is not enabled.
+	 */
+	public static AccountShards fromSystemProperties() {
+		int shardCount = Integer.getInteger("bank.shards", 0);
+		return shardCount > 0 ? new AccountShards(shardCount) : null;
+	}
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	public int shardOf(String user) {
+		int h = user.hashCode();
+		return ((h ^ (h >>> 16)) & 0x7fffffff) % shards.length;
+	}
+
+	/**
+	 * Runs the work on the user's shard and waits for its result. Work that is
+	 * already on the right shard runs straight away.
+	 */
+	public <T> T call(String user, Supplier<T> work) {
+		int shard = shardOf(user);
+		if (Thread.currentThread() == threads[shard])
+			return work.get();
+
+		try {
+			return CompletableFuture.supplyAsync(work, shards[shard]).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+
+	public void shutdown() {
+		for (ExecutorService shard : shards) {
+			shard.shutdown();
+		}
+		for (ExecutorService shard : shards) {
+			try {
+				shard.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}
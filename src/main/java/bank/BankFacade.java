@@ -1,30 +1,74 @@
 package bank;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
-import bank.db.DBHandler;
+import bank.db.AccountStore;
 import bank.exceptions.CardNotFoundException;
+import bank.exceptions.UnsuccessfulBalanceUpdate;
 import bank.exceptions.UserNotFoundException;
+import bank.metrics.MetricsRegistry;
+import bank.metrics.Timer;
 import bank.transactions.BankDeposit;
 import bank.transactions.BankTransaction;
 import bank.transactions.BankTransfer;
 import bank.transactions.BankWithdrawal;
+import bank.transactions.utils.AccountContext;
 import bank.transactions.utils.AccountType;
 import bank.transactions.utils.TransactionData;
 import bank.transactions.utils.TransactionResult;
 import bank.transactions.utils.TransactionType;
+import bank.utils.CredentialCache;
 import bank.utils.FeesCalculator;
+import bank.utils.SessionTokens;
 
 public class BankFacade {
-	private DBHandler dbHandler;
+	private static final int CREDENTIAL_CACHE_SIZE = 10000;
+	private static final long CREDENTIAL_TTL_MILLIS = 5 * 60 * 1000;
+	private static final long CARD_NOT_FOUND_TTL_MILLIS = 30 * 1000;
+	private static final long SESSION_TTL_MILLIS = 5 * 60 * 1000;
+	
+	public static final String SESSION_EXPIRED = "Session expired.";
+	public static final String INVALID_TRANSACTION = "Invalid transaction.";
+	
+	private static final Timer CHECK_CREDENTIALS_TIMER = MetricsRegistry.shared().timer("bank_facade_seconds",
+			"Time spent in the bank facade", "operation", "checkCredentials");
+	private static final Timer PERFORM_TRANSACTION_TIMER = MetricsRegistry.shared().timer("bank_facade_seconds",
+			"Time spent in the bank facade", "operation", "performTransaction");
+
+	private AccountStore accountStore;
+	private CredentialCache credentials;
+	private AccountShards shards;
+	private SessionTokens sessions;
 	private Map<TransactionType, BankTransaction> transactions;
 
-	public BankFacade(DBHandler dbHandler, BankTransaction withdrawal, BankTransaction deposit,
+	public BankFacade(AccountStore accountStore, BankTransaction withdrawal, BankTransaction deposit,
 			BankTransaction transfer) {
+		this(accountStore, new CredentialCache(CREDENTIAL_CACHE_SIZE, CREDENTIAL_TTL_MILLIS, CARD_NOT_FOUND_TTL_MILLIS),
+				withdrawal, deposit, transfer);
+	}
+
+	public BankFacade(AccountStore accountStore, CredentialCache credentials, BankTransaction withdrawal,
+			BankTransaction deposit, BankTransaction transfer) {
+		this(accountStore, credentials, AccountShards.fromSystemProperties(), withdrawal, deposit, transfer);
+	}
+
+	/**
+	 * Creates a facade that performs each transaction on the shard of the
+	 * card's owner. Shards may be null, in which case transactions run on the
+	 * calling thread.
+	 */
+	public BankFacade(AccountStore accountStore, CredentialCache credentials, AccountShards shards,
+			BankTransaction withdrawal, BankTransaction deposit, BankTransaction transfer) {
 		super();
-		this.dbHandler = dbHandler;
+		this.accountStore = accountStore;
+		this.credentials = credentials;
+		this.shards = shards;
+		this.sessions = new SessionTokens(SESSION_TTL_MILLIS);
 		
 		transactions = new HashMap<>();
 		transactions.put(TransactionType.Withdrawal, withdrawal);
@@ -33,34 +77,221 @@ public class BankFacade {
 	}
 
 	public boolean checkCredentials(String cardNumber, char[] inputPIN) {
+		try (Timer.Sample sample = CHECK_CREDENTIALS_TIMER.time()) {
+			CredentialCache.Entry entry = credentials.get(cardNumber);
+			if (entry == null) {
+				entry = loadCredentials(cardNumber);
+				if (entry == null)
+					return false;
+			}
+			
+			return entry.pinMatches(inputPIN);
+		}
+	}
+	
+	/**
+	 * Checks the credentials and, if they are correct, returns a session
+	 * token that later transactions on the same card can use in place of the
+	 * PIN. Returns null if the credentials are wrong.
+	 */
+	public String authenticate(String cardNumber, char[] inputPIN) {
+		if (!checkCredentials(cardNumber, inputPIN))
+			return null;
+		return sessions.issue(cardNumber);
+	}
+	
+	public boolean changePIN(String cardNumber, char[] oldPIN, char[] newPIN) {
+		if (!checkCredentials(cardNumber, oldPIN))
+			return false;
+		
+		CredentialCache.Entry entry = credentials.get(cardNumber);
+		try {
+			accountStore.setPIN(cardNumber, newPIN);
+			return true;
+		} catch (CardNotFoundException e) {
+			return false;
+		} finally {
+			credentials.invalidate(cardNumber);
+			if (entry != null)
+				credentials.invalidateOwner(entry.getOwner());
+		}
+	}
+	
+	/**
+	 * Performs a batch of transactions and returns their results in the same
+	 * order. Credentials are checked once per card, and each card's
+	 * transactions are applied in order against a context carried over from
+	 * one to the next. The whole batch runs in a single database transaction.
+	 */
+	public List<TransactionResult> performTransactions(List<TransactionData> batch) {
+		TransactionResult[] results = new TransactionResult[batch.size()];
+		Map<String, String> rejections = new HashMap<>();
+		Map<String, List<Integer>> byCard = new LinkedHashMap<>();
+		for (int i = 0; i < batch.size(); i++) {
+			TransactionData data = batch.get(i);
+			if (!isWellFormed(data)) {
+				results[i] = new TransactionResult(false, INVALID_TRANSACTION, 0, null);
+				continue;
+			}
+			String key = data.getCardNumber() + "\n" + data.getToken() + "\n" + String.valueOf(data.getPin());
+			if (!rejections.containsKey(key))
+				rejections.put(key, rejectionReason(data));
+			
+			String rejection = rejections.get(key);
+			if (rejection != null)
+				results[i] = new TransactionResult(false, rejection, 0, null);
+			else
+				byCard.computeIfAbsent(data.getCardNumber(), card -> new ArrayList<>()).add(i);
+		}
+		
+		try {
+			accountStore.inTransaction(() -> {
+				for (Map.Entry<String, List<Integer>> group : byCard.entrySet()) {
+					performGroup(group.getKey(), group.getValue(), batch, results);
+				}
+				return null;
+			});
+		} catch (UnsuccessfulBalanceUpdate e) {
+			for (List<Integer> group : byCard.values()) {
+				for (int i : group) {
+					results[i] = new TransactionResult(false, "Unsuccessful update of account balance.", 0, null);
+				}
+			}
+		}
+		
+		return Arrays.asList(results);
+	}
+	
+	private void performGroup(String cardNumber, List<Integer> group, List<TransactionData> batch,
+			TransactionResult[] results) {
+		AccountContext context;
+		try {
+			context = accountStore.getAccountContext(cardNumber);
+		} catch (CardNotFoundException e) {
+			for (int i : group) {
+				results[i] = new TransactionResult(false, "Invalid credentials.", 0, null);
+			}
+			return;
+		}
+		
+		for (int i : group) {
+			TransactionData data = batch.get(i);
+			TransactionResult result = transactions.get(data.getType()).perform(data, context);
+			results[i] = result;
+			
+			long[] balances = result.getAccountBalancesCents();
+			if (result.isSuccessful() && balances != null) {
+				for (int j = 0; j < balances.length; j++) {
+					context = context.withBalance(data.getAccounts()[j], balances[j]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Checks that the transaction has a type we perform, every account that
+	 * type needs and an amount, so a malformed request fails on its own
+	 * instead of throwing in the middle of a batch. Whether the amount itself
+	 * is acceptable is up to the transaction.
+	 */
+	private boolean isWellFormed(TransactionData data) {
+		if (data == null || data.getType() == null || !transactions.containsKey(data.getType()))
+			return false;
+		if (!data.hasAmount())
+			return false;
+		int required = data.getType() == TransactionType.Transfer ? 2 : 1;
+		AccountType[] accounts = data.getAccounts();
+		if (accounts == null || accounts.length < required)
+			return false;
+		for (int i = 0; i < required; i++) {
+			if (accounts[i] == null)
+				return false;
+		}
+		return true;
+	}
+	
+	private String rejectionReason(TransactionData data) {
+		if (data.getToken() != null) {
+			if (sessions.verify(data.getToken(), data.getCardNumber()))
+				return null;
+			if (data.getPin() == null)
+				return SESSION_EXPIRED;
+		}
+		return checkCredentials(data.getCardNumber(), data.getPin()) ? null : "Invalid credentials.";
+	}
+	
+	private CredentialCache.Entry loadCredentials(String cardNumber) {
 		String user;
 		char[] pin;
 		try {
-			user = dbHandler.getCardOwner(cardNumber);
+			user = accountStore.getCardOwner(cardNumber);
 		} catch (CardNotFoundException e) {
-			return false;
+			return credentials.putNotFound(cardNumber);
 		}
 		try {
-			pin = dbHandler.getPIN(user);
+			pin = accountStore.getPIN(user);
 		} catch (UserNotFoundException e) {
-			return false;
+			return null;
 		}
 		
-		return Arrays.equals(pin, inputPIN);
+		try {
+			return credentials.putCredentials(cardNumber, user, pin);
+		} finally {
+			Arrays.fill(pin, '\0');
+		}
 	}
 	
 	public TransactionResult performTransaction(TransactionData data) {
-		char[] pin = data.getPin();
-		TransactionResult result;
-		TransactionType transactionType = data.getType();
-		String cardNumber = data.getCardNumber();
-		if (checkCredentials(cardNumber, pin)) {
-			result = transactions.get(transactionType).perform(data);
-		} else {
-			result = new TransactionResult(false, "Invalid credentials.", 0.0, null);
+		try (Timer.Sample sample = PERFORM_TRANSACTION_TIMER.time()) {
+			if (!isWellFormed(data))
+				return new TransactionResult(false, INVALID_TRANSACTION, 0, null);
+			
+			char[] pin = data.getPin();
+			String cardNumber = data.getCardNumber();
+		
+			boolean authenticated = false;
+			if (data.getToken() != null) {
+				authenticated = sessions.verify(data.getToken(), cardNumber);
+				if (!authenticated && pin == null)
+					return new TransactionResult(false, SESSION_EXPIRED, 0, null);
+			}
+		
+			// Known-bad credentials are rejected without touching the database
+			CredentialCache.Entry cached = credentials.get(cardNumber);
+			if (!authenticated && cached != null && !cached.pinMatches(pin))
+				return new TransactionResult(false, "Invalid credentials.", 0, null);
+		
+			if (shards == null)
+				return perform(data, authenticated);
+		
+			String owner;
+			if (cached != null && cached.isCardFound()) {
+				owner = cached.getOwner();
+			} else {
+				try {
+					owner = accountStore.getCardOwner(cardNumber);
+				} catch (CardNotFoundException e) {
+					return new TransactionResult(false, "Invalid credentials.", 0, null);
+				}
+			}
+			boolean verified = authenticated;
+			return shards.call(owner, () -> perform(data, verified));
+		}
+	}
+	
+	private TransactionResult perform(TransactionData data, boolean authenticated) {
+		AccountContext context;
+		try {
+			context = accountStore.getAccountContext(data.getCardNumber());
+		} catch (CardNotFoundException e) {
+			return new TransactionResult(false, "Invalid credentials.", 0, null);
 		}
 		
-		return result;
+		if (authenticated || context.pinMatches(data.getPin())) {
+			return transactions.get(data.getType()).perform(data, context);
+		} else {
+			return new TransactionResult(false, "Invalid credentials.", 0, null);
+		}
 	}
 
 }
@@ -1,139 +1,345 @@
 package bank;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Type;
+import java.io.OutputStreamWriter;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
-import com.sun.net.httpserver.Headers;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 
 import bank.exceptions.WrongOperationException;
+import bank.logging.Logger;
+import bank.metrics.MetricsRegistry;
+import bank.metrics.Timer;
+import bank.transactions.utils.TransactionCodec;
 import bank.transactions.utils.TransactionData;
+import bank.transactions.utils.TransactionJson;
 import bank.transactions.utils.TransactionResult;
 
 public class BankHandler {
-	private Gson gson;
+	private static final Logger LOG = Logger.get(BankHandler.class);
+	public static final String SESSION_TOKEN_HEADER = "X-Session-Token";
+
+	private static final int MAX_BODY_BYTES = 64 * 1024;
+	private static final int MAX_BATCH_BODY_BYTES = 16 * 1024 * 1024;
+	private static final int BINARY_BUFFER_BYTES = 4 * 1024;
+
+	// Binary requests and responses are small, so each worker thread reuses one buffer for them
+	private static final ThreadLocal<ByteBuffer> BINARY_BUFFERS =
+			ThreadLocal.withInitial(() -> ByteBuffer.allocate(BINARY_BUFFER_BYTES));
+
+	private final TypeAdapter<TransactionData> transactionAdapter;
+	private final TypeAdapter<List<TransactionData>> batchAdapter;
+	private final TypeAdapter<Map<String, String>> credentialsAdapter;
+	private final TypeAdapter<TransactionResult> resultAdapter;
+	private final TypeAdapter<List<TransactionResult>> resultsAdapter;
+	private final TypeAdapter<Boolean> booleanAdapter;
 	private BankFacade facade;
-	
+
 	public BankHandler(BankFacade facade) {
-		this.gson = new Gson();
+		Gson gson = TransactionJson.gson();
+		this.transactionAdapter = gson.getAdapter(TransactionData.class);
+		this.batchAdapter = gson.getAdapter(new TypeToken<List<TransactionData>>() {});
+		this.credentialsAdapter = gson.getAdapter(new TypeToken<Map<String, String>>() {});
+		this.resultAdapter = gson.getAdapter(TransactionResult.class);
+		this.resultsAdapter = gson.getAdapter(new TypeToken<List<TransactionResult>>() {});
+		this.booleanAdapter = gson.getAdapter(Boolean.class);
 		this.facade = facade;
 	}
 
-	private String getRequestBody(HttpExchange exchange) throws WrongOperationException {
-		Headers headers = exchange.getRequestHeaders();
-		String query = null;
+	/**
+	 * Wraps the handler of an endpoint so that the time it takes and the
+	 * status codes it answers are recorded in the shared metrics registry.
+	 */
+	public static HttpHandler instrument(String endpoint, HttpHandler handler) {
+		MetricsRegistry metrics = MetricsRegistry.shared();
+		Timer timer = metrics.timer("bank_http_request_seconds", "Time to handle a request, excluding queueing",
+				"endpoint", endpoint);
+		return exchange -> {
+			try (Timer.Sample sample = timer.time()) {
+				handler.handle(exchange);
+			} finally {
+				metrics.counter("bank_http_responses_total", "Responses sent", "endpoint", endpoint, "code",
+						String.valueOf(exchange.getResponseCode())).increment();
+			}
+		};
+	}
+
+	private void checkRequest(HttpExchange exchange, String expectedContentType) throws WrongOperationException {
+		String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+		if (!exchange.getRequestMethod().contentEquals("POST")
+				|| contentType == null || !contentType.startsWith(expectedContentType)) {
+			throw new WrongOperationException();
+		}
+	}
+
+	private boolean isBinary(HttpExchange exchange) {
+		String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+		return contentType != null && contentType.startsWith(TransactionCodec.CONTENT_TYPE);
+	}
+
+	/**
+	 * Parses the request body straight from the request stream. Returns null
+	 * if the request was rejected, in which case the error response has
+	 * already been sent.
+	 */
+	private <T> T readRequest(HttpExchange exchange, TypeAdapter<T> adapter, int maxBytes) {
+		try {
+			checkRequest(exchange, "application/json");
+		} catch (WrongOperationException e) {
+			sendText(exchange, 405, "This type of get operation is not supported.");
+			return null;
+		}
+
+		T value;
+		try {
+			InputStream body = new LimitedInputStream(exchange.getRequestBody(), maxBytes);
+			JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+			reader.setLenient(true);
+			value = adapter.read(reader);
+		} catch (BodyTooLargeException e) {
+			sendText(exchange, 413, "Request body too large.");
+			return null;
+		} catch (IOException | JsonParseException | IllegalStateException e) {
+			value = null;
+		}
 
-		if ((exchange.getRequestMethod().contentEquals("POST"))
-				&& ("application/json; utf-8".contentEquals(headers.get("Content-Type").get(0)))) {
+		if (value == null)
+			sendText(exchange, 405, "Incorrect JSON format.");
+		return value;
+	}
 
-			InputStreamReader isr;
+	/**
+	 * Reads a binary request frame of the given kind and decodes its payload.
+	 * Returns null if the request was rejected, in which case the error
+	 * response has already been sent.
+	 */
+	private <T> T readBinaryRequest(HttpExchange exchange, byte kind, int maxBytes, Function<ByteBuffer, T> decoder) {
+		try {
+			checkRequest(exchange, TransactionCodec.CONTENT_TYPE);
+		} catch (WrongOperationException e) {
+			sendText(exchange, 405, "This type of get operation is not supported.");
+			return null;
+		}
+
+		try {
+			ByteBuffer in = readFully(exchange.getRequestBody(), maxBytes);
+			if (TransactionCodec.readHeader(in) != kind)
+				throw new IllegalArgumentException("Unexpected frame kind");
+			return decoder.apply(in);
+		} catch (BodyTooLargeException e) {
+			sendText(exchange, 413, "Request body too large.");
+		} catch (IOException | IllegalArgumentException | BufferUnderflowException e) {
+			sendText(exchange, 405, "Incorrect binary format.");
+		}
+		return null;
+	}
+
+	private static ByteBuffer readFully(InputStream body, int maxBytes) throws IOException {
+		ByteBuffer buffer = BINARY_BUFFERS.get();
+		buffer.clear();
+		try (InputStream in = body) {
+			int n;
+			while ((n = in.read(buffer.array(), buffer.position(), buffer.remaining())) != -1) {
+				buffer.position(buffer.position() + n);
+				if (!buffer.hasRemaining()) {
+					if (buffer.capacity() < maxBytes) {
+						buffer = grow(buffer, maxBytes);
+					} else if (in.read() != -1) {
+						throw new BodyTooLargeException();
+					} else {
+						break;
+					}
+				}
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static ByteBuffer grow(ByteBuffer buffer, int maxBytes) {
+		ByteBuffer larger = ByteBuffer.allocate((int) Math.min((long) buffer.capacity() * 2, maxBytes));
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+
+	private void sendBinary(HttpExchange exchange, Consumer<ByteBuffer> encoder) {
+		ByteBuffer out = BINARY_BUFFERS.get();
+		while (true) {
+			out.clear();
 			try {
-				isr = new InputStreamReader(exchange.getRequestBody(), "utf-8");
-				BufferedReader br = new BufferedReader(isr);
-				query = br.readLine();
-			} catch (UnsupportedEncodingException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				encoder.accept(out);
+				break;
+			} catch (BufferOverflowException e) {
+				out = ByteBuffer.allocate(out.capacity() * 2);
 			}
+		}
 
-			return query;
-		} else {
-			throw new WrongOperationException();
+		try {
+			exchange.getResponseHeaders().set("Content-Type", TransactionCodec.CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, out.position());
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(out.array(), 0, out.position());
+			}
+		} catch (IOException e) {
+			LOG.warn("Could not send response", e);
+		} finally {
+			exchange.close();
 		}
 	}
 
-	private void sendResponse(HttpExchange exchange, int responseCode, String response) {
-		// send response
+	private <T> void sendJson(HttpExchange exchange, TypeAdapter<T> adapter, T value) {
 		try {
-			exchange.sendResponseHeaders(responseCode, response.length());
-			OutputStream os = exchange.getResponseBody();
-			os.write(response.toString().getBytes());
-			os.close();
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			// Chunked, so the body is written as it is serialized
+			exchange.sendResponseHeaders(200, 0);
+			try (JsonWriter writer = new JsonWriter(new BufferedWriter(
+					new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)))) {
+				writer.setLenient(true);
+				writer.setSerializeNulls(false);
+				adapter.write(writer, value);
+			}
+		} catch (IOException e) {
+			LOG.warn("Could not send response", e);
+		} finally {
 			exchange.close();
+		}
+	}
+
+	private void sendText(HttpExchange exchange, int responseCode, String response) {
+		byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+		try {
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(responseCode, bytes.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(bytes);
+			}
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			LOG.warn("Could not send response", e, "code", responseCode);
+		} finally {
+			exchange.close();
 		}
-		
 	}
 
 	public void performTransaction(HttpExchange exchange) {
+		if (isBinary(exchange)) {
+			TransactionData transactionData = readBinaryRequest(exchange, TransactionCodec.TRANSACTION_REQUEST,
+					MAX_BODY_BYTES, TransactionCodec::readTransaction);
+			if (transactionData == null)
+				return;
 
-		int responseCode;
-		String response;
-
-		String query;
-		try {
-			query = getRequestBody(exchange);
-			try {
-			Type type = new TypeToken<TransactionData>() {}.getType();
-			TransactionData transactionData = gson.fromJson(query, type);
-			
-			// handle get request
 			TransactionResult result = facade.performTransaction(transactionData);
-			response = gson.toJson(result);
-
-			// prepare response
-			responseCode = 200;
-			} catch (JsonSyntaxException jsonException) {
-				// prepare response
-				responseCode = 405;
-				response = "Incorrect JSON format.";
-			}
-		} catch (WrongOperationException e) {
-			// prepare response
-			responseCode = 405;
-			response = "This type of get operation is not supported.";
+			sendBinary(exchange, out -> TransactionCodec.writeResult(out, result));
+			return;
+		}
+
+		TransactionData transactionData = readRequest(exchange, transactionAdapter, MAX_BODY_BYTES);
+		if (transactionData == null)
+			return;
+
+		TransactionResult result = facade.performTransaction(transactionData);
+		sendJson(exchange, resultAdapter, result);
+	}
+
+	public void performTransactions(HttpExchange exchange) {
+		if (isBinary(exchange)) {
+			List<TransactionData> batch = readBinaryRequest(exchange, TransactionCodec.BATCH_REQUEST,
+					MAX_BATCH_BODY_BYTES, TransactionCodec::readBatch);
+			if (batch == null)
+				return;
+
+			List<TransactionResult> results = facade.performTransactions(batch);
+			sendBinary(exchange, out -> TransactionCodec.writeResults(out, results));
+			return;
 		}
-		
-		sendResponse(exchange, responseCode, response);
 
+		List<TransactionData> batch = readRequest(exchange, batchAdapter, MAX_BATCH_BODY_BYTES);
+		if (batch == null)
+			return;
+
+		List<TransactionResult> results = facade.performTransactions(batch);
+		sendJson(exchange, resultsAdapter, results);
 	}
-	
+
 	public void checkCredentials(HttpExchange exchange) {
+		if (isBinary(exchange)) {
+			TransactionCodec.Credentials credentials = readBinaryRequest(exchange,
+					TransactionCodec.CREDENTIALS_REQUEST, MAX_BODY_BYTES, TransactionCodec::readCredentials);
+			if (credentials == null)
+				return;
 
-		int responseCode;
-		String response;
+			String token = facade.authenticate(credentials.getCardNumber(), credentials.getPin());
+			sendBinary(exchange, out -> TransactionCodec.writeAuthentication(out, token != null, token));
+			return;
+		}
 
-		String query;
-		try {
-			query = getRequestBody(exchange);
-			try {
-			Type type = new TypeToken<Map<String, String>>() {}.getType();
-			Map<String, String> credentials = gson.fromJson(query, type);
-			
-			// handle get request
-			String cardNumber = credentials.get("cardNumber");
-			char[] pin = credentials.get("pin").toCharArray();
-			boolean result = facade.checkCredentials(cardNumber, pin);
-			response = gson.toJson(result);
-
-			// prepare response
-			responseCode = 200;
-			} catch (JsonSyntaxException jsonException) {
-				// prepare response
-				responseCode = 405;
-				response = "Incorrect JSON format.";
-			}
-		} catch (WrongOperationException e) {
-			// prepare response
-			responseCode = 405;
-			response = "This type of get operation is not supported.";
+		Map<String, String> credentials = readRequest(exchange, credentialsAdapter, MAX_BODY_BYTES);
+		if (credentials == null)
+			return;
+
+		String cardNumber = credentials.get("cardNumber");
+		String pin = credentials.get("pin");
+		String token = pin == null ? null : facade.authenticate(cardNumber, pin.toCharArray());
+		if (token != null)
+			exchange.getResponseHeaders().set(SESSION_TOKEN_HEADER, token);
+		sendJson(exchange, booleanAdapter, token != null);
+	}
+
+	private static class BodyTooLargeException extends IOException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Fails with BodyTooLargeException once more than maxBytes have been read.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+		private long remaining;
+
+		LimitedInputStream(InputStream in, long maxBytes) {
+			super(in);
+			this.remaining = maxBytes;
 		}
-		
-		sendResponse(exchange, responseCode, response);
 
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				count(1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0)
+				count(n);
+			return n;
+		}
+
+		private void count(int n) throws BodyTooLargeException {
+			remaining -= n;
+			if (remaining < 0)
+				throw new BodyTooLargeException();
+		}
 	}
 
 }
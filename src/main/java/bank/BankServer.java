@@ -1,11 +1,18 @@
 package bank;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 
+import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 
-import bank.db.DBHandler;
+import bank.db.AccountStore;
+import bank.logging.Logger;
+import bank.metrics.MetricsRegistry;
 import bank.transactions.BankDeposit;
 import bank.transactions.BankTransaction;
 import bank.transactions.BankTransfer;
@@ -13,36 +20,81 @@ import bank.transactions.BankWithdrawal;
 import bank.utils.FeesCalculator;
 
 public class BankServer {
+	private static final Logger LOG = Logger.get(BankServer.class);
+
 	private BankHandler handler;
+	private RequestExecutor executor;
+	private HttpServer server;
 	
 	public BankServer(BankFacade facade) {
+		this(facade, RequestExecutor.fromSystemProperties());
+	}
+	
+	public BankServer(BankFacade facade, RequestExecutor executor) {
 		super();
 		this.handler = new BankHandler(facade);
+		this.executor = executor;
 	}
 
 	public void start() {
 		int port = 9000;
-		HttpServer server;
+		// Without TCP_NODELAY the response body waits for the client's delayed ACK of the headers
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
 		try {
 			server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
-			System.out.println("server started at " + server.getAddress());
-			server.createContext("/performTransaction", handler::performTransaction);
-			server.createContext("/checkCredentials", handler::checkCredentials);
+			LOG.info("Server started", "address", server.getAddress(), "mode", executor.getMode());
+			executor.registerMetrics(MetricsRegistry.shared());
+			server.createContext("/performTransaction",
+					executor.wrap(BankHandler.instrument("performTransaction", handler::performTransaction)));
+			server.createContext("/performTransactions",
+					executor.wrap(BankHandler.instrument("performTransactions", handler::performTransactions)));
+			server.createContext("/checkCredentials",
+					executor.wrap(BankHandler.instrument("checkCredentials", handler::checkCredentials)));
+			// Not queued behind bank requests, so the metrics can still be read when the bank is saturated
+			server.createContext("/metrics", BankServer::sendMetrics);
+			// Requests are handed to the RequestExecutor, so the dispatcher thread only accepts and admits
 			server.setExecutor(null);
 			server.start();
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			LOG.error("Could not start server", e, "port", port);
 		}
 	}
 
+	private static void sendMetrics(HttpExchange exchange) throws IOException {
+		try {
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream os = exchange.getResponseBody();
+					Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+				MetricsRegistry.shared().write(writer);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+		}
+		executor.shutdown();
+	}
+
 	public static void main(String[] args) {
-		FeesCalculator feesCalculator = new FeesCalculator();
-		DBHandler dbHandler = new DBHandler();
-		BankTransaction withdrawal = new BankWithdrawal(feesCalculator, dbHandler);
-		BankTransaction deposit = new BankDeposit(feesCalculator, dbHandler);
-		BankTransaction transfer = new BankTransfer(feesCalculator, dbHandler);
-		BankFacade facade = new BankFacade(dbHandler, withdrawal, deposit, transfer);
+		FeesCalculator feesCalculator = FeesCalculator.fromSystemProperties();
+		AccountStore accountStore = AccountStore.fromSystemProperties();
+		BankTransaction withdrawal = new BankWithdrawal(feesCalculator, accountStore);
+		BankTransaction deposit = new BankDeposit(feesCalculator, accountStore);
+		BankTransaction transfer = new BankTransfer(feesCalculator, accountStore);
+		BankFacade facade = new BankFacade(accountStore, withdrawal, deposit, transfer);
+		if (Boolean.getBoolean("bank.nio")) {
+			try {
+				NioBankServer.fromSystemProperties(facade).start();
+			} catch (IOException e) {
+				LOG.error("Could not start NIO server", e);
+			}
+		}
 		BankServer server = new BankServer(facade);
 		server.start();
 
@@ -0,0 +1,394 @@
+package bank;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import bank.logging.Logger;
+import bank.transactions.utils.TransactionCodec;
+import bank.transactions.utils.TransactionData;
+import bank.transactions.utils.TransactionResult;
+import bank.utils.BufferPool;
+
+/**
+ * Serves the binary protocol of {@link TransactionCodec} straight over TCP.
+ * A few event loops, each with its own selector, own all connections; they
+ * only read, frame and write, and hand the decoded requests to a pool of
+ * workers that call the {@link BankFacade}. Clients may pipeline requests on
+ * a connection: they are performed in order and answered in order.
+ */
+public class NioBankServer {
+	private static final Logger LOG = Logger.get(NioBankServer.class);
+	private static final int BUFFER_BYTES = 16 * 1024;
+	private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+	// Stop reading from a connection that has this many responses waiting to be written
+	private static final int MAX_PENDING_RESPONSES = 64;
+
+	private final BankFacade facade;
+	private final int port;
+	private final EventLoop[] loops;
+	private final ExecutorService workers;
+	private final BufferPool buffers;
+	private ServerSocketChannel server;
+	private Thread acceptor;
+	private volatile boolean running;
+
+	public NioBankServer(BankFacade facade, int port, int loopCount, int workerCount) {
+		this.facade = facade;
+		this.port = port;
+		this.loops = new EventLoop[loopCount];
+		AtomicInteger count = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+			Thread thread = new Thread(r, "nio-worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.buffers = new BufferPool(BUFFER_BYTES, 1024);
+	}
+
+	public static NioBankServer fromSystemProperties(BankFacade facade) {
+		int processors = Runtime.getRuntime().availableProcessors();
+		int port = Integer.getInteger("bank.nio.port", 9001);
+		int loopCount = Integer.getInteger("bank.nio.loops", Math.max(1, processors / 2));
+		int workerCount = Integer.getInteger("bank.workers", 2 * processors);
+		return new NioBankServer(facade, port, loopCount, workerCount);
+	}
+
+	public void start() throws IOException {
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress("localhost", port));
+		running = true;
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new EventLoop();
+			Thread thread = new Thread(loops[i], "nio-loop-" + (i + 1));
+			thread.setDaemon(true);
+			thread.start();
+		}
+		acceptor = new Thread(this::accept, "nio-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		LOG.info("NIO server started", "address", server.getLocalAddress(), "loops", loops.length);
+	}
+
+	public void stop() {
+		running = false;
+		try {
+			if (server != null)
+				server.close();
+		} catch (IOException e) {
+			LOG.warn("Could not close server socket", e);
+		}
+		for (EventLoop loop : loops) {
+			if (loop != null)
+				loop.selector.wakeup();
+		}
+		workers.shutdown();
+	}
+
+	public int getPort() {
+		try {
+			return ((InetSocketAddress) server.getLocalAddress()).getPort();
+		} catch (IOException e) {
+			return port;
+		}
+	}
+
+	private void accept() {
+		int next = 0;
+		while (running) {
+			try {
+				SocketChannel channel = server.accept();
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				EventLoop loop = loops[next++ % loops.length];
+				loop.execute(() -> loop.register(channel));
+			} catch (ClosedChannelException e) {
+				return;
+			} catch (IOException e) {
+				LOG.warn("Could not accept connection", e);
+			}
+		}
+	}
+
+	private class EventLoop implements Runnable {
+		private final Selector selector;
+		private final Queue<Runnable> tasks;
+
+		EventLoop() throws IOException {
+			this.selector = Selector.open();
+			this.tasks = new ConcurrentLinkedQueue<>();
+		}
+
+		void execute(Runnable task) {
+			tasks.add(task);
+			selector.wakeup();
+		}
+
+		void register(SocketChannel channel) {
+			try {
+				Connection connection = new Connection(this, channel);
+				connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			} catch (IOException e) {
+				LOG.warn("Could not register connection", e);
+			}
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				try {
+					selector.select();
+				} catch (IOException e) {
+					LOG.error("Event loop selector failed", e);
+					break;
+				}
+
+				Runnable task;
+				while ((task = tasks.poll()) != null) {
+					task.run();
+				}
+
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					Connection connection = (Connection) key.attachment();
+					try {
+						if (key.isValid() && key.isReadable())
+							connection.onReadable();
+						if (key.isValid() && key.isWritable())
+							connection.onWritable();
+					} catch (IOException | RuntimeException e) {
+						connection.close();
+					}
+				}
+			}
+
+			for (SelectionKey key : selector.keys()) {
+				((Connection) key.attachment()).close();
+			}
+			try {
+				selector.close();
+			} catch (IOException e) {
+				LOG.warn("Could not close selector", e);
+			}
+		}
+	}
+
+	private static class Request {
+		final byte kind;
+		final Object body;
+
+		Request(byte kind, Object body) {
+			this.kind = kind;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * State of one client connection. Everything except process runs on the
+	 * connection's event loop.
+	 */
+	private class Connection {
+		private final EventLoop loop;
+		private final SocketChannel channel;
+		private final ArrayDeque<ByteBuffer> out;
+		private SelectionKey key;
+		private ByteBuffer in;
+		private boolean processing;
+		private boolean closed;
+
+		Connection(EventLoop loop, SocketChannel channel) {
+			this.loop = loop;
+			this.channel = channel;
+			this.out = new ArrayDeque<>();
+			this.in = buffers.acquire();
+		}
+
+		void onReadable() throws IOException {
+			if (channel.read(in) < 0) {
+				close();
+				return;
+			}
+			dispatch();
+		}
+
+		void onWritable() throws IOException {
+			while (!out.isEmpty()) {
+				ByteBuffer buffer = out.peek();
+				channel.write(buffer);
+				if (buffer.hasRemaining())
+					break;
+				buffers.release(out.poll());
+			}
+			updateInterest();
+		}
+
+		/**
+		 * Decodes every complete frame read so far and hands them to a worker,
+		 * unless the previous ones are still being performed.
+		 */
+		void dispatch() {
+			if (processing || closed) {
+				updateInterest();
+				return;
+			}
+
+			List<Request> requests = new ArrayList<>();
+			in.flip();
+			int kind;
+			while ((kind = TransactionCodec.peekFrame(in, MAX_FRAME_BYTES)) >= 0) {
+				int end = in.position() + 4 + in.getInt(in.position());
+				TransactionCodec.readHeader(in);
+				requests.add(decode((byte) kind));
+				in.position(end);
+			}
+			if (in.remaining() >= 4)
+				ensureCapacity(4 + in.getInt(in.position()));
+			in.compact();
+
+			if (!requests.isEmpty()) {
+				processing = true;
+				try {
+					workers.execute(() -> process(requests));
+				} catch (RejectedExecutionException e) {
+					close();
+					return;
+				}
+			}
+			updateInterest();
+		}
+
+		private Request decode(byte kind) {
+			switch (kind) {
+			case TransactionCodec.CREDENTIALS_REQUEST:
+				return new Request(kind, TransactionCodec.readCredentials(in));
+			case TransactionCodec.TRANSACTION_REQUEST:
+				return new Request(kind, TransactionCodec.readTransaction(in));
+			case TransactionCodec.BATCH_REQUEST:
+				return new Request(kind, TransactionCodec.readBatch(in));
+			default:
+				throw new IllegalArgumentException("Unexpected frame kind " + kind);
+			}
+		}
+
+		private void ensureCapacity(int frameBytes) {
+			if (frameBytes <= in.capacity())
+				return;
+			ByteBuffer larger = ByteBuffer.allocate(frameBytes);
+			larger.put(in);
+			larger.flip();
+			buffers.release(in);
+			in = larger;
+		}
+
+		// Runs on a worker thread
+		private void process(List<Request> requests) {
+			List<ByteBuffer> responses = new ArrayList<>(requests.size());
+			try {
+				for (Request request : requests) {
+					responses.add(perform(request));
+				}
+			} catch (RuntimeException e) {
+				LOG.error("Could not perform requests", e);
+				loop.execute(this::close);
+				return;
+			}
+
+			loop.execute(() -> {
+				if (closed) {
+					responses.forEach(buffers::release);
+					return;
+				}
+				out.addAll(responses);
+				processing = false;
+				try {
+					onWritable();
+					dispatch();
+				} catch (IOException | RuntimeException e) {
+					close();
+				}
+			});
+		}
+
+		@SuppressWarnings("unchecked")
+		private ByteBuffer perform(Request request) {
+			switch (request.kind) {
+			case TransactionCodec.CREDENTIALS_REQUEST: {
+				TransactionCodec.Credentials credentials = (TransactionCodec.Credentials) request.body;
+				String token = facade.authenticate(credentials.getCardNumber(), credentials.getPin());
+				return encode(buffer -> TransactionCodec.writeAuthentication(buffer, token != null, token));
+			}
+			case TransactionCodec.TRANSACTION_REQUEST: {
+				TransactionResult result = facade.performTransaction((TransactionData) request.body);
+				return encode(buffer -> TransactionCodec.writeResult(buffer, result));
+			}
+			default: {
+				List<TransactionResult> results = facade.performTransactions((List<TransactionData>) request.body);
+				return encode(buffer -> TransactionCodec.writeResults(buffer, results));
+			}
+			}
+		}
+
+		private ByteBuffer encode(Consumer<ByteBuffer> encoder) {
+			ByteBuffer buffer = buffers.acquire();
+			while (true) {
+				try {
+					encoder.accept(buffer);
+					buffer.flip();
+					return buffer;
+				} catch (BufferOverflowException e) {
+					int capacity = buffer.capacity() * 2;
+					buffers.release(buffer);
+					buffer = ByteBuffer.allocate(capacity);
+				}
+			}
+		}
+
+		private void updateInterest() {
+			if (closed)
+				return;
+			int ops = 0;
+			if (in.hasRemaining() && out.size() < MAX_PENDING_RESPONSES)
+				ops |= SelectionKey.OP_READ;
+			if (!out.isEmpty())
+				ops |= SelectionKey.OP_WRITE;
+			key.interestOps(ops);
+		}
+
+		void close() {
+			if (closed)
+				return;
+			closed = true;
+			if (key != null)
+				key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Already gone
+			}
+			buffers.release(in);
+			while (!out.isEmpty()) {
+				buffers.release(out.poll());
+			}
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package bank;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import bank.logging.Logger;
+import bank.metrics.MetricsRegistry;
+
+/**
+ * Runs BankServer requests off the HttpServer dispatcher thread. At most
+ * workers + queueCapacity requests are admitted at a time; anything beyond
+ * that is answered straight away with 503 instead of piling up.
+ */
+public class RequestExecutor {
+	private static final Logger LOG = Logger.get(RequestExecutor.class);
+
+	public enum Mode {
+		Dispatcher, FixedPool, VirtualThreads
+	}
+
+	private static final byte[] BUSY_RESPONSE = "Server is busy. Try again later.".getBytes(StandardCharsets.UTF_8);
+
+	private final Mode mode;
+	private final ExecutorService workers;
+	private final Semaphore admitted;
+	private final AtomicInteger queued;
+	private final AtomicInteger active;
+
+	public RequestExecutor(Mode mode, int workerCount, int queueCapacity) {
+		this.queued = new AtomicInteger();
+		this.active = new AtomicInteger();
+		this.admitted = new Semaphore(workerCount + queueCapacity);
+
+		ExecutorService executor = null;
+		if (mode == Mode.VirtualThreads) {
+			executor = newVirtualThreadExecutor();
+			if (executor == null) {
+				LOG.warn("Virtual threads are not supported by this JVM, using a fixed pool");
+				mode = Mode.FixedPool;
+			}
+		}
+		if (mode == Mode.FixedPool) {
+			executor = Executors.newFixedThreadPool(workerCount, new WorkerThreadFactory());
+		}
+		this.mode = mode;
+		this.workers = executor;
+	}
+
+	public static RequestExecutor fromSystemProperties() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		Mode mode = Mode.valueOf(System.getProperty("bank.executor", Mode.FixedPool.name()));
+		int workerCount = Integer.getInteger("bank.workers", 2 * processors);
+		int queueCapacity = Integer.getInteger("bank.queue", 256);
+		return new RequestExecutor(mode, workerCount, queueCapacity);
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public int getQueueDepth() {
+		return queued.get();
+	}
+
+	public int getActiveWorkers() {
+		return active.get();
+	}
+
+	/**
+	 * Exposes the queue depth and the number of busy workers as gauges.
+	 */
+	public void registerMetrics(MetricsRegistry metrics) {
+		metrics.gauge("bank_executor_queued_requests", "Requests admitted and waiting for a worker",
+				this::getQueueDepth);
+		metrics.gauge("bank_executor_active_workers", "Workers handling a request", this::getActiveWorkers);
+	}
+
+	public HttpHandler wrap(HttpHandler handler) {
+		return exchange -> submit(exchange, handler);
+	}
+
+	public void shutdown() {
+		if (workers != null) {
+			workers.shutdown();
+			try {
+				workers.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void submit(HttpExchange exchange, HttpHandler handler) throws IOException {
+		if (!admitted.tryAcquire()) {
+			rejectBusy(exchange);
+			return;
+		}
+
+		if (workers == null) {
+			run(exchange, handler, false);
+			return;
+		}
+
+		queued.incrementAndGet();
+		try {
+			workers.execute(() -> run(exchange, handler, true));
+		} catch (RejectedExecutionException e) {
+			queued.decrementAndGet();
+			admitted.release();
+			rejectBusy(exchange);
+		}
+	}
+
+	private void run(HttpExchange exchange, HttpHandler handler, boolean wasQueued) {
+		if (wasQueued)
+			queued.decrementAndGet();
+		active.incrementAndGet();
+		try {
+			handler.handle(exchange);
+		} catch (IOException | RuntimeException e) {
+			LOG.error("Request handler failed", e, "uri", exchange.getRequestURI());
+			exchange.close();
+		} finally {
+			active.decrementAndGet();
+			admitted.release();
+		}
+	}
+
+	private void rejectBusy(HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().set("Retry-After", "1");
+		exchange.sendResponseHeaders(503, BUSY_RESPONSE.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(BUSY_RESPONSE);
+		}
+		exchange.close();
+	}
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static class WorkerThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "bank-worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package bank.db;
+
+import java.util.function.Supplier;
+
+import bank.exceptions.CardNotFoundException;
+import bank.exceptions.StaleBalanceException;
+import bank.exceptions.UnsuccessfulBalanceUpdate;
+import bank.exceptions.UserNotFoundException;
+import bank.transactions.utils.AccountContext;
+import bank.transactions.utils.AccountType;
+
+/**
+ * Where the bank keeps its cards, clients and account balances.
+ * {@link DBHandler} keeps them in SQLite and {@link InMemoryAccountStore} in
+ * memory. Balances are in cents.
+ */
+public interface AccountStore {
+	String getCardOwner(String cardNumber) throws CardNotFoundException;
+
+	long getBalance(String user, AccountType type) throws UserNotFoundException;
+
+	void setBalance(String user, AccountType type, long balance) throws UnsuccessfulBalanceUpdate;
+
+	void updateBalance(String user, AccountType type, long expectedBalance, long balance)
+			throws UnsuccessfulBalanceUpdate, StaleBalanceException;
+
+	/**
+	 * Atomically moves the given accounts from their expected balances to the
+	 * new ones. Nothing is written if any account no longer holds the balance
+	 * the caller read, in which case a StaleBalanceException is thrown and the
+	 * caller should re-read and retry.
+	 */
+	void updateBalances(String user, AccountType[] types, long[] expectedBalances, long[] balances)
+			throws UnsuccessfulBalanceUpdate, StaleBalanceException;
+
+	/**
+	 * Runs the work as a single transaction: every read and write it makes
+	 * through this store on the calling thread is kept if the work returns
+	 * and undone if it throws. Nested calls join the outer transaction.
+	 */
+	<T> T inTransaction(Supplier<T> work) throws UnsuccessfulBalanceUpdate;
+
+	/**
+	 * Returns whether the calling thread is inside inTransaction.
+	 */
+	boolean isInTransaction();
+
+	boolean isStudent(String user) throws UserNotFoundException;
+
+	char[] getPIN(String user) throws UserNotFoundException;
+
+	void setPIN(String cardNumber, char[] pin) throws CardNotFoundException;
+
+	AccountContext getAccountContext(String cardNumber) throws CardNotFoundException;
+
+	void closeConnection();
+
+	/**
+	 * Picks the store from system properties: bank.store=memory serves
+	 * everything from an {@link InMemoryAccountStore} loaded from bank.db at
+	 * startup, anything else uses {@link DBHandler#fromSystemProperties()}.
+	 */
+	static AccountStore fromSystemProperties() {
+		if ("memory".equals(System.getProperty("bank.store"))) {
+			InMemoryAccountStore store = new InMemoryAccountStore();
+			DBHandler dbHandler = new DBHandler();
+			try {
+				dbHandler.copyTo(store);
+			} finally {
+				dbHandler.closeConnection();
+			}
+			return store;
+		}
+		return DBHandler.fromSystemProperties();
+	}
+}
@@ -0,0 +1,228 @@
+package bank.db;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import bank.logging.Logger;
+import bank.transactions.utils.AccountType;
+import bank.utils.Money;
+
+/**
+ * Append-only, checksummed log of committed balance changes. The log is split
+ * into numbered segments so that a flush can rotate to a fresh segment and
+ * delete the old ones once their balances are safely in SQLite.
+ *
+ * Each record holds the absolute new balances in cents of one commit, which
+ * may cover several users, so replaying a record more than once is harmless.
+ * A record is checksummed as a whole and replayed all or nothing. Records
+ * written before balances were kept in cents hold doubles and lack the
+ * CENTS_RECORD flag in their length; they are still replayed.
+ */
+public class BalanceLog {
+	private static final Logger LOG = Logger.get(BalanceLog.class);
+	private static final int CENTS_RECORD = 1 << 30;
+	private static final int MAX_RECORD_BYTES = 1 << 20;
+
+	public interface Replay {
+		public void apply(String user, AccountType[] types, long[] balances) throws IOException;
+	}
+
+	/**
+	 * The new balances of some of one user's accounts.
+	 */
+	public static class Change {
+		final String user;
+		final AccountType[] types;
+		final long[] balances;
+
+		public Change(String user, AccountType[] types, long[] balances) {
+			this.user = user;
+			this.types = types;
+			this.balances = balances;
+		}
+	}
+
+	private final File directory;
+	private final String prefix;
+	private final List<File> sealed;
+	private File currentFile;
+	private FileChannel current;
+	private long nextSegment;
+
+	public BalanceLog(File directory, String prefix) throws IOException {
+		this.directory = directory;
+		this.prefix = prefix;
+		this.sealed = new ArrayList<>();
+		// Segments left over from a previous run are sealed until replayed
+		for (File segment : segments()) {
+			nextSegment = Math.max(nextSegment, segmentNumber(segment) + 1);
+			sealed.add(segment);
+		}
+		openSegment();
+	}
+
+	/**
+	 * Appends a record and forces it to disk before returning. Concurrent
+	 * callers share fsyncs: a force issued by one thread covers every record
+	 * written before it.
+	 */
+	public void append(String user, AccountType[] types, long[] balances) throws IOException {
+		append(Collections.singletonList(new Change(user, types, balances)));
+	}
+
+	/**
+	 * Appends the changes as a single record, so that after a crash either
+	 * all of them are replayed or none is.
+	 */
+	public void append(List<Change> changes) throws IOException {
+		ByteBuffer record = encode(changes);
+		FileChannel channel;
+		synchronized (this) {
+			channel = current;
+			while (record.hasRemaining()) {
+				channel.write(record);
+			}
+		}
+		channel.force(false);
+	}
+
+	/**
+	 * Seals the current segment and starts a new one. The caller must make
+	 * sure no append is in flight.
+	 */
+	public synchronized void rotate() throws IOException {
+		current.force(false);
+		current.close();
+		sealed.add(currentFile);
+		openSegment();
+	}
+
+	/**
+	 * Deletes the segments sealed by earlier calls to rotate.
+	 */
+	public synchronized void deleteSealed() {
+		for (File segment : sealed) {
+			if (!segment.delete()) {
+				LOG.warn("Could not delete balance log segment", "segment", segment);
+			}
+		}
+		sealed.clear();
+	}
+
+	public synchronized void close() throws IOException {
+		boolean empty = current.size() == 0;
+		current.close();
+		if (empty)
+			currentFile.delete();
+	}
+
+	/**
+	 * Replays every complete record of the sealed segments, oldest first,
+	 * stopping at the first torn or corrupt record of a segment.
+	 */
+	public synchronized void replay(Replay replay) throws IOException {
+		for (File segment : sealed) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+				while (readRecord(in, replay)) {
+				}
+			}
+		}
+	}
+
+	private boolean readRecord(DataInputStream in, Replay replay) throws IOException {
+		int length;
+		boolean cents;
+		byte[] payload;
+		long checksum;
+		try {
+			length = in.readInt();
+			cents = (length & CENTS_RECORD) != 0;
+			length &= ~CENTS_RECORD;
+			if (length <= 0 || length > MAX_RECORD_BYTES)
+				return false;
+			payload = new byte[length];
+			in.readFully(payload);
+			checksum = in.readLong();
+		} catch (EOFException e) {
+			return false;
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		if (crc.getValue() != checksum)
+			return false;
+
+		List<Change> changes = new ArrayList<>();
+		DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+		while (record.available() > 0) {
+			String user = record.readUTF();
+			int count = record.readByte();
+			AccountType[] types = new AccountType[count];
+			long[] balances = new long[count];
+			for (int i = 0; i < count; i++) {
+				types[i] = AccountType.values()[record.readByte()];
+				balances[i] = cents ? record.readLong() : (long) Math.rint(record.readDouble() * Money.CENTS_PER_UNIT);
+			}
+			changes.add(new Change(user, types, balances));
+		}
+		for (Change change : changes) {
+			replay.apply(change.user, change.types, change.balances);
+		}
+		return true;
+	}
+
+	private ByteBuffer encode(List<Change> changes) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * changes.size());
+		DataOutputStream payload = new DataOutputStream(bytes);
+		for (Change change : changes) {
+			payload.writeUTF(change.user);
+			payload.writeByte(change.types.length);
+			for (int i = 0; i < change.types.length; i++) {
+				payload.writeByte(change.types[i].ordinal());
+				payload.writeLong(change.balances[i]);
+			}
+		}
+		byte[] data = bytes.toByteArray();
+
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		ByteBuffer record = ByteBuffer.allocate(4 + data.length + 8);
+		record.putInt(data.length | CENTS_RECORD).put(data).putLong(crc.getValue());
+		record.flip();
+		return record;
+	}
+
+	private void openSegment() throws IOException {
+		currentFile = new File(directory, prefix + "." + nextSegment++);
+		current = FileChannel.open(currentFile.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private List<File> segments() {
+		File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix + ".")
+				&& name.substring(prefix.length() + 1).matches("[0-9]+"));
+		if (files == null)
+			return new ArrayList<>();
+		Arrays.sort(files, (a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)));
+		return new ArrayList<>(Arrays.asList(files));
+	}
+
+	private long segmentNumber(File segment) {
+		return Long.parseLong(segment.getName().substring(prefix.length() + 1));
+	}
+}
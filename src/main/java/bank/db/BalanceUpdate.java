@@ -0,0 +1,28 @@
+package bank.db;
+
+import bank.transactions.utils.AccountType;
+
+public class BalanceUpdate {
+	private final String user;
+	private final AccountType type;
+	private final long balance;
+
+	public BalanceUpdate(String user, AccountType type, long balance) {
+		super();
+		this.user = user;
+		this.type = type;
+		this.balance = balance;
+	}
+
+	public String getUser() {
+		return user;
+	}
+
+	public AccountType getType() {
+		return type;
+	}
+
+	public long getBalance() {
+		return balance;
+	}
+}
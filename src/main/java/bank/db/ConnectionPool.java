@@ -0,0 +1,93 @@
+package bank.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of JDBC connections. Connections are opened lazily up to the
+ * maximum size and handed out as {@link PooledConnection}s, which keep their
+ * prepared statements cached for as long as the connection lives.
+ */
+public class ConnectionPool {
+	private static final long ACQUIRE_TIMEOUT_MILLIS = 5000;
+	private static final String BUSY_TIMEOUT_MILLIS = "5000";
+
+	private final String url;
+	private final int maxSize;
+	private final BlockingQueue<PooledConnection> idle;
+	private final AtomicInteger opened;
+	private volatile boolean closed;
+
+	public ConnectionPool(String url, int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Pool size must be at least 1");
+		this.url = url;
+		this.maxSize = maxSize;
+		this.idle = new ArrayBlockingQueue<>(maxSize);
+		this.opened = new AtomicInteger();
+	}
+
+	public PooledConnection acquire() throws SQLException {
+		if (closed)
+			throw new SQLException("Connection pool is closed");
+
+		PooledConnection conn = idle.poll();
+		if (conn != null)
+			return conn;
+
+		if (opened.incrementAndGet() <= maxSize) {
+			try {
+				return new PooledConnection(this, open());
+			} catch (SQLException e) {
+				opened.decrementAndGet();
+				throw e;
+			}
+		}
+		opened.decrementAndGet();
+
+		try {
+			conn = idle.poll(ACQUIRE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection");
+		}
+		if (conn == null)
+			throw new SQLException("Timed out waiting for a connection");
+		return conn;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void close() {
+		closed = true;
+		PooledConnection conn;
+		while ((conn = idle.poll()) != null) {
+			discard(conn);
+		}
+	}
+
+	void release(PooledConnection conn) {
+		if (closed || conn.isBroken() || !idle.offer(conn)) {
+			discard(conn);
+		}
+	}
+
+	private void discard(PooledConnection conn) {
+		opened.decrementAndGet();
+		conn.closePhysical();
+	}
+
+	private Connection open() throws SQLException {
+		Properties properties = new Properties();
+		properties.setProperty("busy_timeout", BUSY_TIMEOUT_MILLIS);
+		return DriverManager.getConnection(url, properties);
+	}
+}
@@ -1,181 +1,554 @@
 package bank.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 import bank.exceptions.CardNotFoundException;
+import bank.exceptions.StaleBalanceException;
 import bank.exceptions.UnsuccessfulBalanceUpdate;
 import bank.exceptions.UserNotFoundException;
+import bank.logging.Logger;
+import bank.metrics.MetricsRegistry;
+import bank.metrics.Timer;
+import bank.transactions.utils.AccountContext;
 import bank.transactions.utils.AccountType;
 
-public class DBHandler {
-	
-	private Connection conn;
-	
+public class DBHandler implements AccountStore {
+	private static final Logger LOG = Logger.get(DBHandler.class);
+	private static final String DEFAULT_URL = "jdbc:sqlite:bank.db";
+	private static final int DEFAULT_POOL_SIZE = 4;
+	// How long a caller waits for its group commit before giving up on it
+	private static final long GROUP_COMMIT_TIMEOUT_SECONDS = 30;
+	private static final String MIGRATE_TO_CENTS = "bank.db.migrateToCents";
+	private static final Set<String> CENTS_COLUMNS = new HashSet<>(Arrays.asList("username", "type", "cents"));
+	private static final Set<String> UNITS_COLUMNS = new HashSet<>(Arrays.asList("username", "type", "balance"));
+
+	private static final String SELECT_CARD_OWNER = "SELECT username FROM cards WHERE card = ?;";
+	private static final String SELECT_BALANCE = "SELECT cents FROM accounts WHERE username = ? AND type = ?;";
+	private static final String REPLACE_BALANCE = "REPLACE INTO accounts(username, type, cents) VALUES (?, ?, ?);";
+	private static final String UPDATE_BALANCE_IF_UNCHANGED =
+			"UPDATE accounts SET cents = ? WHERE username = ? AND type = ? AND cents = ?;";
+	private static final String SELECT_STUDENT = "SELECT student FROM clients WHERE username = ?;";
+	private static final String SELECT_PIN = "SELECT pin FROM cards WHERE username = ?;";
+	private static final String UPDATE_PIN = "UPDATE cards SET pin = ? WHERE card = ?;";
+	private static final String SELECT_CLIENTS = "SELECT username, student FROM clients;";
+	private static final String SELECT_CARDS = "SELECT card, username, pin FROM cards;";
+	private static final String SELECT_ACCOUNTS = "SELECT username, type, cents FROM accounts;";
+	private static final String SELECT_ACCOUNT_CONTEXT =
+			"SELECT cards.username, cards.pin, clients.student, accounts.type, accounts.cents\n"
+			+ " FROM cards\n"
+			+ " LEFT JOIN clients ON clients.username = cards.username\n"
+			+ " LEFT JOIN accounts ON accounts.username = cards.username\n"
+			+ " WHERE cards.card = ?;";
+
+	private static final Timer CARD_OWNER_TIMER = queryTimer("getCardOwner");
+	private static final Timer BALANCE_TIMER = queryTimer("getBalance");
+	private static final Timer SET_BALANCE_TIMER = queryTimer("setBalance");
+	private static final Timer UPDATE_BALANCES_TIMER = queryTimer("updateBalances");
+	private static final Timer TRANSACTION_TIMER = queryTimer("transaction");
+	private static final Timer STUDENT_TIMER = queryTimer("isStudent");
+	private static final Timer PIN_TIMER = queryTimer("getPIN");
+	private static final Timer SET_PIN_TIMER = queryTimer("setPIN");
+	private static final Timer ACCOUNT_CONTEXT_TIMER = queryTimer("getAccountContext");
+
+	private ConnectionPool pool;
+	private GroupCommitWriter writer;
+	// Connection of the transaction opened by inTransaction on this thread
+	private final ThreadLocal<PooledConnection> bound = new ThreadLocal<>();
+
 	public DBHandler() {
-		createDatabase();
+		this(DEFAULT_URL, DEFAULT_POOL_SIZE);
 	}
-	
-	public String getCardOwner(String cardNumber) throws CardNotFoundException {
-		String query = "SELECT username FROM cards WHERE card = '" + cardNumber + "';";
-		ResultSet rs = executeQuery(query);
+
+	public DBHandler(String url, int poolSize) {
+		pool = new ConnectionPool(url, poolSize);
 		try {
-			if (rs.next()) {
-				String username = rs.getString("username");
-				return username;
-			} else {
-				throw new CardNotFoundException();
+			createDatabase();
+		} catch (IllegalStateException e) {
+			pool.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a handler whose balance writes go through a
+	 * {@link GroupCommitWriter} that commits up to maxBatch writes at a time,
+	 * waiting at most maxDelayMillis for a batch to fill up.
+	 */
+	public DBHandler(String url, int poolSize, int maxBatch, long maxDelayMillis) {
+		this(url, poolSize);
+		writer = new GroupCommitWriter(pool, maxBatch, maxDelayMillis);
+	}
+
+	/**
+	 * Picks the handler from system properties: bank.writeBehind enables the
+	 * in-memory balance cache and bank.groupCommit batches balance writes.
+	 */
+	public static DBHandler fromSystemProperties() {
+		if (Boolean.getBoolean("bank.writeBehind"))
+			return new WriteBehindDBHandler();
+		if (Boolean.getBoolean("bank.groupCommit"))
+			return new DBHandler(DEFAULT_URL, DEFAULT_POOL_SIZE, Integer.getInteger("bank.groupCommit.batch", 64),
+					Long.getLong("bank.groupCommit.delayMillis", 2));
+		return new DBHandler();
+	}
+
+	public String getCardOwner(String cardNumber) throws CardNotFoundException {
+		try (Timer.Sample sample = CARD_OWNER_TIMER.time(); PooledConnection conn = acquire()) {
+			PreparedStatement stmt = conn.prepare(SELECT_CARD_OWNER);
+			stmt.setString(1, cardNumber);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					return rs.getString("username");
+				}
 			}
 		} catch (SQLException e) {
-			throw new CardNotFoundException();
+			LOG.error("Could not look up card owner", e);
 		}
+		throw new CardNotFoundException();
 	}
-	
-	public double getBalance(String user, AccountType type) throws UserNotFoundException {
-		String query = "SELECT balance FROM accounts WHERE username = '" + user + "' AND type = '" + type.ordinal() + "';";
-		ResultSet rs = executeQuery(query);
+
+	public long getBalance(String user, AccountType type) throws UserNotFoundException {
+		try (Timer.Sample sample = BALANCE_TIMER.time(); PooledConnection conn = acquire()) {
+			PreparedStatement stmt = conn.prepare(SELECT_BALANCE);
+			stmt.setString(1, user);
+			stmt.setInt(2, type.ordinal());
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					return rs.getLong("cents");
+				}
+			}
+		} catch (SQLException e) {
+			LOG.error("Could not read balance", e, "user", user, "type", type);
+		}
+		throw new UserNotFoundException();
+	}
+
+	public void setBalance(String user, AccountType type, long balance) throws UnsuccessfulBalanceUpdate {
+		if (writer != null && bound.get() == null) {
+			try {
+				await(writer.submit(user, new AccountType[] { type }, null, new long[] { balance }));
+			} catch (StaleBalanceException e) {
+				// Unconditional writes are never stale
+				throw new UnsuccessfulBalanceUpdate();
+			}
+			return;
+		}
+
+		try (Timer.Sample sample = SET_BALANCE_TIMER.time(); PooledConnection conn = acquire()) {
+			PreparedStatement stmt = conn.prepare(REPLACE_BALANCE);
+			stmt.setString(1, user);
+			stmt.setInt(2, type.ordinal());
+			stmt.setLong(3, balance);
+			stmt.executeUpdate();
+		} catch (SQLException e) {
+			LOG.error("Could not write balance", e, "user", user, "type", type);
+			throw new UnsuccessfulBalanceUpdate();
+		}
+	}
+
+	/**
+	 * Writes all of the given balances in a single SQLite transaction.
+	 */
+	protected void replaceBalances(List<BalanceUpdate> updates) throws SQLException {
+		if (updates.isEmpty())
+			return;
+
+		try (PooledConnection conn = pool.acquire()) {
+			Connection connection = conn.getConnection();
+			connection.setAutoCommit(false);
+			try {
+				PreparedStatement stmt = conn.prepare(REPLACE_BALANCE);
+				for (BalanceUpdate update : updates) {
+					stmt.setString(1, update.getUser());
+					stmt.setInt(2, update.getType().ordinal());
+					stmt.setLong(3, update.getBalance());
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+				connection.commit();
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		}
+	}
+
+	public void updateBalance(String user, AccountType type, long expectedBalance, long balance)
+			throws UnsuccessfulBalanceUpdate, StaleBalanceException {
+		updateBalances(user, new AccountType[] { type }, new long[] { expectedBalance }, new long[] { balance });
+	}
+
+	@Override
+	public void updateBalances(String user, AccountType[] types, long[] expectedBalances, long[] balances)
+			throws UnsuccessfulBalanceUpdate, StaleBalanceException {
+		if (bound.get() != null) {
+			updateBoundBalances(bound.get(), user, types, expectedBalances, balances);
+			return;
+		}
+		if (writer != null) {
+			await(writer.submit(user, types, expectedBalances, balances));
+			return;
+		}
+
+		try (Timer.Sample sample = UPDATE_BALANCES_TIMER.time(); PooledConnection conn = pool.acquire()) {
+			Connection connection = conn.getConnection();
+			connection.setAutoCommit(false);
+			try {
+				if (!writeBalances(conn, user, types, expectedBalances, balances)) {
+					connection.rollback();
+					throw new StaleBalanceException();
+				}
+				connection.commit();
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			LOG.error("Could not update balances", e, "user", user);
+			throw new UnsuccessfulBalanceUpdate();
+		}
+	}
+
+	/**
+	 * Runs the work in a single database transaction. Every read and write
+	 * the work makes through this handler on the calling thread joins that
+	 * transaction, which is committed once the work returns and rolled back
+	 * if it throws. Nested calls join the outer transaction.
+	 */
+	public <T> T inTransaction(Supplier<T> work) throws UnsuccessfulBalanceUpdate {
+		if (bound.get() != null)
+			return work.get();
+
+		PooledConnection conn;
 		try {
-			if (rs.next()) {
-				double balance = rs.getDouble("balance");
-				return balance;
-			} else {
-				throw new UserNotFoundException();
+			conn = pool.acquire();
+		} catch (SQLException e) {
+			LOG.error("Could not open store transaction", e);
+			throw new UnsuccessfulBalanceUpdate();
+		}
+		try (Timer.Sample sample = TRANSACTION_TIMER.time(); Statement stmt = conn.createStatement()) {
+			// Take the write lock up front so no other writer can slip in between our reads and writes
+			stmt.execute("BEGIN IMMEDIATE;");
+			bound.set(conn);
+			T result;
+			try {
+				result = work.get();
+			} catch (RuntimeException e) {
+				stmt.execute("ROLLBACK;");
+				throw e;
 			}
+			stmt.execute("COMMIT;");
+			return result;
 		} catch (SQLException e) {
-			throw new UserNotFoundException();
-		}
-	}
-	
-	public void setBalance(String user, AccountType type, double balance) throws UnsuccessfulBalanceUpdate {
-		String query = String.format(
-				"REPLACE INTO accounts(username, type, balance) VALUES ('%s', '%d', %f);",
-				user, type.ordinal(), balance);
-		
-		boolean balanceSet = executeUpdate(query);
-		
-		if (!balanceSet)
+			LOG.error("Store transaction failed", e);
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute("ROLLBACK;");
+			} catch (SQLException rollback) {
+				// Nothing left to undo
+			}
 			throw new UnsuccessfulBalanceUpdate();
-		
+		} finally {
+			bound.remove();
+			conn.close();
+		}
 	}
-	
-	public boolean isStudent(String user) throws UserNotFoundException {
-		String query = "SELECT student FROM clients WHERE username = '" + user + "';";
-		ResultSet rs = executeQuery(query);
+
+	@Override
+	public boolean isInTransaction() {
+		return bound.get() != null;
+	}
+
+	private void updateBoundBalances(PooledConnection conn, String user, AccountType[] types, long[] expectedBalances,
+			long[] balances) throws UnsuccessfulBalanceUpdate, StaleBalanceException {
+		try (Timer.Sample sample = UPDATE_BALANCES_TIMER.time(); Statement stmt = conn.createStatement()) {
+			stmt.execute("SAVEPOINT balances;");
+			if (!writeBalances(conn, user, types, expectedBalances, balances)) {
+				stmt.execute("ROLLBACK TO balances;");
+				stmt.execute("RELEASE balances;");
+				throw new StaleBalanceException();
+			}
+			stmt.execute("RELEASE balances;");
+		} catch (SQLException e) {
+			LOG.error("Could not update balances", e, "user", user);
+			throw new UnsuccessfulBalanceUpdate();
+		}
+	}
+
+	private PooledConnection acquire() throws SQLException {
+		PooledConnection conn = bound.get();
+		if (conn != null)
+			return conn.hold();
+		return pool.acquire();
+	}
+
+	/**
+	 * Writes the given balances on a connection that is already inside a
+	 * transaction. Returns false if expectedBalances is given and some account
+	 * no longer holds its expected balance; the caller must then roll back.
+	 */
+	static boolean writeBalances(PooledConnection conn, String user, AccountType[] types, long[] expectedBalances,
+			long[] balances) throws SQLException {
+		if (expectedBalances == null) {
+			PreparedStatement stmt = conn.prepare(REPLACE_BALANCE);
+			for (int i = 0; i < types.length; i++) {
+				stmt.setString(1, user);
+				stmt.setInt(2, types[i].ordinal());
+				stmt.setLong(3, balances[i]);
+				stmt.executeUpdate();
+			}
+			return true;
+		}
+
+		PreparedStatement stmt = conn.prepare(UPDATE_BALANCE_IF_UNCHANGED);
+		for (int i = 0; i < types.length; i++) {
+			stmt.setLong(1, balances[i]);
+			stmt.setString(2, user);
+			stmt.setInt(3, types[i].ordinal());
+			stmt.setLong(4, expectedBalances[i]);
+			if (stmt.executeUpdate() != 1)
+				return false;
+		}
+		return true;
+	}
+
+	private static void await(CompletableFuture<Void> result) throws UnsuccessfulBalanceUpdate, StaleBalanceException {
 		try {
-			if (rs.next()) {
-				boolean isStudent = rs.getBoolean("student");
-				return isStudent;
-			} else {
-				throw new UserNotFoundException();
+			result.get(GROUP_COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			LOG.error("Timed out waiting for group commit");
+			throw new UnsuccessfulBalanceUpdate();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnsuccessfulBalanceUpdate();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof StaleBalanceException)
+				throw (StaleBalanceException) e.getCause();
+			throw new UnsuccessfulBalanceUpdate();
+		}
+	}
+
+	public boolean isStudent(String user) throws UserNotFoundException {
+		try (Timer.Sample sample = STUDENT_TIMER.time(); PooledConnection conn = acquire()) {
+			PreparedStatement stmt = conn.prepare(SELECT_STUDENT);
+			stmt.setString(1, user);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					return rs.getBoolean("student");
+				}
 			}
 		} catch (SQLException e) {
-			throw new UserNotFoundException();
+			LOG.error("Could not read student status", e, "user", user);
 		}
+		throw new UserNotFoundException();
 	}
-	
+
 	public char[] getPIN(String user) throws UserNotFoundException {
-		String query = "SELECT pin FROM cards WHERE username = '" + user + "';";
-		ResultSet rs = executeQuery(query);
-		try {
-			if (rs.next()) {
-				String pin = rs.getString("pin");
-				return pin.toCharArray();
-			} else {
-				throw new UserNotFoundException();
+		try (Timer.Sample sample = PIN_TIMER.time(); PooledConnection conn = acquire()) {
+			PreparedStatement stmt = conn.prepare(SELECT_PIN);
+			stmt.setString(1, user);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					return rs.getString("pin").toCharArray();
+				}
 			}
 		} catch (SQLException e) {
-			throw new UserNotFoundException();
+			LOG.error("Could not read PIN", e, "user", user);
 		}
+		throw new UserNotFoundException();
 	}
-	
-	private void createDatabase() {
-		String url = "jdbc:sqlite:bank.db";
 
-		try {
-			conn = DriverManager.getConnection(url);
-			Statement stmt = conn.createStatement();
-			createTables(stmt);
+	public void setPIN(String cardNumber, char[] pin) throws CardNotFoundException {
+		try (Timer.Sample sample = SET_PIN_TIMER.time(); PooledConnection conn = acquire()) {
+			PreparedStatement stmt = conn.prepare(UPDATE_PIN);
+			stmt.setString(1, new String(pin));
+			stmt.setString(2, cardNumber);
+			if (stmt.executeUpdate() == 1)
+				return;
 		} catch (SQLException e) {
-			System.out.println("SQLite Database creation: " + e.getMessage());
+			LOG.error("Could not change PIN", e);
 		}
+		throw new CardNotFoundException();
 	}
 
-	private void createTables(Statement stmt) throws SQLException {
-		if (conn != null) {
-			String createTable;
-
-			// Create table for clients
-			createTable = "CREATE TABLE IF NOT EXISTS clients (\n" 
-										+ " username text NOT NULL,\n"
-										+ " first text NOT NULL,\n" 
-										+ " last text NOT NULL,\n" 
-										+ " student integer,\n" 
-										+ " PRIMARY KEY(username)" 
-						+ ");";
-			stmt.execute(createTable);
-
-			// Create table for accounts
-			createTable = "CREATE TABLE IF NOT EXISTS accounts (\n" 
-										+ " username text NOT NULL,\n"
-										+ " type integer,\n" 
-										+ " balance real,\n" 
-										+ " PRIMARY KEY(username, type)" 
-						+ ");";
-			stmt.execute(createTable);
-			
-			// Create table for cards
-			createTable = "CREATE TABLE IF NOT EXISTS cards (\n" 
-										+ " card text NOT NULL,\n"
-										+ " username text NOT NULL,\n"
-										+ " pin text NOT NULL,\n" 
-										+ " PRIMARY KEY(card)" 
-						+ ");";
-			
-			
-			stmt.execute(createTable);
-		}
-	}
-	
-	private ResultSet executeQuery(String query) {
-		Statement stmt;
-		ResultSet rs;
-		
-		try {
-			System.out.println("Connection: " + conn);
-			stmt = conn.createStatement();
-			rs = stmt.executeQuery(query);
+	public AccountContext getAccountContext(String cardNumber) throws CardNotFoundException {
+		try (Timer.Sample sample = ACCOUNT_CONTEXT_TIMER.time(); PooledConnection conn = acquire()) {
+			PreparedStatement stmt = conn.prepare(SELECT_ACCOUNT_CONTEXT);
+			stmt.setString(1, cardNumber);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next()) {
+					throw new CardNotFoundException();
+				}
+
+				String username = rs.getString("username");
+				char[] pin = rs.getString("pin").toCharArray();
+				boolean student = rs.getBoolean("student");
+				Boolean isStudent = rs.wasNull() ? null : student;
+
+				AccountType[] types = AccountType.values();
+				long[] balances = new long[types.length];
+				boolean[] hasAccount = new boolean[types.length];
+				do {
+					int type = rs.getInt("type");
+					if (!rs.wasNull() && type >= 0 && type < types.length) {
+						balances[type] = rs.getLong("cents");
+						hasAccount[type] = true;
+					}
+				} while (rs.next());
+
+				return new AccountContext(cardNumber, username, pin, isStudent, balances, hasAccount);
+			}
 		} catch (SQLException e) {
-			e.printStackTrace();
-			return null;
+			LOG.error("Could not load account context", e);
 		}
+		throw new CardNotFoundException();
+	}
 
-		return rs;
+	/**
+	 * Loads every client, card and account into the given store.
+	 */
+	public void copyTo(InMemoryAccountStore store) {
+		AccountType[] types = AccountType.values();
+		try (PooledConnection conn = pool.acquire()) {
+			try (ResultSet rs = conn.prepare(SELECT_CLIENTS).executeQuery()) {
+				while (rs.next()) {
+					store.addClient(rs.getString("username"), rs.getBoolean("student"));
+				}
+			}
+			try (ResultSet rs = conn.prepare(SELECT_CARDS).executeQuery()) {
+				while (rs.next()) {
+					store.addCard(rs.getString("card"), rs.getString("username"), rs.getString("pin").toCharArray());
+				}
+			}
+			try (ResultSet rs = conn.prepare(SELECT_ACCOUNTS).executeQuery()) {
+				while (rs.next()) {
+					int type = rs.getInt("type");
+					if (type >= 0 && type < types.length)
+						store.addAccount(rs.getString("username"), types[type], rs.getLong("cents"));
+				}
+			}
+		} catch (SQLException e) {
+			LOG.error("Could not copy database", e);
+		}
 	}
-	
-	private boolean executeUpdate(String query) {
-		Statement stmt;
-		try {
-			stmt = conn.createStatement();
-			stmt.executeUpdate(query);
 
+	private void createDatabase() {
+		try (PooledConnection conn = pool.acquire();
+				Statement stmt = conn.createStatement()) {
+			checkAccounts(conn.getConnection(), stmt);
+			createTables(stmt);
 		} catch (SQLException e) {
-			e.printStackTrace();
-			return false;
+			LOG.error("Could not create database tables", e);
 		}
+	}
 
-		return true;
+	/**
+	 * Checks that an existing accounts table keeps balances in cents. A table
+	 * that still keeps them as REAL units is migrated only if the
+	 * bank.db.migrateToCents system property is true. Otherwise, or if the
+	 * table has any other shape, the database is refused.
+	 */
+	private void checkAccounts(Connection connection, Statement stmt) throws SQLException {
+		Set<String> columns = new HashSet<>();
+		try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(accounts);")) {
+			while (rs.next()) {
+				columns.add(rs.getString("name"));
+			}
+		}
+		if (columns.isEmpty() || columns.equals(CENTS_COLUMNS))
+			return;
+
+		if (!columns.equals(UNITS_COLUMNS)) {
+			LOG.error("Accounts table has an unexpected shape", "columns", columns);
+			throw new IllegalStateException("Unexpected accounts table columns " + columns);
+		}
+		if (!Boolean.getBoolean(MIGRATE_TO_CENTS)) {
+			LOG.error("Account balances are still kept in units", "migrateWith", "-D" + MIGRATE_TO_CENTS + "=true");
+			throw new IllegalStateException("Account balances are not kept in cents");
+		}
+		migrateToCents(connection, stmt);
 	}
 
-	public void closeConnection() {
+	/**
+	 * Renames the accounts table to accounts_units, which is kept as a backup,
+	 * and copies its balances into a new accounts table as cents, rounded to
+	 * the nearest cent.
+	 */
+	private void migrateToCents(Connection connection, Statement stmt) throws SQLException {
+		LOG.info("Migrating account balances to cents", "backup", "accounts_units");
+		connection.setAutoCommit(false);
 		try {
-			if (conn != null) {
-				conn.close();
-			}
-		} catch (Exception e) {
-			System.out.println("Error closing connection: " + e);
+			stmt.execute("ALTER TABLE accounts RENAME TO accounts_units;");
+			createTables(stmt);
+			stmt.execute("INSERT INTO accounts(username, type, cents)"
+					+ " SELECT username, type, CAST(ROUND(COALESCE(balance, 0) * 100) AS INTEGER) FROM accounts_units;");
+			connection.commit();
+		} catch (SQLException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(true);
 		}
 	}
+
+	private void createTables(Statement stmt) throws SQLException {
+		String createTable;
+
+		// Create table for clients
+		createTable = "CREATE TABLE IF NOT EXISTS clients (\n"
+									+ " username text NOT NULL,\n"
+									+ " first text NOT NULL,\n"
+									+ " last text NOT NULL,\n"
+									+ " student integer,\n"
+									+ " PRIMARY KEY(username)"
+					+ ");";
+		stmt.execute(createTable);
+
+		// Create table for accounts, with balances in cents
+		createTable = "CREATE TABLE IF NOT EXISTS accounts (\n"
+									+ " username text NOT NULL,\n"
+									+ " type integer,\n"
+									+ " cents integer NOT NULL,\n"
+									+ " PRIMARY KEY(username, type)"
+					+ ");";
+		stmt.execute(createTable);
+
+		// Create table for cards
+		createTable = "CREATE TABLE IF NOT EXISTS cards (\n"
+									+ " card text NOT NULL,\n"
+									+ " username text NOT NULL,\n"
+									+ " pin text NOT NULL,\n"
+									+ " PRIMARY KEY(card)"
+					+ ");";
+
+
+		stmt.execute(createTable);
+	}
+
+	private static Timer queryTimer(String query) {
+		return MetricsRegistry.shared().timer("bank_db_query_seconds", "Time to run a database query", "query",
+				query);
+	}
+
+	public void closeConnection() {
+		if (writer != null)
+			writer.close();
+		pool.close();
+	}
 }
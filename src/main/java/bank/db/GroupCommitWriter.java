@@ -0,0 +1,181 @@
+package bank.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import bank.exceptions.StaleBalanceException;
+import bank.exceptions.UnsuccessfulBalanceUpdate;
+import bank.logging.Logger;
+import bank.transactions.utils.AccountType;
+
+/**
+ * Collects balance writes from concurrent callers and commits them together
+ * in a single SQLite transaction, so that a burst of writes pays for one
+ * fsync instead of one each. Every write gets its own savepoint, so a stale
+ * conditional write is rolled back without affecting the rest of the batch.
+ * A caller's future completes only once its batch has been committed, or
+ * fails if the writer is closed first.
+ */
+public class GroupCommitWriter {
+	private static final Logger LOG = Logger.get(GroupCommitWriter.class);
+	private static final long POLL_MILLIS = 100;
+
+	private final ConnectionPool pool;
+	private final int maxBatch;
+	private final long maxDelayNanos;
+	private final BlockingQueue<PendingWrite> queue;
+	private final Thread writer;
+	// Submitters share it, close takes it alone, so nothing is queued once closing has begun
+	private final ReadWriteLock lifecycle;
+	private volatile boolean running;
+
+	public GroupCommitWriter(ConnectionPool pool, int maxBatch, long maxDelayMillis) {
+		this.pool = pool;
+		this.maxBatch = maxBatch;
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+		this.queue = new LinkedBlockingQueue<>();
+		this.lifecycle = new ReentrantReadWriteLock();
+		this.running = true;
+		this.writer = new Thread(this::run, "group-commit-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queues a write. When expectedBalances is null the balances are written
+	 * unconditionally, otherwise the future fails with a
+	 * StaleBalanceException if any account no longer holds its expected
+	 * balance.
+	 */
+	public CompletableFuture<Void> submit(String user, AccountType[] types, long[] expectedBalances,
+			long[] balances) {
+		PendingWrite write = new PendingWrite(user, types, expectedBalances, balances);
+		lifecycle.readLock().lock();
+		try {
+			if (running)
+				queue.add(write);
+			else
+				write.result.completeExceptionally(new UnsuccessfulBalanceUpdate());
+		} finally {
+			lifecycle.readLock().unlock();
+		}
+		return write.result;
+	}
+
+	/**
+	 * Commits the writes already queued and stops the writer. Writes
+	 * submitted afterwards fail straight away.
+	 */
+	public void close() {
+		lifecycle.writeLock().lock();
+		try {
+			running = false;
+		} finally {
+			lifecycle.writeLock().unlock();
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// Only left over if we were interrupted before the writer finished draining
+		PendingWrite write;
+		while ((write = queue.poll()) != null) {
+			write.result.completeExceptionally(new UnsuccessfulBalanceUpdate());
+		}
+	}
+
+	private void run() {
+		List<PendingWrite> batch = new ArrayList<>(maxBatch);
+		while (running || !queue.isEmpty()) {
+			try {
+				PendingWrite first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+				batch.add(first);
+				queue.drainTo(batch, maxBatch - batch.size());
+
+				long deadline = System.nanoTime() + maxDelayNanos;
+				while (batch.size() < maxBatch) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0)
+						break;
+					PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null)
+						break;
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				running = false;
+			}
+
+			if (!batch.isEmpty()) {
+				commit(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	private void commit(List<PendingWrite> batch) {
+		boolean[] stale = new boolean[batch.size()];
+		try (PooledConnection conn = pool.acquire()) {
+			Connection connection = conn.getConnection();
+			connection.setAutoCommit(false);
+			try {
+				for (int i = 0; i < batch.size(); i++) {
+					PendingWrite write = batch.get(i);
+					Savepoint savepoint = connection.setSavepoint();
+					if (!DBHandler.writeBalances(conn, write.user, write.types, write.expectedBalances, write.balances)) {
+						connection.rollback(savepoint);
+						stale[i] = true;
+					}
+					connection.releaseSavepoint(savepoint);
+				}
+				connection.commit();
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			LOG.error("Group commit failed", e);
+			for (PendingWrite write : batch) {
+				write.result.completeExceptionally(new UnsuccessfulBalanceUpdate());
+			}
+			return;
+		}
+
+		for (int i = 0; i < batch.size(); i++) {
+			if (stale[i])
+				batch.get(i).result.completeExceptionally(new StaleBalanceException());
+			else
+				batch.get(i).result.complete(null);
+		}
+	}
+
+	private static class PendingWrite {
+		final String user;
+		final AccountType[] types;
+		final long[] expectedBalances;
+		final long[] balances;
+		final CompletableFuture<Void> result;
+
+		PendingWrite(String user, AccountType[] types, long[] expectedBalances, long[] balances) {
+			this.user = user;
+			this.types = types;
+			this.expectedBalances = expectedBalances;
+			this.balances = balances;
+			this.result = new CompletableFuture<>();
+		}
+	}
+}
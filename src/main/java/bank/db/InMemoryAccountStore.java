@@ -0,0 +1,271 @@
+package bank.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import bank.exceptions.CardNotFoundException;
+import bank.exceptions.StaleBalanceException;
+import bank.exceptions.UnsuccessfulBalanceUpdate;
+import bank.exceptions.UserNotFoundException;
+import bank.transactions.utils.AccountContext;
+import bank.transactions.utils.AccountType;
+
+/**
+ * AccountStore that lives entirely in memory. Each client's balances are kept
+ * in primitive arrays of cents indexed by {@link AccountType#ordinal()} and
+ * guarded by the client's monitor. Nothing is persisted; the store is meant
+ * for load tests and as a hot tier seeded from the database at startup.
+ */
+public class InMemoryAccountStore implements AccountStore {
+	private static final int ACCOUNT_TYPES = AccountType.values().length;
+
+	private static class Card {
+		private final String owner;
+		private char[] pin;
+
+		Card(String owner, char[] pin) {
+			this.owner = owner;
+			this.pin = pin;
+		}
+	}
+
+	private static class Client {
+		private Boolean student;
+		private Card card;
+		private final long[] balances = new long[ACCOUNT_TYPES];
+		private final boolean[] hasAccount = new boolean[ACCOUNT_TYPES];
+	}
+
+	private final ConcurrentHashMap<String, Card> cards;
+	private final ConcurrentHashMap<String, Client> clients;
+	// Single operations share the lock, inTransaction takes it exclusively
+	private final ReadWriteLock lock;
+	// Undo log of the transaction opened by inTransaction on this thread
+	private final ThreadLocal<List<Runnable>> undo;
+
+	public InMemoryAccountStore() {
+		this.cards = new ConcurrentHashMap<>();
+		this.clients = new ConcurrentHashMap<>();
+		this.lock = new ReentrantReadWriteLock();
+		this.undo = new ThreadLocal<>();
+	}
+
+	public void addClient(String user, boolean student) {
+		Client client = client(user);
+		synchronized (client) {
+			client.student = student;
+		}
+	}
+
+	public void addCard(String cardNumber, String user, char[] pin) {
+		Card card = new Card(user, pin.clone());
+		cards.put(cardNumber, card);
+		Client client = client(user);
+		synchronized (client) {
+			client.card = card;
+		}
+	}
+
+	public void addAccount(String user, AccountType type, long balance) {
+		Client client = client(user);
+		synchronized (client) {
+			client.balances[type.ordinal()] = balance;
+			client.hasAccount[type.ordinal()] = true;
+		}
+	}
+
+	@Override
+	public String getCardOwner(String cardNumber) throws CardNotFoundException {
+		Card card = cards.get(cardNumber);
+		if (card == null)
+			throw new CardNotFoundException();
+		return card.owner;
+	}
+
+	@Override
+	public long getBalance(String user, AccountType type) throws UserNotFoundException {
+		Client client = clients.get(user);
+		if (client == null)
+			throw new UserNotFoundException();
+		Lock shared = lock.readLock();
+		shared.lock();
+		try {
+			synchronized (client) {
+				if (!client.hasAccount[type.ordinal()])
+					throw new UserNotFoundException();
+				return client.balances[type.ordinal()];
+			}
+		} finally {
+			shared.unlock();
+		}
+	}
+
+	@Override
+	public void setBalance(String user, AccountType type, long balance) throws UnsuccessfulBalanceUpdate {
+		try {
+			updateBalances(user, new AccountType[] { type }, null, new long[] { balance });
+		} catch (StaleBalanceException e) {
+			// Unconditional writes are never stale
+			throw new UnsuccessfulBalanceUpdate();
+		}
+	}
+
+	@Override
+	public void updateBalance(String user, AccountType type, long expectedBalance, long balance)
+			throws UnsuccessfulBalanceUpdate, StaleBalanceException {
+		updateBalances(user, new AccountType[] { type }, new long[] { expectedBalance }, new long[] { balance });
+	}
+
+	@Override
+	public void updateBalances(String user, AccountType[] types, long[] expectedBalances, long[] balances)
+			throws UnsuccessfulBalanceUpdate, StaleBalanceException {
+		Client client = expectedBalances == null ? client(user) : clients.get(user);
+		if (client == null)
+			throw new StaleBalanceException();
+
+		Lock shared = lock.readLock();
+		shared.lock();
+		try {
+			synchronized (client) {
+				if (expectedBalances != null) {
+					for (int i = 0; i < types.length; i++) {
+						int type = types[i].ordinal();
+						if (!client.hasAccount[type] || client.balances[type] != expectedBalances[i])
+							throw new StaleBalanceException();
+					}
+				}
+				for (int i = 0; i < types.length; i++) {
+					write(client, types[i].ordinal(), balances[i]);
+				}
+			}
+		} finally {
+			shared.unlock();
+		}
+	}
+
+	@Override
+	public <T> T inTransaction(Supplier<T> work) throws UnsuccessfulBalanceUpdate {
+		if (undo.get() != null)
+			return work.get();
+
+		Lock exclusive = lock.writeLock();
+		exclusive.lock();
+		List<Runnable> log = new ArrayList<>();
+		undo.set(log);
+		try {
+			return work.get();
+		} catch (RuntimeException e) {
+			for (int i = log.size() - 1; i >= 0; i--) {
+				log.get(i).run();
+			}
+			throw e;
+		} finally {
+			undo.remove();
+			exclusive.unlock();
+		}
+	}
+
+	@Override
+	public boolean isInTransaction() {
+		return undo.get() != null;
+	}
+
+	@Override
+	public boolean isStudent(String user) throws UserNotFoundException {
+		Client client = clients.get(user);
+		if (client == null)
+			throw new UserNotFoundException();
+		synchronized (client) {
+			if (client.student == null)
+				throw new UserNotFoundException();
+			return client.student;
+		}
+	}
+
+	@Override
+	public char[] getPIN(String user) throws UserNotFoundException {
+		Client client = clients.get(user);
+		if (client == null)
+			throw new UserNotFoundException();
+		synchronized (client) {
+			if (client.card == null)
+				throw new UserNotFoundException();
+			return client.card.pin.clone();
+		}
+	}
+
+	@Override
+	public void setPIN(String cardNumber, char[] pin) throws CardNotFoundException {
+		Card card = cards.get(cardNumber);
+		if (card == null)
+			throw new CardNotFoundException();
+		Client client = client(card.owner);
+		Lock shared = lock.readLock();
+		shared.lock();
+		try {
+			synchronized (client) {
+				char[] oldPIN = card.pin;
+				List<Runnable> log = undo.get();
+				if (log != null) {
+					log.add(() -> {
+						synchronized (client) {
+							card.pin = oldPIN;
+						}
+					});
+				}
+				card.pin = pin.clone();
+			}
+		} finally {
+			shared.unlock();
+		}
+	}
+
+	@Override
+	public AccountContext getAccountContext(String cardNumber) throws CardNotFoundException {
+		Card card = cards.get(cardNumber);
+		if (card == null)
+			throw new CardNotFoundException();
+		Client client = client(card.owner);
+		Lock shared = lock.readLock();
+		shared.lock();
+		try {
+			synchronized (client) {
+				return new AccountContext(cardNumber, card.owner, card.pin, client.student, client.balances,
+						client.hasAccount);
+			}
+		} finally {
+			shared.unlock();
+		}
+	}
+
+	@Override
+	public void closeConnection() {
+		// Nothing to release
+	}
+
+	private Client client(String user) {
+		return clients.computeIfAbsent(user, u -> new Client());
+	}
+
+	// Callers hold the client's monitor
+	private void write(Client client, int type, long balance) {
+		List<Runnable> log = undo.get();
+		if (log != null) {
+			long oldBalance = client.balances[type];
+			boolean oldHasAccount = client.hasAccount[type];
+			log.add(() -> {
+				synchronized (client) {
+					client.balances[type] = oldBalance;
+					client.hasAccount[type] = oldHasAccount;
+				}
+			});
+		}
+		client.balances[type] = balance;
+		client.hasAccount[type] = true;
+	}
+}
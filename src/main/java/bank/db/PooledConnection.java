@@ -0,0 +1,91 @@
+package bank.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import bank.logging.Logger;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}. Closing it returns it
+ * to the pool; statements prepared through it are cached per SQL string and
+ * only closed when the underlying connection is.
+ */
+public class PooledConnection implements AutoCloseable {
+	private static final Logger LOG = Logger.get(PooledConnection.class);
+
+	private final ConnectionPool pool;
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statements;
+	private int holds;
+
+	PooledConnection(ConnectionPool pool, Connection connection) {
+		this.pool = pool;
+		this.connection = connection;
+		this.statements = new HashMap<>();
+	}
+
+	public PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement stmt = statements.get(sql);
+		if (stmt == null) {
+			stmt = connection.prepareStatement(sql);
+			statements.put(sql, stmt);
+		} else {
+			stmt.clearParameters();
+		}
+		return stmt;
+	}
+
+	public Statement createStatement() throws SQLException {
+		return connection.createStatement();
+	}
+
+	public Connection getConnection() {
+		return connection;
+	}
+
+	@Override
+	public void close() {
+		if (holds > 0) {
+			holds--;
+			return;
+		}
+		pool.release(this);
+	}
+
+	/**
+	 * Makes the next close a no-op, so that a connection bound to a
+	 * transaction can be handed out again without going back to the pool.
+	 */
+	PooledConnection hold() {
+		holds++;
+		return this;
+	}
+
+	boolean isBroken() {
+		try {
+			return connection.isClosed();
+		} catch (SQLException e) {
+			return true;
+		}
+	}
+
+	void closePhysical() {
+		for (PreparedStatement stmt : statements.values()) {
+			try {
+				stmt.close();
+			} catch (SQLException e) {
+				// Connection is going away anyway
+			}
+		}
+		statements.clear();
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			LOG.warn("Could not close connection", e);
+		}
+	}
+}
@@ -0,0 +1,581 @@
+package bank.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import bank.exceptions.CardNotFoundException;
+import bank.exceptions.StaleBalanceException;
+import bank.exceptions.UnsuccessfulBalanceUpdate;
+import bank.exceptions.UserNotFoundException;
+import bank.logging.Logger;
+import bank.transactions.utils.AccountContext;
+import bank.transactions.utils.AccountType;
+
+/**
+ * DBHandler that keeps balances in memory. Reads never touch the disk once an
+ * account is cached; a balance change is durable as soon as it is in the
+ * {@link BalanceLog}, and dirty accounts are written to SQLite together by a
+ * periodic flush, after which the flushed log segments are deleted. Up to
+ * maxCached card profiles are kept, and once more than maxCached users have
+ * cached balances a flush drops the ones it left clean.
+ *
+ * Balance writes made inside inTransaction are staged on the calling thread
+ * and published together, as one log record, when the work returns. Other
+ * writes, such as PIN changes, go straight to SQLite and are not part of the
+ * transaction.
+ */
+public class WriteBehindDBHandler extends DBHandler {
+	private static final Logger LOG = Logger.get(WriteBehindDBHandler.class);
+	private static final String DEFAULT_URL = "jdbc:sqlite:bank.db";
+	private static final int DEFAULT_POOL_SIZE = 4;
+	private static final String LOG_PREFIX = "bank.wal";
+	private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+	private static final int DEFAULT_MAX_CACHED = 10000;
+
+	// Least recently used card profiles, guarded by itself
+	private final LinkedHashMap<String, AccountContext> profiles;
+	// Entries are only removed, and writers only fetch them, under logLock
+	private final Map<String, CachedBalances> balances;
+	private final int maxCached;
+	// Appends hold the read lock; rotating the log takes the write lock
+	private final ReadWriteLock logLock;
+	private final Object flushLock;
+	private final BalanceLog log;
+	private final ScheduledExecutorService flusher;
+	// Writes staged by the transaction open on this thread
+	private final ThreadLocal<Transaction> transaction;
+
+	public WriteBehindDBHandler() {
+		this(DEFAULT_URL, DEFAULT_POOL_SIZE, new File("."), DEFAULT_FLUSH_INTERVAL_MILLIS);
+	}
+
+	public WriteBehindDBHandler(String url, int poolSize, File logDirectory, long flushIntervalMillis) {
+		this(url, poolSize, logDirectory, flushIntervalMillis, DEFAULT_MAX_CACHED);
+	}
+
+	public WriteBehindDBHandler(String url, int poolSize, File logDirectory, long flushIntervalMillis,
+			int maxCached) {
+		super(url, poolSize);
+		this.profiles = new LinkedHashMap<String, AccountContext>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, AccountContext> eldest) {
+				return size() > maxCached;
+			}
+		};
+		this.transaction = new ThreadLocal<>();
+		this.balances = new ConcurrentHashMap<>();
+		this.maxCached = maxCached;
+		this.logLock = new ReentrantReadWriteLock();
+		this.flushLock = new Object();
+		try {
+			this.log = new BalanceLog(logDirectory, LOG_PREFIX);
+			recover();
+		} catch (IOException | SQLException e) {
+			super.closeConnection();
+			throw new IllegalStateException("Could not recover the balance log", e);
+		}
+
+		this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "balance-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public long getBalance(String user, AccountType type) throws UserNotFoundException {
+		Transaction tx = transaction.get();
+		StagedBalances staged = tx == null ? null : tx.staged.get(user);
+		if (staged != null && staged.written[type.ordinal()])
+			return staged.balances[type.ordinal()];
+
+		CachedBalances entry = entry(user);
+		synchronized (entry) {
+			return cachedBalance(entry, user, type);
+		}
+	}
+
+	@Override
+	public AccountContext getAccountContext(String cardNumber) throws CardNotFoundException {
+		AccountContext profile;
+		synchronized (profiles) {
+			profile = profiles.get(cardNumber);
+		}
+		boolean loaded = profile == null;
+		if (loaded) {
+			profile = super.getAccountContext(cardNumber);
+			synchronized (profiles) {
+				profiles.put(cardNumber, profile);
+			}
+		}
+
+		long[] current;
+		boolean[] present;
+		CachedBalances entry = entry(profile.getUsername());
+		synchronized (entry) {
+			// A cached profile may predate the user's balances being evicted
+			if (loaded)
+				entry.seed(profile);
+			else
+				load(entry, profile.getUsername());
+			current = entry.balances.clone();
+			present = entry.present.clone();
+		}
+
+		Transaction tx = transaction.get();
+		StagedBalances staged = tx == null ? null : tx.staged.get(profile.getUsername());
+		if (staged != null) {
+			for (int t = 0; t < current.length; t++) {
+				if (staged.written[t]) {
+					current[t] = staged.balances[t];
+					present[t] = true;
+				}
+			}
+		}
+		return profile.withBalances(current, present);
+	}
+
+	@Override
+	public void setPIN(String cardNumber, char[] pin) throws CardNotFoundException {
+		super.setPIN(cardNumber, pin);
+		synchronized (profiles) {
+			profiles.remove(cardNumber);
+		}
+	}
+
+	/**
+	 * Runs the work with its balance writes staged, then publishes them all
+	 * at once. If an account it wrote was changed by someone else in the
+	 * meantime, or the work throws, none of its writes is published.
+	 */
+	@Override
+	public <T> T inTransaction(Supplier<T> work) throws UnsuccessfulBalanceUpdate {
+		if (transaction.get() != null)
+			return work.get();
+
+		Transaction tx = new Transaction();
+		transaction.set(tx);
+		T result;
+		try {
+			result = work.get();
+		} finally {
+			transaction.remove();
+		}
+
+		try {
+			commit(tx);
+		} catch (StaleBalanceException e) {
+			throw new UnsuccessfulBalanceUpdate();
+		}
+		return result;
+	}
+
+	@Override
+	public boolean isInTransaction() {
+		return transaction.get() != null;
+	}
+
+	@Override
+	public void setBalance(String user, AccountType type, long balance) throws UnsuccessfulBalanceUpdate {
+		Transaction tx = transaction.get();
+		if (tx != null) {
+			tx.stage(user).write(type, balance);
+			return;
+		}
+
+		AccountType[] types = { type };
+		long[] newBalances = { balance };
+		logLock.readLock().lock();
+		try {
+			CachedBalances entry = entry(user);
+			synchronized (entry) {
+				log.append(user, types, newBalances);
+				entry.apply(types, newBalances);
+			}
+		} catch (IOException e) {
+			LOG.error("Could not append to balance log", e, "user", user);
+			throw new UnsuccessfulBalanceUpdate();
+		} finally {
+			logLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void updateBalances(String user, AccountType[] types, long[] expectedBalances, long[] newBalances)
+			throws UnsuccessfulBalanceUpdate, StaleBalanceException {
+		Transaction tx = transaction.get();
+		if (tx != null) {
+			stageUpdate(tx, user, types, expectedBalances, newBalances);
+			return;
+		}
+
+		logLock.readLock().lock();
+		try {
+			CachedBalances entry = entry(user);
+			synchronized (entry) {
+				for (int i = 0; i < types.length; i++) {
+					long current;
+					try {
+						current = cachedBalance(entry, user, types[i]);
+					} catch (UserNotFoundException e) {
+						throw new StaleBalanceException();
+					}
+					if (current != expectedBalances[i])
+						throw new StaleBalanceException();
+				}
+				log.append(user, types, newBalances);
+				entry.apply(types, newBalances);
+			}
+		} catch (IOException e) {
+			LOG.error("Could not append to balance log", e, "user", user);
+			throw new UnsuccessfulBalanceUpdate();
+		} finally {
+			logLock.readLock().unlock();
+		}
+	}
+
+	private void stageUpdate(Transaction tx, String user, AccountType[] types, long[] expectedBalances,
+			long[] newBalances) throws StaleBalanceException {
+		StagedBalances staged = tx.stage(user);
+		long[] bases = new long[types.length];
+		CachedBalances entry = entry(user);
+		synchronized (entry) {
+			for (int i = 0; i < types.length; i++) {
+				try {
+					bases[i] = cachedBalance(entry, user, types[i]);
+				} catch (UserNotFoundException e) {
+					throw new StaleBalanceException();
+				}
+			}
+		}
+		for (int i = 0; i < types.length; i++) {
+			int t = types[i].ordinal();
+			long current = staged.written[t] ? staged.balances[t] : bases[i];
+			if (current != expectedBalances[i])
+				throw new StaleBalanceException();
+		}
+		for (int i = 0; i < types.length; i++) {
+			staged.expect(types[i], bases[i]);
+			staged.write(types[i], newBalances[i]);
+		}
+	}
+
+	/**
+	 * Publishes the staged writes of a transaction: checks that no account it
+	 * read its balance from has changed since, appends them to the log as one
+	 * record and applies them to the cache. The entries are locked in user
+	 * order, so two commits cannot deadlock.
+	 */
+	private void commit(Transaction tx) throws UnsuccessfulBalanceUpdate, StaleBalanceException {
+		if (tx.staged.isEmpty())
+			return;
+		List<String> users = new ArrayList<>(tx.staged.keySet());
+		logLock.readLock().lock();
+		try {
+			List<CachedBalances> entries = new ArrayList<>(users.size());
+			for (String user : users) {
+				entries.add(entry(user));
+			}
+			commitLocked(tx, users, entries, 0);
+		} catch (IOException e) {
+			LOG.error("Could not append to balance log", e, "users", users.size());
+			throw new UnsuccessfulBalanceUpdate();
+		} finally {
+			logLock.readLock().unlock();
+		}
+	}
+
+	private void commitLocked(Transaction tx, List<String> users, List<CachedBalances> entries, int locked)
+			throws IOException, StaleBalanceException {
+		if (locked < entries.size()) {
+			synchronized (entries.get(locked)) {
+				commitLocked(tx, users, entries, locked + 1);
+			}
+			return;
+		}
+
+		List<BalanceLog.Change> changes = new ArrayList<>(users.size());
+		for (int i = 0; i < users.size(); i++) {
+			String user = users.get(i);
+			StagedBalances staged = tx.staged.get(user);
+			for (AccountType type : AccountType.values()) {
+				int t = type.ordinal();
+				if (!staged.expected[t])
+					continue;
+				try {
+					if (cachedBalance(entries.get(i), user, type) != staged.bases[t])
+						throw new StaleBalanceException();
+				} catch (UserNotFoundException e) {
+					throw new StaleBalanceException();
+				}
+			}
+			changes.add(staged.toChange(user));
+		}
+
+		log.append(changes);
+		for (int i = 0; i < changes.size(); i++) {
+			BalanceLog.Change change = changes.get(i);
+			entries.get(i).apply(change.types, change.balances);
+		}
+	}
+
+	/**
+	 * Writes every dirty account to SQLite in one transaction and drops the
+	 * log segments that the write covered, then evicts clean balances while
+	 * more than maxCached users have some cached.
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			logLock.writeLock().lock();
+			try {
+				log.rotate();
+			} catch (IOException e) {
+				LOG.error("Could not rotate balance log", e);
+				return;
+			} finally {
+				logLock.writeLock().unlock();
+			}
+
+			List<BalanceUpdate> updates = new ArrayList<>();
+			List<CachedBalances> flushed = new ArrayList<>();
+			for (Map.Entry<String, CachedBalances> e : balances.entrySet()) {
+				CachedBalances entry = e.getValue();
+				synchronized (entry) {
+					if (entry.drainDirty(e.getKey(), updates))
+						flushed.add(entry);
+				}
+			}
+
+			try {
+				replaceBalances(updates);
+				log.deleteSealed();
+			} catch (SQLException e) {
+				// Keep the sealed segments and try again on the next flush
+				LOG.warn("Could not flush balances, retrying on next flush", e);
+				for (CachedBalances entry : flushed) {
+					synchronized (entry) {
+						entry.markDirty();
+					}
+				}
+				return;
+			}
+			evictClean();
+		}
+	}
+
+	/**
+	 * Drops clean entries until at most maxCached are left. Holding the write
+	 * lock keeps writers from applying to an entry as it is removed; readers
+	 * still holding one only see balances that SQLite already has.
+	 */
+	private void evictClean() {
+		if (balances.size() <= maxCached)
+			return;
+		logLock.writeLock().lock();
+		try {
+			Iterator<CachedBalances> it = balances.values().iterator();
+			while (balances.size() > maxCached && it.hasNext()) {
+				CachedBalances entry = it.next();
+				synchronized (entry) {
+					if (!entry.isDirty())
+						it.remove();
+				}
+			}
+		} finally {
+			logLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void closeConnection() {
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+		try {
+			log.close();
+		} catch (IOException e) {
+			LOG.error("Could not close balance log", e);
+		}
+		super.closeConnection();
+	}
+
+	private void recover() throws IOException, SQLException {
+		List<BalanceUpdate> updates = new ArrayList<>();
+		log.replay((user, types, newBalances) -> {
+			for (int i = 0; i < types.length; i++) {
+				updates.add(new BalanceUpdate(user, types[i], newBalances[i]));
+			}
+		});
+		replaceBalances(updates);
+		log.deleteSealed();
+	}
+
+	private CachedBalances entry(String user) {
+		CachedBalances entry = balances.get(user);
+		if (entry == null) {
+			CachedBalances created = new CachedBalances();
+			entry = balances.putIfAbsent(user, created);
+			if (entry == null)
+				entry = created;
+		}
+		return entry;
+	}
+
+	// The caller must hold the entry's lock
+	private void load(CachedBalances entry, String user) {
+		for (AccountType type : AccountType.values()) {
+			try {
+				cachedBalance(entry, user, type);
+			} catch (UserNotFoundException e) {
+				// Recorded as absent
+			}
+		}
+	}
+
+	// The caller must hold the entry's lock
+	private long cachedBalance(CachedBalances entry, String user, AccountType type) throws UserNotFoundException {
+		int t = type.ordinal();
+		if (!entry.known[t]) {
+			try {
+				entry.balances[t] = super.getBalance(user, type);
+				entry.present[t] = true;
+			} catch (UserNotFoundException e) {
+				entry.present[t] = false;
+			}
+			entry.known[t] = true;
+		}
+		if (!entry.present[t])
+			throw new UserNotFoundException();
+		return entry.balances[t];
+	}
+
+	private static class Transaction {
+		// Sorted, which is the order commit locks the users in
+		final Map<String, StagedBalances> staged = new TreeMap<>();
+
+		StagedBalances stage(String user) {
+			return staged.computeIfAbsent(user, u -> new StagedBalances());
+		}
+	}
+
+	private static class StagedBalances {
+		final long[] balances = new long[AccountType.values().length];
+		final boolean[] written = new boolean[AccountType.values().length];
+		// Balance each conditionally written account had when the transaction first saw it
+		final long[] bases = new long[AccountType.values().length];
+		final boolean[] expected = new boolean[AccountType.values().length];
+
+		void write(AccountType type, long balance) {
+			balances[type.ordinal()] = balance;
+			written[type.ordinal()] = true;
+		}
+
+		void expect(AccountType type, long base) {
+			int t = type.ordinal();
+			if (!expected[t] && !written[t]) {
+				bases[t] = base;
+				expected[t] = true;
+			}
+		}
+
+		BalanceLog.Change toChange(String user) {
+			int count = 0;
+			for (boolean w : written) {
+				if (w)
+					count++;
+			}
+			AccountType[] types = new AccountType[count];
+			long[] values = new long[count];
+			int i = 0;
+			for (AccountType type : AccountType.values()) {
+				if (written[type.ordinal()]) {
+					types[i] = type;
+					values[i++] = balances[type.ordinal()];
+				}
+			}
+			return new BalanceLog.Change(user, types, values);
+		}
+	}
+
+	private static class CachedBalances {
+		final long[] balances = new long[AccountType.values().length];
+		final boolean[] present = new boolean[AccountType.values().length];
+		final boolean[] known = new boolean[AccountType.values().length];
+		final boolean[] dirty = new boolean[AccountType.values().length];
+
+		void seed(AccountContext profile) {
+			for (AccountType type : AccountType.values()) {
+				int t = type.ordinal();
+				if (known[t])
+					continue;
+				known[t] = true;
+				present[t] = profile.hasAccount(type);
+				if (present[t]) {
+					try {
+						balances[t] = profile.getBalance(type);
+					} catch (UserNotFoundException e) {
+						present[t] = false;
+					}
+				}
+			}
+		}
+
+		void apply(AccountType[] types, long[] newBalances) {
+			for (int i = 0; i < types.length; i++) {
+				int t = types[i].ordinal();
+				balances[t] = newBalances[i];
+				present[t] = true;
+				known[t] = true;
+				dirty[t] = true;
+			}
+		}
+
+		boolean drainDirty(String user, List<BalanceUpdate> updates) {
+			boolean drained = false;
+			for (AccountType type : AccountType.values()) {
+				int t = type.ordinal();
+				if (dirty[t]) {
+					updates.add(new BalanceUpdate(user, type, balances[t]));
+					dirty[t] = false;
+					drained = true;
+				}
+			}
+			return drained;
+		}
+
+		boolean isDirty() {
+			for (boolean d : dirty) {
+				if (d)
+					return true;
+			}
+			return false;
+		}
+
+		void markDirty() {
+			for (int t = 0; t < dirty.length; t++) {
+				dirty[t] |= present[t];
+			}
+		}
+	}
+}
@@ -0,0 +1,5 @@
+package bank.exceptions;
+
+public class StaleBalanceException extends Exception {
+
+}
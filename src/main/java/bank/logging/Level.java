@@ -0,0 +1,5 @@
+package bank.logging;
+
+public enum Level {
+	DEBUG, INFO, WARN, ERROR
+}
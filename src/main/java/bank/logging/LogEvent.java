@@ -0,0 +1,136 @@
+package bank.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One log statement, captured on the logging thread and formatted later on
+ * the writer thread. The message and fields are redacted at capture, so the
+ * buffer never holds a PIN or a full card number from them. An attached
+ * error is kept as is and only rendered, and masked, by the writer.
+ */
+final class LogEvent {
+	private static final String REDACTED = "****";
+	// Runs of digits as long as a card number
+	private static final Pattern CARD_NUMBER = Pattern.compile("\\b\\d{12,19}\\b");
+
+	final long timeMillis;
+	final Level level;
+	final String logger;
+	final String message;
+	final Throwable error;
+	final Object[] fields;
+
+	LogEvent(long timeMillis, Level level, String logger, String message, Throwable error, Object[] fields) {
+		this.timeMillis = timeMillis;
+		this.level = level;
+		this.logger = logger;
+		this.message = maskCardNumbers(message);
+		this.error = error;
+		this.fields = capture(fields);
+	}
+
+	/**
+	 * Formats the event as one logfmt line, followed by the stack trace of
+	 * its error if it has one.
+	 */
+	String format() {
+		StringBuilder line = new StringBuilder(128);
+		line.append(Instant.ofEpochMilli(timeMillis)).append(' ').append(level).append(' ').append(logger)
+				.append(' ');
+		quote(line, message);
+		for (int i = 0; i + 1 < fields.length; i += 2) {
+			line.append(' ').append(fields[i]).append('=');
+			quote(line, String.valueOf(fields[i + 1]));
+		}
+		if (error != null) {
+			line.append(" error=");
+			quote(line, maskCardNumbers(String.valueOf(error)));
+			if (level.compareTo(Level.WARN) >= 0) {
+				StringWriter trace = new StringWriter();
+				error.printStackTrace(new PrintWriter(trace));
+				line.append(System.lineSeparator()).append(maskCardNumbers(trace.toString().trim()));
+			}
+		}
+		return line.toString();
+	}
+
+	private static Object[] capture(Object[] fields) {
+		Object[] captured = new Object[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			Object value = fields[i];
+			if (i % 2 == 0) {
+				captured[i] = value;
+			} else if (value instanceof char[] || isPinKey(fields[i - 1])) {
+				captured[i] = REDACTED;
+			} else if (isCardKey(fields[i - 1])) {
+				captured[i] = maskCard(String.valueOf(value));
+			} else if (value == null || value instanceof Integer || value instanceof Double || value instanceof Enum
+					|| value instanceof Boolean) {
+				captured[i] = value;
+			} else {
+				// Other values are rendered now, both to mask them and because they may change
+				captured[i] = maskCardNumbers(String.valueOf(value));
+			}
+		}
+		return captured;
+	}
+
+	private static boolean isPinKey(Object key) {
+		return String.valueOf(key).toLowerCase().contains("pin");
+	}
+
+	private static boolean isCardKey(Object key) {
+		return String.valueOf(key).toLowerCase().contains("card");
+	}
+
+	static String maskCard(String card) {
+		if (card.length() <= 4)
+			return REDACTED;
+		return REDACTED + card.substring(card.length() - 4);
+	}
+
+	static String maskCardNumbers(String text) {
+		if (text == null)
+			return null;
+		Matcher matcher = CARD_NUMBER.matcher(text);
+		if (!matcher.find())
+			return text;
+		StringBuffer masked = new StringBuffer();
+		do {
+			matcher.appendReplacement(masked, maskCard(matcher.group()));
+		} while (matcher.find());
+		matcher.appendTail(masked);
+		return masked.toString();
+	}
+
+	private static void quote(StringBuilder line, String value) {
+		if (value == null) {
+			line.append("null");
+			return;
+		}
+		boolean plain = !value.isEmpty();
+		for (int i = 0; i < value.length() && plain; i++) {
+			char c = value.charAt(i);
+			plain = c > ' ' && c != '"' && c != '=' && c != '\\';
+		}
+		if (plain) {
+			line.append(value);
+			return;
+		}
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				line.append('\\').append(c);
+			else if (c == '\n')
+				line.append("\\n");
+			else
+				line.append(c);
+		}
+		line.append('"');
+	}
+}
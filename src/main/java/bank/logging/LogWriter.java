@@ -0,0 +1,93 @@
+package bank.logging;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes log events off a {@link RingBuffer} and writes them on its own
+ * thread. Logging threads only ever enqueue; when the writer falls behind
+ * and the buffer fills up, events are dropped and counted rather than
+ * making the caller wait.
+ */
+final class LogWriter implements Runnable {
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final RingBuffer<LogEvent> buffer;
+	private final PrintStream out;
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean running = true;
+	private Thread thread;
+
+	LogWriter(int capacity, PrintStream out) {
+		this.buffer = new RingBuffer<>(capacity);
+		this.out = out;
+	}
+
+	static LogWriter fromSystemProperties() {
+		int capacity = Integer.highestOneBit(Math.max(2, Integer.getInteger("bank.log.buffer", 8192)));
+		LogWriter writer = new LogWriter(capacity, System.out);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(writer::stop, "log-writer-shutdown"));
+		return writer;
+	}
+
+	void start() {
+		thread = new Thread(this, "log-writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void submit(LogEvent event) {
+		if (!buffer.offer(event))
+			dropped.incrementAndGet();
+	}
+
+	long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			if (drain() == 0)
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+		}
+		drain();
+	}
+
+	/**
+	 * Writes every event in the buffer. Returns how many there were.
+	 */
+	int drain() {
+		int written = 0;
+		LogEvent event;
+		while ((event = buffer.poll()) != null) {
+			try {
+				out.println(event.format());
+			} catch (RuntimeException e) {
+				out.println("Could not format log event from " + event.logger + ": " + e);
+			}
+			written++;
+		}
+		long lost = dropped.getAndSet(0);
+		if (lost > 0)
+			out.println("Log buffer full, dropped " + lost + " events");
+		if (written > 0 || lost > 0)
+			out.flush();
+		return written;
+	}
+
+	void stop() {
+		running = false;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join(TimeUnit.SECONDS.toMillis(1));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package bank.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Structured logger. A statement is a short message followed by key/value
+ * fields:
+ *
+ * <pre>
+ * LOG.warn("Could not reload fee schedule", e, "file", file);
+ * </pre>
+ *
+ * Statements are enqueued and written by a background thread, so logging
+ * never blocks on the console. Values of fields whose key mentions a PIN,
+ * and char arrays, are redacted; card numbers are masked down to their last
+ * four digits. The threshold is set with the bank.log.level system property
+ * (INFO by default).
+ */
+public class Logger {
+	private static final Level THRESHOLD = threshold();
+	private static volatile LogWriter sharedWriter;
+
+	private final String name;
+	private final LogWriter writer;
+	private final int oneIn;
+	private final AtomicLong calls;
+
+	Logger(String name, LogWriter writer, int oneIn) {
+		this.name = name;
+		this.writer = writer;
+		this.oneIn = oneIn;
+		this.calls = oneIn > 1 ? new AtomicLong() : null;
+	}
+
+	public static Logger get(Class<?> owner) {
+		return new Logger(owner.getName(), null, 1);
+	}
+
+	/**
+	 * Returns a logger with the same name that only writes one statement in
+	 * every oneIn, for events that can happen on every request.
+	 */
+	public Logger sampled(int oneIn) {
+		return new Logger(name, writer, oneIn);
+	}
+
+	public boolean isEnabled(Level level) {
+		return level.compareTo(THRESHOLD) >= 0;
+	}
+
+	public void debug(String message, Object... fields) {
+		log(Level.DEBUG, message, null, fields);
+	}
+
+	public void info(String message, Object... fields) {
+		log(Level.INFO, message, null, fields);
+	}
+
+	public void warn(String message, Object... fields) {
+		log(Level.WARN, message, null, fields);
+	}
+
+	public void warn(String message, Throwable error, Object... fields) {
+		log(Level.WARN, message, error, fields);
+	}
+
+	public void error(String message, Object... fields) {
+		log(Level.ERROR, message, null, fields);
+	}
+
+	public void error(String message, Throwable error, Object... fields) {
+		log(Level.ERROR, message, error, fields);
+	}
+
+	public void log(Level level, String message, Throwable error, Object... fields) {
+		if (!isEnabled(level))
+			return;
+		if (calls != null && calls.getAndIncrement() % oneIn != 0)
+			return;
+		if (calls != null) {
+			Object[] sampledFields = new Object[fields.length + 2];
+			System.arraycopy(fields, 0, sampledFields, 0, fields.length);
+			sampledFields[fields.length] = "sampled";
+			sampledFields[fields.length + 1] = "1/" + oneIn;
+			fields = sampledFields;
+		}
+		writer().submit(new LogEvent(System.currentTimeMillis(), level, name, message, error, fields));
+	}
+
+	private LogWriter writer() {
+		if (writer != null)
+			return writer;
+		LogWriter shared = sharedWriter;
+		if (shared == null) {
+			synchronized (Logger.class) {
+				shared = sharedWriter;
+				if (shared == null)
+					sharedWriter = shared = LogWriter.fromSystemProperties();
+			}
+		}
+		return shared;
+	}
+
+	private static Level threshold() {
+		try {
+			return Level.valueOf(System.getProperty("bank.log.level", "INFO").toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return Level.INFO;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package bank.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded queue for many producers and a single consumer. Each slot has a
+ * sequence number telling whether it is free for the producer of a given
+ * position or filled for the consumer, so neither side ever takes a lock
+ * and a producer facing a full buffer fails instead of waiting.
+ */
+final class RingBuffer<T> {
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<T> slots;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	// Only touched by the consumer
+	private long head;
+
+	RingBuffer(int capacity) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity);
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.slots = new AtomicReferenceArray<>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Returns false, without waiting, if the buffer is full.
+	 */
+	boolean offer(T item) {
+		while (true) {
+			long position = tail.get();
+			int index = (int) position & mask;
+			long sequence = sequences.get(index);
+			if (sequence == position) {
+				if (tail.compareAndSet(position, position + 1)) {
+					slots.lazySet(index, item);
+					sequences.set(index, position + 1);
+					return true;
+				}
+			} else if (sequence < position) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Returns null if the buffer is empty. Must only be called by the consumer.
+	 */
+	T poll() {
+		int index = (int) head & mask;
+		if (sequences.get(index) != head + 1)
+			return null;
+		T item = slots.get(index);
+		slots.lazySet(index, null);
+		sequences.set(index, head + capacity);
+		head++;
+		return item;
+	}
+}
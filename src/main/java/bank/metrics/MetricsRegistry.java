@@ -0,0 +1,134 @@
+package bank.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and timers, written out in the Prometheus text
+ * format. Metrics are looked up by name and label pairs, and created on first
+ * use; the hot path should look its metrics up once and keep them. Gauges
+ * read their value when the registry is written out. Timers are exposed as
+ * summaries in seconds with their 50th, 99th and 99.9th percentiles since
+ * start-up.
+ */
+public class MetricsRegistry {
+	private static final MetricsRegistry SHARED = new MetricsRegistry();
+	private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+	private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Registry of the whole bank process.
+	 */
+	public static MetricsRegistry shared() {
+		return SHARED;
+	}
+
+	/**
+	 * @param labels label names and values, alternating
+	 */
+	public Counter counter(String name, String help, String... labels) {
+		return (Counter) family(name, help, "counter").metrics.computeIfAbsent(labelText(labels), l -> new Counter());
+	}
+
+	/**
+	 * @param labels label names and values, alternating
+	 */
+	public Timer timer(String name, String help, String... labels) {
+		return (Timer) family(name, help, "summary").metrics.computeIfAbsent(labelText(labels), l -> new Timer());
+	}
+
+	/**
+	 * Registers a gauge that reports the value of the supplier. Registering
+	 * the same name and labels again replaces the supplier.
+	 *
+	 * @param labels label names and values, alternating
+	 */
+	public void gauge(String name, String help, LongSupplier value, String... labels) {
+		family(name, help, "gauge").metrics.put(labelText(labels), value);
+	}
+
+	public void write(Writer out) throws IOException {
+		for (Family family : families.values()) {
+			out.write("# HELP " + family.name + " " + family.help + "\n");
+			out.write("# TYPE " + family.name + " " + family.type + "\n");
+			for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+				String labels = metric.getKey();
+				if (metric.getValue() instanceof Counter) {
+					out.write(family.name + braces(labels) + " " + ((Counter) metric.getValue()).get() + "\n");
+					continue;
+				}
+				if (metric.getValue() instanceof LongSupplier) {
+					long value = ((LongSupplier) metric.getValue()).getAsLong();
+					out.write(family.name + braces(labels) + " " + value + "\n");
+					continue;
+				}
+
+				LatencyHistogram histogram = ((Timer) metric.getValue()).getHistogram();
+				long count = histogram.getCount();
+				String separator = labels.isEmpty() ? "" : ",";
+				for (double quantile : QUANTILES) {
+					// Quantiles of an empty summary are NaN in the Prometheus format
+					String value = count == 0 ? "NaN" : String.valueOf(seconds(histogram.getPercentile(quantile * 100)));
+					out.write(family.name + "{" + labels + separator + "quantile=\"" + quantile + "\"} " + value + "\n");
+				}
+				out.write(family.name + "_sum" + braces(labels) + " " + seconds(histogram.getSum()) + "\n");
+				out.write(family.name + "_count" + braces(labels) + " " + count + "\n");
+			}
+		}
+	}
+
+	private Family family(String name, String help, String type) {
+		Family family = families.computeIfAbsent(name, n -> new Family(name, help, type));
+		if (!family.type.equals(type))
+			throw new IllegalArgumentException(name + " is already a " + family.type);
+		return family;
+	}
+
+	private static String labelText(String[] labels) {
+		if (labels.length % 2 != 0)
+			throw new IllegalArgumentException("Labels must be name and value pairs");
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < labels.length; i += 2) {
+			if (i > 0)
+				text.append(',');
+			text.append(labels[i]).append("=\"");
+			for (char c : labels[i + 1].toCharArray()) {
+				if (c == '\\' || c == '"')
+					text.append('\\').append(c);
+				else if (c == '\n')
+					text.append("\\n");
+				else
+					text.append(c);
+			}
+			text.append('"');
+		}
+		return text.toString();
+	}
+
+	private static String braces(String labels) {
+		return labels.isEmpty() ? "" : "{" + labels + "}";
+	}
+
+	private static double seconds(long nanos) {
+		return (double) nanos / TimeUnit.SECONDS.toNanos(1);
+	}
+
+	private static class Family {
+		final String name;
+		final String help;
+		final String type;
+		final ConcurrentMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+		Family(String name, String help, String type) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package bank.metrics;
+
+/**
+ * Records how long an operation takes into a {@link LatencyHistogram}.
+ * Either record a duration measured with System.nanoTime, or time a block:
+ *
+ * <pre>
+ * try (Timer.Sample sample = timer.time()) {
+ *     ...
+ * }
+ * </pre>
+ */
+public class Timer {
+	private final LatencyHistogram histogram = new LatencyHistogram();
+
+	public void record(long nanos) {
+		histogram.record(nanos);
+	}
+
+	public Sample time() {
+		return new Sample(this, System.nanoTime());
+	}
+
+	public LatencyHistogram getHistogram() {
+		return histogram;
+	}
+
+	public static class Sample implements AutoCloseable {
+		private final Timer timer;
+		private final long start;
+
+		private Sample(Timer timer, long start) {
+			this.timer = timer;
+			this.start = start;
+		}
+
+		@Override
+		public void close() {
+			timer.record(System.nanoTime() - start);
+		}
+	}
+}
@@ -1,54 +1,58 @@
 package bank.transactions;
 
-import bank.db.DBHandler;
-import bank.exceptions.CardNotFoundException;
+import bank.db.AccountStore;
+import bank.exceptions.StaleBalanceException;
 import bank.exceptions.UnsuccessfulBalanceUpdate;
 import bank.exceptions.UserNotFoundException;
+import bank.transactions.utils.AccountContext;
+import bank.transactions.utils.AccountLocks;
 import bank.transactions.utils.AccountType;
 import bank.transactions.utils.TransactionData;
 import bank.transactions.utils.TransactionResult;
 import bank.utils.FeesCalculator;
+import bank.utils.Money;
 
 public class BankDeposit extends BankTransaction {
 
-	public BankDeposit(FeesCalculator feesCalculator, DBHandler dbHandler) {
-		super(feesCalculator, dbHandler);
+	public BankDeposit(FeesCalculator feesCalculator, AccountStore accountStore) {
+		super(feesCalculator, accountStore);
+	}
+
+	public BankDeposit(FeesCalculator feesCalculator, AccountStore accountStore, AccountLocks accountLocks) {
+		super(feesCalculator, accountStore, accountLocks);
 	}
 
 	@Override
-	public TransactionResult perform(TransactionData data) {
-		String cardNumber = data.getCardNumber();
+	protected TransactionResult apply(TransactionData data, AccountContext context) throws StaleBalanceException {
 		AccountType to = data.getAccounts()[0];
-		double amount = data.getAmount();
+		long amount = data.getAmountCents();
 
 		if (amount < 0) {
-			return new TransactionResult(false, "Negative deposit amount", 0.0, null);
+			return new TransactionResult(false, "Negative deposit amount", 0, null);
+		}
+		if (!Money.isValid(amount)) {
+			return new TransactionResult(false, "Invalid amount.", 0, null);
 		}
 		
-		String user;
+		String user = context.getUsername();
 		boolean isStudent;
+		long balance;
 		try {
-			user = dbHandler.getCardOwner(cardNumber);
-		} catch (CardNotFoundException e) {
-			return new TransactionResult(false, "Card number not found.", 0.0, null);
-		}
-		double balance;
-		try {
-			balance = dbHandler.getBalance(user, to);
-			isStudent = dbHandler.isStudent(user);
+			balance = context.getBalance(to);
+			isStudent = context.isStudent();
 		} catch (UserNotFoundException e) {
-			return new TransactionResult(false, "User not found.", 0.0, null);
+			return new TransactionResult(false, "User not found.", 0, null);
 		}
 		
-		double interest = feesCalculator.calculateDepositInterest(amount, balance, isStudent);
-		double newAmount = balance + amount + interest;
+		long interest = feesCalculator.calculateDepositInterestCents(amount, balance, isStudent);
+		long newAmount = balance + amount + interest;
 		try {
-			dbHandler.setBalance(user, to, newAmount);
+			accountStore.updateBalance(user, to, balance, newAmount);
 		} catch (UnsuccessfulBalanceUpdate e) {
-			return new TransactionResult(false, "Unsuccessful update of account balance.", 0.0, null);
+			return new TransactionResult(false, "Unsuccessful update of account balance.", 0, null);
 		} 
 		
-		double[] accountsBalances = new double[1];
+		long[] accountsBalances = new long[1];
 		accountsBalances[0] = newAmount;
 		return new TransactionResult(true, "", interest, accountsBalances);
 	}
@@ -1,22 +1,100 @@
 package bank.transactions;
 
-import bank.db.DBHandler;
+import bank.db.AccountStore;
+import bank.exceptions.CardNotFoundException;
+import bank.exceptions.StaleBalanceException;
+import bank.metrics.MetricsRegistry;
+import bank.metrics.Timer;
+import bank.transactions.utils.AccountContext;
+import bank.transactions.utils.AccountLocks;
 import bank.transactions.utils.TransactionData;
 import bank.transactions.utils.TransactionResult;
+import bank.transactions.utils.TransactionType;
 import bank.utils.FeesCalculator;
 
 public abstract class BankTransaction {
+	private static final int MAX_ATTEMPTS = 3;
+	// Indexed by transaction type, then 0 for failed and 1 for successful transactions
+	private static final Timer[][] TIMERS = new Timer[TransactionType.values().length][2];
+
+	static {
+		for (TransactionType type : TransactionType.values()) {
+			for (int successful = 0; successful < 2; successful++) {
+				TIMERS[type.ordinal()][successful] = MetricsRegistry.shared().timer("bank_transaction_seconds",
+						"Time to perform a transaction, including retries", "type", type.name(), "outcome",
+						successful == 1 ? "success" : "failure");
+			}
+		}
+	}
 	
 	protected FeesCalculator feesCalculator;
-	protected DBHandler dbHandler;
+	protected AccountStore accountStore;
+	protected AccountLocks accountLocks;
 	
 	
 
-	public BankTransaction(FeesCalculator feesCalculator, DBHandler dbHandler) {
+	public BankTransaction(FeesCalculator feesCalculator, AccountStore accountStore) {
+		this(feesCalculator, accountStore, AccountLocks.shared());
+	}
+
+	public BankTransaction(FeesCalculator feesCalculator, AccountStore accountStore, AccountLocks accountLocks) {
 		super();
 		this.feesCalculator = feesCalculator;
-		this.dbHandler = dbHandler;
+		this.accountStore = accountStore;
+		this.accountLocks = accountLocks;
+	}
+	
+	public TransactionResult perform(TransactionData data) {
+		AccountContext context;
+		try {
+			context = accountStore.getAccountContext(data.getCardNumber());
+		} catch (CardNotFoundException e) {
+			return new TransactionResult(false, "Card number not found.", 0, null);
+		}
+		
+		return perform(data, context);
+	}
+	
+	/**
+	 * Applies the transaction against the balances in the given context while
+	 * holding the locks of the accounts it touches. If another transaction
+	 * changed one of the accounts in the meantime, the context is reloaded and
+	 * the transaction recomputed, up to MAX_ATTEMPTS times.
+	 */
+	public TransactionResult perform(TransactionData data, AccountContext context) {
+		long start = System.nanoTime();
+		TransactionResult result;
+		// Store transactions are already isolated, and locking inside them could deadlock against the store
+		if (accountStore.isInTransaction()) {
+			result = performWithRetries(data, context);
+		} else {
+			try (AccountLocks.Held held = accountLocks.lock(context.getUsername(), data.getAccounts())) {
+				result = performWithRetries(data, context);
+			}
+		}
+		
+		if (data.getType() != null)
+			TIMERS[data.getType().ordinal()][result.isSuccessful() ? 1 : 0].record(System.nanoTime() - start);
+		return result;
+	}
+	
+	private TransactionResult performWithRetries(TransactionData data, AccountContext context) {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return apply(data, context);
+			} catch (StaleBalanceException e) {
+				if (attempt >= MAX_ATTEMPTS) {
+					return new TransactionResult(false, "Account was updated concurrently. Try again.", 0, null);
+				}
+			}
+			
+			try {
+				context = accountStore.getAccountContext(context.getCardNumber());
+			} catch (CardNotFoundException e) {
+				return new TransactionResult(false, "Card number not found.", 0, null);
+			}
+		}
 	}
 	
-	abstract public TransactionResult perform(TransactionData data);
+	abstract protected TransactionResult apply(TransactionData data, AccountContext context) throws StaleBalanceException;
 }
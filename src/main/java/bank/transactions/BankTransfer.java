@@ -1,64 +1,73 @@
 package bank.transactions;
 
-import bank.db.DBHandler;
-import bank.exceptions.CardNotFoundException;
+import bank.db.AccountStore;
+import bank.exceptions.StaleBalanceException;
 import bank.exceptions.UnsuccessfulBalanceUpdate;
 import bank.exceptions.UserNotFoundException;
+import bank.transactions.utils.AccountContext;
+import bank.transactions.utils.AccountLocks;
 import bank.transactions.utils.AccountType;
 import bank.transactions.utils.TransactionData;
 import bank.transactions.utils.TransactionResult;
 import bank.utils.FeesCalculator;
+import bank.utils.Money;
 
 public class BankTransfer extends BankTransaction {
 
-	public BankTransfer(FeesCalculator feesCalculator, DBHandler dbHandler) {
-		super(feesCalculator, dbHandler);
+	public BankTransfer(FeesCalculator feesCalculator, AccountStore accountStore) {
+		super(feesCalculator, accountStore);
+	}
+
+	public BankTransfer(FeesCalculator feesCalculator, AccountStore accountStore, AccountLocks accountLocks) {
+		super(feesCalculator, accountStore, accountLocks);
 	}
 
 	@Override
-	public TransactionResult perform(TransactionData data) {
+	protected TransactionResult apply(TransactionData data, AccountContext context) throws StaleBalanceException {
 		TransactionResult result;
 		
-		String cardNumber = data.getCardNumber();
 		AccountType from = data.getAccounts()[0];
 		AccountType to = data.getAccounts()[1];
-		double amount = data.getAmount();
+		long amount = data.getAmountCents();
 		
-		String user;
-		try {
-			user = dbHandler.getCardOwner(cardNumber);
-		} catch (CardNotFoundException e) {
-			return new TransactionResult(false, "Card number not found.", 0.0, null);
+		if (from == to) {
+			return new TransactionResult(false, "Cannot transfer to the same account.", 0, null);
 		}
+		if (!Money.isValid(amount)) {
+			return new TransactionResult(false, "Invalid amount.", 0, null);
+		}
+		
+		String user = context.getUsername();
 		
-		double fromBalance, toBalance;
+		long fromBalance, toBalance;
 		boolean isStudent;
 		try {
-			fromBalance = dbHandler.getBalance(user, from);
-			toBalance = dbHandler.getBalance(user, to);
-			isStudent = dbHandler.isStudent(user);
+			fromBalance = context.getBalance(from);
+			toBalance = context.getBalance(to);
+			isStudent = context.isStudent();
 		} catch (UserNotFoundException e) {
-			return new TransactionResult(false, "User not found.", 0.0, null);
+			return new TransactionResult(false, "User not found.", 0, null);
 		}
 		
-		double fees = feesCalculator.calculateTransferFee(amount, fromBalance, toBalance, isStudent);
-		double amountRequired = amount + fees;
-		double newFromAmount = fromBalance - amountRequired;
-		double newToAmount = toBalance + amount;
+		long fees = feesCalculator.calculateTransferFeeCents(amount, fromBalance, toBalance, isStudent);
+		long amountRequired = amount + fees;
+		long newFromAmount = fromBalance - amountRequired;
+		long newToAmount = toBalance + amount;
 		if (newFromAmount >= 0) {
 			try {
-				dbHandler.setBalance(user, from, newFromAmount);
-				dbHandler.setBalance(user, to, newToAmount);
+				accountStore.updateBalances(user, data.getAccounts(),
+						new long[] { fromBalance, toBalance },
+						new long[] { newFromAmount, newToAmount });
 			} catch (UnsuccessfulBalanceUpdate e) {
-				return new TransactionResult(false, "User not found.", 0.0, null);
+				return new TransactionResult(false, "User not found.", 0, null);
 			}
 			
-			double[] accountsBalances = new double[2];
+			long[] accountsBalances = new long[2];
 			accountsBalances[0] = newFromAmount;
 			accountsBalances[1] = newToAmount;
 			result = new TransactionResult(true, "", fees, accountsBalances);
 		} else {
-			result = new TransactionResult(false, "Insufficient funds.", 0.0, null);
+			result = new TransactionResult(false, "Insufficient funds.", 0, null);
 		}
 		
 		return result;
@@ -2,64 +2,72 @@ package bank.transactions;
 
 import java.util.Calendar;
 
-import bank.db.DBHandler;
-import bank.exceptions.CardNotFoundException;
+import bank.db.AccountStore;
+import bank.exceptions.StaleBalanceException;
 import bank.exceptions.UnsuccessfulBalanceUpdate;
 import bank.exceptions.UserNotFoundException;
+import bank.logging.Logger;
+import bank.transactions.utils.AccountContext;
+import bank.transactions.utils.AccountLocks;
 import bank.transactions.utils.AccountType;
 import bank.transactions.utils.TransactionData;
 import bank.transactions.utils.TransactionResult;
 import bank.utils.FeesCalculator;
+import bank.utils.Money;
 
 public class BankWithdrawal extends BankTransaction {
+	private static final Logger LOG = Logger.get(BankWithdrawal.class);
+	// Declined withdrawals are routine, so only a sample of them is logged
+	private static final Logger INSUFFICIENT_FUNDS_LOG = Logger.get(BankWithdrawal.class).sampled(100);
 
-	public BankWithdrawal(FeesCalculator feesCalculator, DBHandler dbHandler) {
-		super(feesCalculator, dbHandler);
+	public BankWithdrawal(FeesCalculator feesCalculator, AccountStore accountStore) {
+		super(feesCalculator, accountStore);
+	}
+
+	public BankWithdrawal(FeesCalculator feesCalculator, AccountStore accountStore, AccountLocks accountLocks) {
+		super(feesCalculator, accountStore, accountLocks);
 	}
 
 	@Override
-	public TransactionResult perform(TransactionData data) {
-		String cardNumber = data.getCardNumber();
+	protected TransactionResult apply(TransactionData data, AccountContext context) throws StaleBalanceException {
 		AccountType from = data.getAccounts()[0];
-		double amount = data.getAmount();
+		long amount = data.getAmountCents();
 		int dayOfWeek = this.getDayOfWeek();
 		
-		String user;
-		boolean isStudent;
-		try {
-			user = dbHandler.getCardOwner(cardNumber);
-		} catch (CardNotFoundException e) {
-			System.out.println("Card not found: " + e);
-			return new TransactionResult(false, "Card number not found.", 0.0, null);
+		if (!Money.isValid(amount)) {
+			return new TransactionResult(false, "Invalid amount.", 0, null);
 		}
-		double balance;
+		
+		String user = context.getUsername();
+		boolean isStudent;
+		long balance;
 		try {
-			balance = dbHandler.getBalance(user, from);
-			isStudent = dbHandler.isStudent(user);
+			balance = context.getBalance(from);
+			isStudent = context.isStudent();
 		} catch (UserNotFoundException e) {
-			System.out.println("User not found: " + e);
-			return new TransactionResult(false, "User not found.", 0.0, null);
+			LOG.warn("User not found", "user", user, "reason", e.getMessage());
+			return new TransactionResult(false, "User not found.", 0, null);
 		}
 
-		double fees = feesCalculator.calculateWithdrawalFee(amount, balance, isStudent, dayOfWeek);
+		long fees = feesCalculator.calculateWithdrawalFeeCents(amount, balance, isStudent, dayOfWeek);
 
-		double amountRequired = amount + fees;
+		long amountRequired = amount + fees;
 		
 		TransactionResult result;
-		double newAmount = balance - amountRequired;
+		long newAmount = balance - amountRequired;
 		if (newAmount >= 0) {
 			try {
-				dbHandler.setBalance(user, from, balance - amountRequired);
+				accountStore.updateBalance(user, from, balance, newAmount);
 			} catch (UnsuccessfulBalanceUpdate e) {
-				System.out.println("Unknown Error: " + e);
-				return new TransactionResult(false, "Unsuccessful update of account balance.", 0.0, null);
+				LOG.error("Could not update balance", e, "user", user, "account", from);
+				return new TransactionResult(false, "Unsuccessful update of account balance.", 0, null);
 			}
-			double[] accountsBalances = new double[1];
+			long[] accountsBalances = new long[1];
 			accountsBalances[0] = newAmount;
 			result = new TransactionResult(true, "", fees, accountsBalances);
 		} else {
-			System.out.println("Negative Balance: " + newAmount);
-			result = new TransactionResult(false, "Insufficient funds.", 0.0, null);
+			INSUFFICIENT_FUNDS_LOG.info("Insufficient funds", "user", user, "account", from, "shortBy", Money.format(-newAmount));
+			result = new TransactionResult(false, "Insufficient funds.", 0, null);
 		}
 		
 		return result;
@@ -0,0 +1,76 @@
+package bank.transactions.utils;
+
+import java.util.Arrays;
+
+import bank.exceptions.UserNotFoundException;
+
+/**
+ * Everything a transaction needs to know about the owner of a card, loaded
+ * in a single round trip: the owner, their PIN, whether they are a student
+ * and the balance in cents of each of their accounts. Instances are
+ * immutable.
+ */
+public class AccountContext {
+	private final String cardNumber;
+	private final String username;
+	private final char[] pin;
+	private final Boolean student;
+	private final long[] balances;
+	private final boolean[] hasAccount;
+
+	public AccountContext(String cardNumber, String username, char[] pin, Boolean student) {
+		this(cardNumber, username, pin, student,
+				new long[AccountType.values().length], new boolean[AccountType.values().length]);
+	}
+
+	public AccountContext(String cardNumber, String username, char[] pin, Boolean student,
+			long[] balances, boolean[] hasAccount) {
+		super();
+		this.cardNumber = cardNumber;
+		this.username = username;
+		this.pin = pin == null ? null : pin.clone();
+		this.student = student;
+		this.balances = balances.clone();
+		this.hasAccount = hasAccount.clone();
+	}
+
+	public String getCardNumber() {
+		return cardNumber;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public boolean pinMatches(char[] inputPIN) {
+		return pin != null && Arrays.equals(pin, inputPIN);
+	}
+
+	public boolean isStudent() throws UserNotFoundException {
+		if (student == null)
+			throw new UserNotFoundException();
+		return student;
+	}
+
+	public boolean hasAccount(AccountType type) {
+		return hasAccount[type.ordinal()];
+	}
+
+	public long getBalance(AccountType type) throws UserNotFoundException {
+		if (!hasAccount[type.ordinal()])
+			throw new UserNotFoundException();
+		return balances[type.ordinal()];
+	}
+
+	public AccountContext withBalances(long[] balances, boolean[] hasAccount) {
+		return new AccountContext(cardNumber, username, pin, student, balances, hasAccount);
+	}
+
+	public AccountContext withBalance(AccountType type, long balance) {
+		long[] newBalances = balances.clone();
+		boolean[] newHasAccount = hasAccount.clone();
+		newBalances[type.ordinal()] = balance;
+		newHasAccount[type.ordinal()] = true;
+		return new AccountContext(cardNumber, username, pin, student, newBalances, newHasAccount);
+	}
+}
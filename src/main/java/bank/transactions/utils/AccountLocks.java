@@ -0,0 +1,85 @@
+package bank.transactions.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks over (user, account type) pairs. Operations on the same
+ * account always map to the same stripe, so they are serialized, while
+ * unrelated accounts almost always land on different stripes and proceed in
+ * parallel. Stripes are always taken in ascending order, so transactions
+ * that lock several accounts cannot deadlock each other.
+ */
+public class AccountLocks {
+	private static final AccountLocks SHARED = new AccountLocks(1024);
+
+	private final ReentrantLock[] stripes;
+	private final int mask;
+
+	/**
+	 * @param stripeCount rounded up to a power of two
+	 */
+	public AccountLocks(int stripeCount) {
+		int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+		this.stripes = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * The locks shared by every transaction in this process.
+	 */
+	public static AccountLocks shared() {
+		return SHARED;
+	}
+
+	public int stripe(String user, AccountType type) {
+		int h = (user == null ? 0 : user.hashCode()) * 31 + type.ordinal();
+		// Spread the high bits, like HashMap does
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Locks the stripes of the user's given accounts and returns a handle
+	 * that unlocks them when closed. Null accounts are skipped.
+	 */
+	public Held lock(String user, AccountType[] types) {
+		int[] indexes = new int[types == null ? 0 : types.length];
+		int count = 0;
+		for (int i = 0; i < indexes.length; i++) {
+			if (types[i] != null)
+				indexes[count++] = stripe(user, types[i]);
+		}
+		Arrays.sort(indexes, 0, count);
+
+		ReentrantLock[] held = new ReentrantLock[count];
+		int locked = 0;
+		for (int i = 0; i < count; i++) {
+			if (i > 0 && indexes[i] == indexes[i - 1])
+				continue;
+			held[locked] = stripes[indexes[i]];
+			held[locked].lock();
+			locked++;
+		}
+		return new Held(held, locked);
+	}
+
+	public static class Held implements AutoCloseable {
+		private final ReentrantLock[] locks;
+		private final int count;
+
+		Held(ReentrantLock[] locks, int count) {
+			this.locks = locks;
+			this.count = count;
+		}
+
+		@Override
+		public void close() {
+			for (int i = count - 1; i >= 0; i--) {
+				locks[i].unlock();
+			}
+		}
+	}
+}
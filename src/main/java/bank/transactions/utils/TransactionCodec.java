@@ -0,0 +1,361 @@
+package bank.transactions.utils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the messages exchanged between the ATM and the
+ * bank. Every message is a frame of the form
+ *
+ * <pre>
+ * [int length][byte kind][payload]
+ * </pre>
+ *
+ * where length counts the kind byte and the payload. Card numbers, PINs and
+ * tokens are ASCII and written one byte per character; enums are written as
+ * their ordinal, with -1 standing for null; amounts and balances are written
+ * as a long count of cents.
+ */
+public final class TransactionCodec {
+	public static final String CONTENT_TYPE = "application/x-atm-binary";
+
+	public static final byte CREDENTIALS_REQUEST = 1;
+	public static final byte TRANSACTION_REQUEST = 2;
+	public static final byte BATCH_REQUEST = 3;
+	public static final byte CREDENTIALS_RESPONSE = 4;
+	public static final byte TRANSACTION_RESPONSE = 5;
+	public static final byte BATCH_RESPONSE = 6;
+
+	public static final int HEADER_BYTES = 5;
+
+	private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+	private static final AccountType[] ACCOUNT_TYPES = AccountType.values();
+
+	private TransactionCodec() {
+	}
+
+	public static class Credentials {
+		private final String cardNumber;
+		private final char[] pin;
+
+		public Credentials(String cardNumber, char[] pin) {
+			this.cardNumber = cardNumber;
+			this.pin = pin;
+		}
+
+		public String getCardNumber() {
+			return cardNumber;
+		}
+
+		public char[] getPin() {
+			return pin;
+		}
+	}
+
+	public static class Authentication {
+		private final boolean successful;
+		private final String token;
+
+		public Authentication(boolean successful, String token) {
+			this.successful = successful;
+			this.token = token;
+		}
+
+		public boolean isSuccessful() {
+			return successful;
+		}
+
+		public String getToken() {
+			return token;
+		}
+	}
+
+	/**
+	 * Returns the kind of the frame at the buffer's position, or -1 if the
+	 * buffer does not hold a complete frame yet. Does not move the position.
+	 */
+	public static int peekFrame(ByteBuffer in, int maxFrameBytes) {
+		if (in.remaining() < 4)
+			return -1;
+		int length = in.getInt(in.position());
+		if (length < 1 || length > maxFrameBytes)
+			throw new IllegalArgumentException("Invalid frame length " + length);
+		if (in.remaining() < 4 + length)
+			return -1;
+		return in.get(in.position() + 4);
+	}
+
+	/**
+	 * Reads the header of the frame at the buffer's position and returns its
+	 * kind, leaving the position at the start of the payload.
+	 */
+	public static byte readHeader(ByteBuffer in) {
+		int length = in.getInt();
+		if (length < 1 || length > in.remaining())
+			throw new IllegalArgumentException("Truncated frame");
+		return in.get();
+	}
+
+	public static void writeCredentials(ByteBuffer out, String cardNumber, char[] pin) {
+		int start = beginFrame(out, CREDENTIALS_REQUEST);
+		putAscii(out, cardNumber);
+		putAscii(out, pin);
+		endFrame(out, start);
+	}
+
+	public static Credentials readCredentials(ByteBuffer in) {
+		try {
+			return new Credentials(getAscii(in), getAsciiChars(in));
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated credentials");
+		}
+	}
+
+	public static void writeAuthentication(ByteBuffer out, boolean successful, String token) {
+		int start = beginFrame(out, CREDENTIALS_RESPONSE);
+		out.put(successful ? (byte) 1 : (byte) 0);
+		putAscii(out, token);
+		endFrame(out, start);
+	}
+
+	public static Authentication readAuthentication(ByteBuffer in) {
+		try {
+			return new Authentication(in.get() != 0, getAscii(in));
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated authentication");
+		}
+	}
+
+	public static void writeTransaction(ByteBuffer out, TransactionData data) {
+		int start = beginFrame(out, TRANSACTION_REQUEST);
+		putTransaction(out, data);
+		endFrame(out, start);
+	}
+
+	public static TransactionData readTransaction(ByteBuffer in) {
+		try {
+			return getTransaction(in);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated transaction");
+		}
+	}
+
+	public static void writeBatch(ByteBuffer out, List<TransactionData> batch) {
+		int start = beginFrame(out, BATCH_REQUEST);
+		out.putInt(batch.size());
+		for (TransactionData data : batch) {
+			putTransaction(out, data);
+		}
+		endFrame(out, start);
+	}
+
+	public static List<TransactionData> readBatch(ByteBuffer in) {
+		try {
+			int count = in.getInt();
+			if (count < 0 || count > in.remaining())
+				throw new IllegalArgumentException("Invalid batch size " + count);
+			List<TransactionData> batch = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				batch.add(getTransaction(in));
+			}
+			return batch;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated batch");
+		}
+	}
+
+	public static void writeResult(ByteBuffer out, TransactionResult result) {
+		int start = beginFrame(out, TRANSACTION_RESPONSE);
+		putResult(out, result);
+		endFrame(out, start);
+	}
+
+	public static TransactionResult readResult(ByteBuffer in) {
+		try {
+			return getResult(in);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated result");
+		}
+	}
+
+	public static void writeResults(ByteBuffer out, List<TransactionResult> results) {
+		int start = beginFrame(out, BATCH_RESPONSE);
+		out.putInt(results.size());
+		for (TransactionResult result : results) {
+			putResult(out, result);
+		}
+		endFrame(out, start);
+	}
+
+	public static List<TransactionResult> readResults(ByteBuffer in) {
+		try {
+			int count = in.getInt();
+			if (count < 0 || count > in.remaining())
+				throw new IllegalArgumentException("Invalid batch size " + count);
+			List<TransactionResult> results = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				results.add(getResult(in));
+			}
+			return results;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated results");
+		}
+	}
+
+	private static int beginFrame(ByteBuffer out, byte kind) {
+		int start = out.position();
+		out.putInt(0);
+		out.put(kind);
+		return start;
+	}
+
+	private static void endFrame(ByteBuffer out, int start) {
+		out.putInt(start, out.position() - start - 4);
+	}
+
+	private static void putTransaction(ByteBuffer out, TransactionData data) {
+		putAscii(out, data.getCardNumber());
+		putAscii(out, data.getPin());
+		putAscii(out, data.getToken());
+		out.put(data.getType() == null ? (byte) -1 : (byte) data.getType().ordinal());
+		AccountType[] accounts = data.getAccounts();
+		if (accounts == null) {
+			out.put((byte) -1);
+		} else {
+			out.put((byte) accounts.length);
+			for (AccountType account : accounts) {
+				out.put(account == null ? (byte) -1 : (byte) account.ordinal());
+			}
+		}
+		out.putLong(data.getAmountCents());
+	}
+
+	private static TransactionData getTransaction(ByteBuffer in) {
+		String cardNumber = getAscii(in);
+		char[] pin = getAsciiChars(in);
+		String token = getAscii(in);
+		TransactionType type = getEnum(in, TRANSACTION_TYPES);
+		AccountType[] accounts = null;
+		int count = in.get();
+		if (count >= 0) {
+			accounts = new AccountType[count];
+			for (int i = 0; i < count; i++) {
+				accounts[i] = getEnum(in, ACCOUNT_TYPES);
+			}
+		}
+		long amountCents = in.getLong();
+		return new TransactionData(cardNumber, pin, token, type, accounts, amountCents);
+	}
+
+	private static void putResult(ByteBuffer out, TransactionResult result) {
+		out.put(result.isSuccessful() ? (byte) 1 : (byte) 0);
+		String reason = result.getReason();
+		if (reason == null) {
+			out.putShort((short) -1);
+		} else {
+			byte[] bytes = reason.getBytes(StandardCharsets.UTF_8);
+			putLength(out, bytes.length);
+			out.put(bytes);
+		}
+		out.putLong(result.getFeesCents());
+		long[] balances = result.getAccountBalancesCents();
+		if (balances == null) {
+			out.put((byte) -1);
+		} else {
+			out.put((byte) balances.length);
+			for (long balance : balances) {
+				out.putLong(balance);
+			}
+		}
+	}
+
+	private static TransactionResult getResult(ByteBuffer in) {
+		boolean successful = in.get() != 0;
+		String reason = null;
+		int length = in.getShort();
+		if (length >= 0) {
+			checkRemaining(in, length);
+			byte[] bytes = new byte[length];
+			in.get(bytes);
+			reason = new String(bytes, StandardCharsets.UTF_8);
+		}
+		long fees = in.getLong();
+		long[] balances = null;
+		int count = in.get();
+		if (count >= 0) {
+			balances = new long[count];
+			for (int i = 0; i < count; i++) {
+				balances[i] = in.getLong();
+			}
+		}
+		return new TransactionResult(successful, reason, fees, balances);
+	}
+
+	private static <E> E getEnum(ByteBuffer in, E[] values) {
+		int ordinal = in.get();
+		if (ordinal < 0)
+			return null;
+		if (ordinal >= values.length)
+			throw new IllegalArgumentException("Unknown value " + ordinal);
+		return values[ordinal];
+	}
+
+	private static void putAscii(ByteBuffer out, CharSequence s) {
+		if (s == null) {
+			out.putShort((short) -1);
+			return;
+		}
+		putLength(out, s.length());
+		for (int i = 0; i < s.length(); i++) {
+			out.put(asciiByte(s.charAt(i)));
+		}
+	}
+
+	private static void putAscii(ByteBuffer out, char[] s) {
+		if (s == null) {
+			out.putShort((short) -1);
+			return;
+		}
+		putLength(out, s.length);
+		for (char c : s) {
+			out.put(asciiByte(c));
+		}
+	}
+
+	private static void putLength(ByteBuffer out, int length) {
+		if (length > Short.MAX_VALUE)
+			throw new IllegalArgumentException("Too long to encode: " + length);
+		out.putShort((short) length);
+	}
+
+	private static byte asciiByte(char c) {
+		if (c > 0x7f)
+			throw new IllegalArgumentException("Only ASCII can be encoded");
+		return (byte) c;
+	}
+
+	private static String getAscii(ByteBuffer in) {
+		char[] chars = getAsciiChars(in);
+		return chars == null ? null : new String(chars);
+	}
+
+	private static char[] getAsciiChars(ByteBuffer in) {
+		int length = in.getShort();
+		if (length < 0)
+			return null;
+		checkRemaining(in, length);
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) (in.get() & 0x7f);
+		}
+		return chars;
+	}
+
+	private static void checkRemaining(ByteBuffer in, int length) {
+		if (in.remaining() < length)
+			throw new BufferUnderflowException();
+	}
+}
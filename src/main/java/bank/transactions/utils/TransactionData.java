@@ -1,19 +1,35 @@
 package bank.transactions.utils;
 
+/**
+ * A transaction requested by an ATM. The amount is in cents, and is missing
+ * if the request did not name one.
+ */
 public class TransactionData {
 	private String cardNumber;
 	private char[] pin;
+	private String token;
 	private TransactionType type;
 	private AccountType[] accounts;
-	private double amount;
+	private Long amountCents;
 	
-	public TransactionData(String cardNumber, char[] pin, TransactionType type, AccountType[] accounts, double amount) {
+	public TransactionData(String cardNumber, char[] pin, TransactionType type, AccountType[] accounts, long amountCents) {
+		this(cardNumber, pin, null, type, accounts, amountCents);
+	}
+
+	public TransactionData(String cardNumber, char[] pin, String token, TransactionType type, AccountType[] accounts,
+			long amountCents) {
+		this(cardNumber, pin, token, type, accounts, Long.valueOf(amountCents));
+	}
+
+	TransactionData(String cardNumber, char[] pin, String token, TransactionType type, AccountType[] accounts,
+			Long amountCents) {
 		super();
 		this.cardNumber = cardNumber;
 		this.pin = pin;
+		this.token = token;
 		this.type = type;
 		this.accounts = accounts;
-		this.amount = amount;
+		this.amountCents = amountCents;
 	}
 
 	public String getCardNumber() {
@@ -23,6 +39,10 @@ public class TransactionData {
 	public char[] getPin() {
 		return pin;
 	}
+	
+	public String getToken() {
+		return token;
+	}
 
 	public TransactionType getType() {
 		return type;
@@ -32,8 +52,12 @@ public class TransactionData {
 		return accounts;
 	}
 	
-	public double getAmount() {
-		return amount;
+	public boolean hasAmount() {
+		return amountCents != null;
+	}
+
+	public long getAmountCents() {
+		return amountCents == null ? 0 : amountCents;
 	}
 
 }
@@ -0,0 +1,169 @@
+package bank.transactions.utils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import bank.utils.Money;
+
+/**
+ * JSON encoding of the transactions exchanged between the ATM and the bank.
+ * Amounts, fees and balances keep their original field names and are
+ * written as decimal amounts such as 20.00, so existing clients keep
+ * working. While clients move over, a request may name its amount in cents
+ * as amountCents instead, and a result may carry feesCents and
+ * accountBalancesCents.
+ *
+ * <p>A requested amount that is not a whole number of cents is rejected as
+ * malformed. Fees and balances from an older bank may carry fractions of a
+ * cent and are rounded to the cent, half to even.
+ */
+public final class TransactionJson {
+	private TransactionJson() {
+	}
+
+	/**
+	 * Creates a Gson that reads and writes transactions and their results in
+	 * this encoding.
+	 */
+	public static Gson gson() {
+		Gson plain = new Gson();
+		return new GsonBuilder()
+				.registerTypeAdapter(TransactionData.class, new DataAdapter(plain.getAdapter(WireData.class)))
+				.registerTypeAdapter(TransactionResult.class, new ResultAdapter(plain.getAdapter(WireResult.class)))
+				.create();
+	}
+
+	private static class WireData {
+		private String cardNumber;
+		private char[] pin;
+		private String token;
+		private TransactionType type;
+		private AccountType[] accounts;
+		private BigDecimal amount;
+		private Long amountCents;
+	}
+
+	private static class WireResult {
+		private boolean successful;
+		private String reason;
+		private BigDecimal fees;
+		private BigDecimal[] accountBalances;
+		private Long feesCents;
+		private long[] accountBalancesCents;
+	}
+
+	private static class DataAdapter extends TypeAdapter<TransactionData> {
+		private final TypeAdapter<WireData> wire;
+
+		DataAdapter(TypeAdapter<WireData> wire) {
+			this.wire = wire;
+		}
+
+		@Override
+		public void write(JsonWriter out, TransactionData data) throws IOException {
+			if (data == null) {
+				out.nullValue();
+				return;
+			}
+			WireData wireData = new WireData();
+			wireData.cardNumber = data.getCardNumber();
+			wireData.pin = data.getPin();
+			wireData.token = data.getToken();
+			wireData.type = data.getType();
+			wireData.accounts = data.getAccounts();
+			if (data.hasAmount())
+				wireData.amount = units(data.getAmountCents());
+			wire.write(out, wireData);
+		}
+
+		@Override
+		public TransactionData read(JsonReader in) throws IOException {
+			WireData wireData = wire.read(in);
+			if (wireData == null)
+				return null;
+
+			Long amountCents = wireData.amountCents;
+			if (amountCents == null && wireData.amount != null) {
+				try {
+					amountCents = Money.parse(wireData.amount.toString());
+				} catch (IllegalArgumentException e) {
+					throw new JsonSyntaxException(e.getMessage());
+				}
+			}
+			return new TransactionData(wireData.cardNumber, wireData.pin, wireData.token, wireData.type,
+					wireData.accounts, amountCents);
+		}
+	}
+
+	private static class ResultAdapter extends TypeAdapter<TransactionResult> {
+		private final TypeAdapter<WireResult> wire;
+
+		ResultAdapter(TypeAdapter<WireResult> wire) {
+			this.wire = wire;
+		}
+
+		@Override
+		public void write(JsonWriter out, TransactionResult result) throws IOException {
+			if (result == null) {
+				out.nullValue();
+				return;
+			}
+			WireResult wireResult = new WireResult();
+			wireResult.successful = result.isSuccessful();
+			wireResult.reason = result.getReason();
+			wireResult.fees = units(result.getFeesCents());
+			long[] balances = result.getAccountBalancesCents();
+			if (balances != null) {
+				wireResult.accountBalances = new BigDecimal[balances.length];
+				for (int i = 0; i < balances.length; i++) {
+					wireResult.accountBalances[i] = units(balances[i]);
+				}
+			}
+			wire.write(out, wireResult);
+		}
+
+		@Override
+		public TransactionResult read(JsonReader in) throws IOException {
+			WireResult wireResult = wire.read(in);
+			if (wireResult == null)
+				return null;
+
+			long fees = 0;
+			if (wireResult.feesCents != null)
+				fees = wireResult.feesCents;
+			else if (wireResult.fees != null)
+				fees = roundedCents(wireResult.fees);
+
+			long[] balances = wireResult.accountBalancesCents;
+			if (balances == null && wireResult.accountBalances != null) {
+				balances = new long[wireResult.accountBalances.length];
+				for (int i = 0; i < balances.length; i++) {
+					balances[i] = roundedCents(wireResult.accountBalances[i]);
+				}
+			}
+			return new TransactionResult(wireResult.successful, wireResult.reason, fees, balances);
+		}
+	}
+
+	private static BigDecimal units(long cents) {
+		return BigDecimal.valueOf(cents, 2);
+	}
+
+	private static long roundedCents(BigDecimal units) {
+		if (units == null)
+			throw new JsonSyntaxException("Missing balance");
+		try {
+			return units.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+		} catch (ArithmeticException e) {
+			throw new JsonSyntaxException("Amount too large: " + units);
+		}
+	}
+}
@@ -1,20 +1,20 @@
 package bank.transactions.utils;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * The outcome of a transaction. Fees and balances are in cents.
+ */
 public class TransactionResult {
 	private boolean successful;
 	private String reason;
-	private double fees;
-	private double[] accountBalances;
+	private long feesCents;
+	private long[] accountBalancesCents;
 	
-	public TransactionResult(boolean successful, String reason, double fees, double[] accountBalances) {
+	public TransactionResult(boolean successful, String reason, long feesCents, long[] accountBalancesCents) {
 		super();
 		this.successful = successful;
 		this.reason = reason;
-		this.fees = fees;
-		this.accountBalances = accountBalances;
+		this.feesCents = feesCents;
+		this.accountBalancesCents = accountBalancesCents;
 	}
 	
 	public boolean isSuccessful() {
@@ -25,11 +25,11 @@ public class TransactionResult {
 		return reason;
 	}
 
-	public double getFees() {
-		return fees;
+	public long getFeesCents() {
+		return feesCents;
 	}
 
-	public double[] getAccountBalances() {
-		return accountBalances;
+	public long[] getAccountBalancesCents() {
+		return accountBalancesCents;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package bank.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of equally sized direct buffers. Direct buffers are expensive to
+ * allocate and free, so they are handed back here instead of being dropped;
+ * at most maxPooled of them are kept.
+ */
+public class BufferPool {
+	private final int bufferBytes;
+	private final int maxPooled;
+	private final Queue<ByteBuffer> free;
+	private final AtomicInteger pooled;
+
+	public BufferPool(int bufferBytes, int maxPooled) {
+		this.bufferBytes = bufferBytes;
+		this.maxPooled = maxPooled;
+		this.free = new ConcurrentLinkedQueue<>();
+		this.pooled = new AtomicInteger();
+	}
+
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = free.poll();
+		if (buffer == null)
+			return ByteBuffer.allocateDirect(bufferBytes);
+		pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool. Buffers that did not come from the pool
+	 * are ignored.
+	 */
+	public void release(ByteBuffer buffer) {
+		if (!buffer.isDirect() || buffer.capacity() != bufferBytes)
+			return;
+		if (pooled.incrementAndGet() > maxPooled) {
+			pooled.decrementAndGet();
+			return;
+		}
+		free.offer(buffer);
+	}
+
+	public int getBufferBytes() {
+		return bufferBytes;
+	}
+}
@@ -0,0 +1,140 @@
+package bank.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used cache of card credentials. A card maps either
+ * to its owner and a salted hash of the PIN, or to a "not found" marker so
+ * that bursts of attempts with unknown cards do not reach the database.
+ * Entries expire after a fixed time to live; "not found" entries sooner.
+ */
+public class CredentialCache {
+	private static final int SALT_LENGTH = 16;
+
+	private final int maxEntries;
+	private final long ttlMillis;
+	private final long notFoundTtlMillis;
+	private final SecureRandom random;
+	private final LinkedHashMap<String, Entry> entries;
+
+	public CredentialCache(int maxEntries, long ttlMillis, long notFoundTtlMillis) {
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttlMillis;
+		this.notFoundTtlMillis = notFoundTtlMillis;
+		this.random = new SecureRandom();
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > CredentialCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached entry for a card, or null if there is none or it has
+	 * expired.
+	 */
+	public Entry get(String cardNumber) {
+		long now = System.currentTimeMillis();
+		synchronized (entries) {
+			Entry entry = entries.get(cardNumber);
+			if (entry == null)
+				return null;
+			if (entry.expiresAt <= now) {
+				entries.remove(cardNumber);
+				return null;
+			}
+			return entry;
+		}
+	}
+
+	public Entry putCredentials(String cardNumber, String owner, char[] pin) {
+		byte[] salt = new byte[SALT_LENGTH];
+		random.nextBytes(salt);
+		Entry entry = new Entry(owner, salt, hash(salt, pin), System.currentTimeMillis() + ttlMillis);
+		put(cardNumber, entry);
+		return entry;
+	}
+
+	public Entry putNotFound(String cardNumber) {
+		Entry entry = new Entry(null, null, null, System.currentTimeMillis() + notFoundTtlMillis);
+		put(cardNumber, entry);
+		return entry;
+	}
+
+	public void invalidate(String cardNumber) {
+		synchronized (entries) {
+			entries.remove(cardNumber);
+		}
+	}
+
+	public void invalidateOwner(String owner) {
+		synchronized (entries) {
+			Iterator<Entry> it = entries.values().iterator();
+			while (it.hasNext()) {
+				if (owner.equals(it.next().owner))
+					it.remove();
+			}
+		}
+	}
+
+	private void put(String cardNumber, Entry entry) {
+		synchronized (entries) {
+			entries.put(cardNumber, entry);
+		}
+	}
+
+	private static byte[] hash(byte[] salt, char[] pin) {
+		ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(pin));
+		byte[] bytes = new byte[encoded.remaining()];
+		encoded.get(bytes);
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(salt);
+			return digest.digest(bytes);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			Arrays.fill(bytes, (byte) 0);
+		}
+	}
+
+	public static class Entry {
+		private final String owner;
+		private final byte[] salt;
+		private final byte[] pinHash;
+		private final long expiresAt;
+
+		private Entry(String owner, byte[] salt, byte[] pinHash, long expiresAt) {
+			this.owner = owner;
+			this.salt = salt;
+			this.pinHash = pinHash;
+			this.expiresAt = expiresAt;
+		}
+
+		public boolean isCardFound() {
+			return owner != null;
+		}
+
+		public String getOwner() {
+			return owner;
+		}
+
+		public boolean pinMatches(char[] inputPIN) {
+			if (owner == null || inputPIN == null)
+				return false;
+			return MessageDigest.isEqual(pinHash, hash(salt, inputPIN));
+		}
+	}
+}
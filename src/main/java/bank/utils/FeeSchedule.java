@@ -0,0 +1,220 @@
+package bank.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Calendar;
+import java.util.Properties;
+
+/**
+ * Immutable set of fee and interest rules. The rules are read from
+ * properties (see fees.properties for the keys) and compiled into rate
+ * tables. Each condition a rate depends on is one bit of an index into the
+ * table, so working out a rate is a few comparisons and a single lookup.
+ * Amount and balance thresholds must be whole numbers of cents.
+ */
+public final class FeeSchedule {
+	private static final Properties DEFAULTS = new Properties();
+
+	static {
+		DEFAULTS.setProperty("withdrawal.lowBalance", "1000.00");
+		DEFAULTS.setProperty("withdrawal.highBalance", "10000.00");
+		DEFAULTS.setProperty("withdrawal.rates", "0.002, 0.001, 0.0");
+		DEFAULTS.setProperty("withdrawal.studentRates", "0.001, 0.0");
+
+		DEFAULTS.setProperty("deposit.largeAmount", "500.00");
+		DEFAULTS.setProperty("deposit.studentLargeAmount", "100.00");
+		DEFAULTS.setProperty("deposit.highBalance", "10000.00, 5000.00");
+		DEFAULTS.setProperty("deposit.studentHighBalance", "5000.00, 1000.00");
+		DEFAULTS.setProperty("deposit.rates", "0.0, 0.005, 0.005, 0.01");
+		DEFAULTS.setProperty("deposit.studentRates", "0.0, 0.005, 0.005, 0.01");
+
+		DEFAULTS.setProperty("transfer.smallAmount", "100.00");
+		DEFAULTS.setProperty("transfer.lowBalance", "1000.00");
+		DEFAULTS.setProperty("transfer.largeRates", "0.055, 0.05, 0.005, 0.01");
+		DEFAULTS.setProperty("transfer.smallRates", "0.05, 0.1, 0.01, 0.02");
+		DEFAULTS.setProperty("transfer.studentLargeRates", "0.0125, 0.025, 0.0025, 0.005");
+		DEFAULTS.setProperty("transfer.studentSmallRates", "0.025, 0.05, 0.005, 0.01");
+	}
+
+	public static final FeeSchedule DEFAULT = fromProperties(new Properties());
+
+	private final long withdrawalLowBalance;
+	private final long withdrawalHighBalance;
+	// Index: student << 3 | weekend << 2 | below low balance << 1 | below high balance
+	private final double[] withdrawalRates;
+
+	// Indexed by student
+	private final long[] largeDeposit;
+	// Index: student << 1 | large deposit
+	private final long[] highDepositBalance;
+	// Index: student << 2 | large deposit << 1 | high balance
+	private final double[] depositRates;
+
+	private final long transferSmallAmount;
+	private final long transferLowBalance;
+	// Index: student << 3 | small amount << 2 | from balance low << 1 | to balance low
+	private final double[] transferRates;
+
+	private FeeSchedule(Properties properties) {
+		withdrawalLowBalance = cents(properties, "withdrawal.lowBalance");
+		withdrawalHighBalance = cents(properties, "withdrawal.highBalance");
+		double[] rates = numbers(properties, "withdrawal.rates", 3);
+		double[] studentRates = numbers(properties, "withdrawal.studentRates", 2);
+		withdrawalRates = new double[16];
+		for (int index = 0; index < 16; index++) {
+			boolean student = (index & 8) != 0;
+			boolean weekend = (index & 4) != 0;
+			boolean belowLow = (index & 2) != 0;
+			boolean belowHigh = (index & 1) != 0;
+			if (student)
+				withdrawalRates[index] = studentRates[weekend ? 1 : 0];
+			else
+				withdrawalRates[index] = rates[belowLow ? 0 : belowHigh ? 1 : 2];
+		}
+
+		largeDeposit = new long[] { cents(properties, "deposit.largeAmount"),
+				cents(properties, "deposit.studentLargeAmount") };
+		long[] highBalance = cents(properties, "deposit.highBalance", 2);
+		long[] studentHighBalance = cents(properties, "deposit.studentHighBalance", 2);
+		highDepositBalance = new long[] { highBalance[0], highBalance[1], studentHighBalance[0],
+				studentHighBalance[1] };
+		depositRates = concat(numbers(properties, "deposit.rates", 4), numbers(properties, "deposit.studentRates", 4));
+
+		transferSmallAmount = cents(properties, "transfer.smallAmount");
+		transferLowBalance = cents(properties, "transfer.lowBalance");
+		transferRates = concat(concat(numbers(properties, "transfer.largeRates", 4),
+				numbers(properties, "transfer.smallRates", 4)), concat(
+						numbers(properties, "transfer.studentLargeRates", 4),
+						numbers(properties, "transfer.studentSmallRates", 4)));
+	}
+
+	/**
+	 * Compiles the given rules. Rules missing from the properties keep their
+	 * default value.
+	 *
+	 * @throws IllegalArgumentException if a rule is malformed
+	 */
+	public static FeeSchedule fromProperties(Properties properties) {
+		Properties withDefaults = new Properties(DEFAULTS);
+		withDefaults.putAll(properties);
+		return new FeeSchedule(withDefaults);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if a rule is malformed
+	 */
+	public static FeeSchedule load(Path file) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+		}
+		return fromProperties(properties);
+	}
+
+	/**
+	 * Returns the fee for withdrawing the amount, all in cents, rounded to the
+	 * cent half to even.
+	 */
+	public long calculateWithdrawalFeeCents(long amount, long accountBalance, boolean student, int dayOfWeek) {
+		return Money.applyRate(amount, withdrawalRates[withdrawalIndex(student, dayOfWeek,
+				accountBalance < withdrawalLowBalance, accountBalance < withdrawalHighBalance)]);
+	}
+
+	public long calculateDepositInterestCents(long amount, long accountBalance, boolean student) {
+		int type = depositType(student, amount > largeDeposit[bit(student)]);
+		return Money.applyRate(amount, depositRates[type << 1 | bit(accountBalance > highDepositBalance[type])]);
+	}
+
+	public long calculateTransferFeeCents(long amount, long fromAccountBalance, long toAccountBalance,
+			boolean student) {
+		return Money.applyRate(amount, transferRates[transferIndex(student, amount < transferSmallAmount,
+				fromAccountBalance < transferLowBalance, toAccountBalance < transferLowBalance)]);
+	}
+
+	/**
+	 * Returns the unrounded fee for an amount given in units rather than
+	 * cents. Transactions use {@link #calculateWithdrawalFeeCents}.
+	 */
+	public double calculateWithdrawalFee(double amount, double accountBalance, boolean student, int dayOfWeek) {
+		return amount * withdrawalRates[withdrawalIndex(student, dayOfWeek,
+				accountBalance < Money.toDouble(withdrawalLowBalance),
+				accountBalance < Money.toDouble(withdrawalHighBalance))];
+	}
+
+	public double calculateDepositInterest(double amount, double accountBalance, boolean student) {
+		int type = depositType(student, amount > Money.toDouble(largeDeposit[bit(student)]));
+		return amount * depositRates[type << 1 | bit(accountBalance > Money.toDouble(highDepositBalance[type]))];
+	}
+
+	public double calculateTransferFee(double amount, double fromAccountBalance, double toAccountBalance,
+			boolean student) {
+		double lowBalance = Money.toDouble(transferLowBalance);
+		return amount * transferRates[transferIndex(student, amount < Money.toDouble(transferSmallAmount),
+				fromAccountBalance < lowBalance, toAccountBalance < lowBalance)];
+	}
+
+	private static int withdrawalIndex(boolean student, int dayOfWeek, boolean belowLow, boolean belowHigh) {
+		boolean weekend = (dayOfWeek == Calendar.SATURDAY) | (dayOfWeek == Calendar.SUNDAY);
+		return bit(student) << 3 | bit(weekend) << 2 | bit(belowLow) << 1 | bit(belowHigh);
+	}
+
+	private static int depositType(boolean student, boolean large) {
+		return bit(student) << 1 | bit(large);
+	}
+
+	private static int transferIndex(boolean student, boolean small, boolean fromLow, boolean toLow) {
+		return bit(student) << 3 | bit(small) << 2 | bit(fromLow) << 1 | bit(toLow);
+	}
+
+	private static int bit(boolean condition) {
+		return condition ? 1 : 0;
+	}
+
+	private static long cents(Properties properties, String key) {
+		return cents(properties, key, 1)[0];
+	}
+
+	private static long[] cents(Properties properties, String key, int count) {
+		String[] parts = parts(properties, key, count);
+		long[] cents = new long[count];
+		for (int i = 0; i < count; i++) {
+			try {
+				cents[i] = Money.parse(parts[i]);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(key + " has an invalid amount: " + parts[i].trim());
+			}
+		}
+		return cents;
+	}
+
+	private static double[] numbers(Properties properties, String key, int count) {
+		String[] parts = parts(properties, key, count);
+		double[] numbers = new double[count];
+		for (int i = 0; i < count; i++) {
+			try {
+				numbers[i] = Double.parseDouble(parts[i].trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(key + " has an invalid number: " + parts[i].trim());
+			}
+			if (Double.isNaN(numbers[i]) || Double.isInfinite(numbers[i]))
+				throw new IllegalArgumentException(key + " has an invalid number: " + parts[i].trim());
+		}
+		return numbers;
+	}
+
+	private static String[] parts(Properties properties, String key, int count) {
+		String[] parts = properties.getProperty(key).split(",");
+		if (parts.length != count)
+			throw new IllegalArgumentException(key + " needs " + count + " values, got " + parts.length);
+		return parts;
+	}
+
+	private static double[] concat(double[] first, double[] second) {
+		double[] both = new double[first.length + second.length];
+		System.arraycopy(first, 0, both, 0, first.length);
+		System.arraycopy(second, 0, both, first.length, second.length);
+		return both;
+	}
+}
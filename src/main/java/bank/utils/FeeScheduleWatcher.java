@@ -0,0 +1,84 @@
+package bank.utils;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import bank.logging.Logger;
+
+/**
+ * Reloads a fee schedule file whenever it changes and swaps the new schedule
+ * into a {@link FeesCalculator}. A file that fails to load is reported and
+ * the current schedule is kept.
+ */
+public class FeeScheduleWatcher {
+	private static final Logger LOG = Logger.get(FeeScheduleWatcher.class);
+	// Editors often write a file in several steps, so wait for them to finish
+	private static final long SETTLE_MILLIS = 100;
+
+	private final Path file;
+	private final FeesCalculator feesCalculator;
+	private final WatchService watcher;
+
+	public FeeScheduleWatcher(Path file, FeesCalculator feesCalculator) throws IOException {
+		this.file = file.toAbsolutePath();
+		this.feesCalculator = feesCalculator;
+		this.watcher = this.file.getFileSystem().newWatchService();
+		this.file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+	}
+
+	public void start() {
+		Thread thread = new Thread(this::run, "fee-schedule-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void close() {
+		try {
+			watcher.close();
+		} catch (IOException e) {
+			LOG.warn("Could not close fee schedule watcher", e);
+		}
+	}
+
+	private void run() {
+		try {
+			while (true) {
+				WatchKey key = watcher.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (file.getFileName().equals(event.context()))
+						changed = true;
+				}
+				key.reset();
+
+				if (changed) {
+					Thread.sleep(SETTLE_MILLIS);
+					// Drop the events of the rest of the write
+					WatchKey pending = watcher.poll();
+					if (pending != null) {
+						pending.pollEvents();
+						pending.reset();
+					}
+					reload();
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Stopped
+		}
+	}
+
+	private void reload() {
+		try {
+			feesCalculator.setSchedule(FeeSchedule.load(file));
+			LOG.info("Fee schedule reloaded", "file", file);
+		} catch (IOException | IllegalArgumentException e) {
+			LOG.warn("Could not reload fee schedule", "file", file, "reason", e.getMessage());
+		}
+	}
+}
@@ -1,146 +1,88 @@
 package bank.utils;
 
-import java.util.Calendar;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
 
+import bank.logging.Logger;
+
+/**
+ * Computes fees and interest according to the current {@link FeeSchedule}.
+ * The schedule can be replaced at any time; each calculation reads it once,
+ * so it never mixes rules from two schedules. Transactions use the variants
+ * that take and return cents.
+ */
 public class FeesCalculator {
-	public double calculateWithdrawalFee(double amount, double accountBalance, boolean student, int dayOfWeek) {
-		// Calculate fee percentage
-		double feePercentage;
-		// Check if student
-		if (student) {
-			// Check if it's weekend
-			if ((dayOfWeek == Calendar.SATURDAY) || (dayOfWeek == Calendar.SUNDAY)) {
-				feePercentage = 0.0;
-			} else {
-				feePercentage = 0.001;
-			}
-		} else {
-			if (accountBalance < 1000.00) {
-				feePercentage = 0.002;
-			} else if (accountBalance < 10000.00) {
-				feePercentage = 0.001;
-			} else {
-				feePercentage = 0.0;
+	private static final Logger LOG = Logger.get(FeesCalculator.class);
+
+	private final AtomicReference<FeeSchedule> schedule;
+
+	public FeesCalculator() {
+		this(FeeSchedule.DEFAULT);
+	}
+
+	public FeesCalculator(FeeSchedule schedule) {
+		this.schedule = new AtomicReference<>(schedule);
+	}
+
+	/**
+	 * Loads the schedule from the file named by the bank.fees system property
+	 * (fees.properties by default) and keeps watching the file for changes,
+	 * unless bank.fees.watch is false. Falls back to the default schedule if
+	 * the file is missing or malformed.
+	 */
+	public static FeesCalculator fromSystemProperties() {
+		Path file = Paths.get(System.getProperty("bank.fees", "fees.properties"));
+		FeesCalculator feesCalculator = new FeesCalculator();
+		if (!Files.exists(file))
+			return feesCalculator;
+
+		try {
+			feesCalculator.setSchedule(FeeSchedule.load(file));
+		} catch (IOException | IllegalArgumentException e) {
+			LOG.warn("Could not load fee schedule", "file", file, "reason", e.getMessage());
+		}
+		if (!"false".equals(System.getProperty("bank.fees.watch"))) {
+			try {
+				new FeeScheduleWatcher(file, feesCalculator).start();
+			} catch (IOException e) {
+				LOG.warn("Could not watch fee schedule", "file", file, "reason", e.getMessage());
 			}
 		}
-		
-		// Calculate fee
-		double fee = amount * feePercentage;
-		
-		return fee;
+		return feesCalculator;
+	}
+
+	public FeeSchedule getSchedule() {
+		return schedule.get();
+	}
+
+	public void setSchedule(FeeSchedule schedule) {
+		this.schedule.set(schedule);
+	}
+
+	public long calculateWithdrawalFeeCents(long amount, long accountBalance, boolean student, int dayOfWeek) {
+		return schedule.get().calculateWithdrawalFeeCents(amount, accountBalance, student, dayOfWeek);
+	}
+
+	public long calculateDepositInterestCents(long amount, long accountBalance, boolean student) {
+		return schedule.get().calculateDepositInterestCents(amount, accountBalance, student);
+	}
+
+	public long calculateTransferFeeCents(long amount, long fromAccountBalance, long toAccountBalance, boolean student) {
+		return schedule.get().calculateTransferFeeCents(amount, fromAccountBalance, toAccountBalance, student);
+	}
+
+	public double calculateWithdrawalFee(double amount, double accountBalance, boolean student, int dayOfWeek) {
+		return schedule.get().calculateWithdrawalFee(amount, accountBalance, student, dayOfWeek);
 	}
-	
+
 	public double calculateDepositInterest(double amount, double accountBalance, boolean student) {
-		// Calculate interest percentage
-		double interestPercentage;
-		// Check if student
-		if (student) {
-			// Check amount deposited
-			if (amount > 100.00) {
-				// Check balance
-				if (accountBalance > 1000.00) {
-					interestPercentage = 0.01;
-				} else {
-					interestPercentage = 0.005;
-				}
-			} else {
-				if (accountBalance > 5000.00) {
-					interestPercentage = 0.005;
-				} else {
-					interestPercentage = 0.00;
-				}
-			}
-		} else {
-			if (amount > 500.00) {
-				if (accountBalance > 5000.00) {
-					interestPercentage = 0.01;
-				} else {
-					interestPercentage = 0.005;
-				}
-			} else {
-				if (accountBalance > 10000.00) {
-					interestPercentage = 0.005;
-				} else {
-					interestPercentage = 0.0;
-				}
-			}
-		}
-		
-		// Calculate interest
-		double interest = amount * interestPercentage;
-		
-		return interest;
+		return schedule.get().calculateDepositInterest(amount, accountBalance, student);
 	}
-	
+
 	public double calculateTransferFee(double amount, double fromAccountBalance, double toAccountBalance, boolean student) {
-		// Calculate fee percentage
-		double feePercentage;
-		// Check if student
-		if (student) {
-			if (amount < 100.00) {
-				if (fromAccountBalance < 1000.00) {
-					if (toAccountBalance < 1000.00) {
-						feePercentage = 0.01;
-					} else {
-						feePercentage = 0.005;
-					}
-				} else {
-					if (toAccountBalance < 1000.00) {
-						feePercentage = 0.05;
-					} else {
-						feePercentage = 0.025;
-					}
-				}
-			} else {
-				if (fromAccountBalance < 1000.00) {
-					if (toAccountBalance < 1000.00) {
-						feePercentage = 0.005;
-					} else {
-						feePercentage = 0.0025;
-					}
-				} else {
-					if (toAccountBalance < 1000.00) {
-						feePercentage = 0.025;
-					} else {
-						feePercentage = 0.0125;
-					}
-				}
-			}
-		} else {
-			if (amount < 100.00) {
-				if (fromAccountBalance < 1000.00) {
-					if (toAccountBalance < 1000.00) {
-						feePercentage = 0.02;
-					} else {
-						feePercentage = 0.01;
-					}
-				} else {
-					if (toAccountBalance < 1000.00) {
-						feePercentage = 0.1;
-					} else {
-						feePercentage = 0.05;
-					}
-				}
-			} else {
-				if (fromAccountBalance < 1000.00) {
-					if (toAccountBalance < 1000.00) {
-						feePercentage = 0.01;
-					} else {
-						feePercentage = 0.005;
-					}
-				} else {
-					if (toAccountBalance < 1000.00) {
-						feePercentage = 0.05;
-					} else {
-						feePercentage = 0.055;
-					}
-				}
-			}
-		}
-		
-		// Calculate fee
-		double fee = amount * feePercentage;
-		
-		return fee;
+		return schedule.get().calculateTransferFee(amount, fromAccountBalance, toAccountBalance, student);
 	}
 }
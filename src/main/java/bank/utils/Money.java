@@ -0,0 +1,70 @@
+package bank.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * Money as a whole number of cents held in a long. Amounts, balances, fees
+ * and interest are carried as cents end to end: in transactions, on the wire
+ * and in the database, so balances never pick up binary rounding errors.
+ * Fees and interest are a rate applied to an amount and rounded to the cent,
+ * half to even.
+ */
+public final class Money {
+	public static final long CENTS_PER_UNIT = 100;
+
+	// Largest amount accepted, far enough from Long.MAX_VALUE that adding up a
+	// few amounts cannot overflow
+	public static final long MAX_CENTS = 1L << 53;
+
+	private Money() {
+	}
+
+	/**
+	 * Returns whether the amount is small enough to take part in a
+	 * transaction.
+	 */
+	public static boolean isValid(long cents) {
+		return cents >= -MAX_CENTS && cents <= MAX_CENTS;
+	}
+
+	/**
+	 * Parses a decimal amount such as "12.30" into cents.
+	 *
+	 * @throws IllegalArgumentException if the amount is malformed, too large
+	 *                                  or not a whole number of cents
+	 */
+	public static long parse(String amount) {
+		try {
+			long cents = new BigDecimal(amount.trim()).movePointRight(2).longValueExact();
+			if (isValid(cents))
+				return cents;
+		} catch (NumberFormatException | ArithmeticException e) {
+			// Reported below
+		}
+		throw new IllegalArgumentException("Not a whole number of cents: " + amount);
+	}
+
+	/**
+	 * Applies a rate, such as a fee percentage, to an amount and rounds the
+	 * result to the cent, half to even.
+	 */
+	public static long applyRate(long cents, double rate) {
+		return (long) Math.rint(cents * rate);
+	}
+
+	/**
+	 * Formats cents as a decimal amount with two decimals, such as "-12.30".
+	 */
+	public static String format(long cents) {
+		long units = Math.abs(cents / CENTS_PER_UNIT);
+		long rest = Math.abs(cents % CENTS_PER_UNIT);
+		return (cents < 0 ? "-" : "") + units + (rest < 10 ? ".0" : ".") + rest;
+	}
+
+	/**
+	 * Converts cents to the double closest to the decimal amount.
+	 */
+	public static double toDouble(long cents) {
+		return cents / (double) CENTS_PER_UNIT;
+	}
+}
@@ -0,0 +1,86 @@
+package bank.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Issues and verifies short-lived session tokens. A token names a card and
+ * an expiry time and is signed with HMAC-SHA256 under a key that only lives
+ * in this process, so it can be checked without any lookup.
+ */
+public class SessionTokens {
+	private static final String ALGORITHM = "HmacSHA256";
+
+	private final SecretKeySpec key;
+	private final long ttlMillis;
+	private final ThreadLocal<Mac> macs;
+
+	public SessionTokens(long ttlMillis) {
+		byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		this.key = new SecretKeySpec(secret, ALGORITHM);
+		this.ttlMillis = ttlMillis;
+		this.macs = ThreadLocal.withInitial(this::newMac);
+	}
+
+	public String issue(String cardNumber) {
+		String payload = cardNumber + ":" + (System.currentTimeMillis() + ttlMillis);
+		byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(sign(payloadBytes));
+	}
+
+	/**
+	 * Returns true if the token was issued by this instance for the given
+	 * card and has not expired yet.
+	 */
+	public boolean verify(String token, String cardNumber) {
+		if (token == null || cardNumber == null)
+			return false;
+		int dot = token.indexOf('.');
+		if (dot < 0)
+			return false;
+
+		byte[] payloadBytes;
+		byte[] signature;
+		try {
+			Base64.Decoder decoder = Base64.getUrlDecoder();
+			payloadBytes = decoder.decode(token.substring(0, dot));
+			signature = decoder.decode(token.substring(dot + 1));
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		if (!MessageDigest.isEqual(sign(payloadBytes), signature))
+			return false;
+
+		String payload = new String(payloadBytes, StandardCharsets.UTF_8);
+		int colon = payload.lastIndexOf(':');
+		if (colon < 0 || !payload.substring(0, colon).equals(cardNumber))
+			return false;
+		try {
+			return Long.parseLong(payload.substring(colon + 1)) > System.currentTimeMillis();
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private byte[] sign(byte[] payload) {
+		return macs.get().doFinal(payload);
+	}
+
+	private Mac newMac() {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(key);
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
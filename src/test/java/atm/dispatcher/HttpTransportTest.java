@@ -0,0 +1,134 @@
+package atm.dispatcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import atm.exceptions.BankUnavailableException;
+
+public class HttpTransportTest {
+	private static final byte[] TRANSACTION = "{\"type\":\"Withdrawal\"}".getBytes(StandardCharsets.UTF_8);
+
+	private HttpServer server;
+	private AtomicInteger applied;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		applied = new AtomicInteger();
+		server.start();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void readTimeoutDoesNotApplyTheTransactionTwice() {
+		server.createContext("/performTransaction", exchange -> {
+			drain(exchange);
+			applied.incrementAndGet();
+			sleep(1000);
+			respond(exchange, 200);
+		});
+
+		HttpTransport transport = transport(baseUrl(), 200);
+		assertThrows(BankUnavailableException.class,
+				() -> transport.post("performTransaction", "application/json", TRANSACTION));
+		assertEquals(1, applied.get());
+	}
+
+	@Test
+	public void serverErrorIsNotRetried() throws Exception {
+		server.createContext("/performTransaction", exchange -> {
+			drain(exchange);
+			applied.incrementAndGet();
+			respond(exchange, 500);
+		});
+
+		HttpTransport.Response response = transport(baseUrl(), 1000)
+				.post("performTransaction", "application/json", TRANSACTION);
+		assertEquals(500, response.getCode());
+		assertEquals(1, applied.get());
+	}
+
+	@Test
+	public void shedRequestIsRetried() throws Exception {
+		server.createContext("/performTransaction", exchange -> {
+			drain(exchange);
+			if (applied.getAndIncrement() == 0) {
+				respond(exchange, 503);
+			} else {
+				respond(exchange, 200);
+			}
+		});
+
+		HttpTransport.Response response = transport(baseUrl(), 1000)
+				.post("performTransaction", "application/json", TRANSACTION);
+		assertEquals(200, response.getCode());
+		assertEquals(2, applied.get());
+	}
+
+	@Test
+	public void connectFailureIsRetried() throws Exception {
+		int closedPort;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			closedPort = socket.getLocalPort();
+		}
+		CircuitBreaker breaker = new CircuitBreaker(3, 10000);
+		HttpTransport transport = new HttpTransport("http://localhost:" + closedPort + "/", 200, 200, 3, 1, 1,
+				breaker);
+
+		assertThrows(BankUnavailableException.class,
+				() -> transport.post("performTransaction", "application/json", TRANSACTION));
+		// Only all three attempts failing opens the breaker
+		assertTrue(breaker.isOpen());
+	}
+
+	private String baseUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + "/";
+	}
+
+	private static HttpTransport transport(String baseUrl, int readTimeoutMillis) {
+		return new HttpTransport(baseUrl, 1000, readTimeoutMillis, 4, 1, 1, new CircuitBreaker(10, 10000));
+	}
+
+	private static void drain(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			while (in.read() != -1) {
+			}
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int code) throws IOException {
+		byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(code, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
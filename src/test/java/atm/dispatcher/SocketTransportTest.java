@@ -0,0 +1,142 @@
+package atm.dispatcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import atm.exceptions.BankUnavailableException;
+
+public class SocketTransportTest {
+	private interface Behaviour {
+		/**
+		 * Handles the nth frame received and returns false to stop serving the
+		 * connection.
+		 */
+		boolean handle(int frame, DataOutputStream out) throws IOException;
+	}
+
+	private ServerSocket server;
+	private Thread acceptor;
+	private AtomicInteger connections;
+	private AtomicInteger frames;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		connections = new AtomicInteger();
+		frames = new AtomicInteger();
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		server.close();
+		acceptor.join(5000);
+	}
+
+	@Test
+	public void readTimeoutIsNotResent() throws Exception {
+		serve((frame, out) -> {
+			if (frame == 0) {
+				respond(out);
+				return true;
+			}
+			// The bank takes the second request but answers too late
+			sleep(1000);
+			return false;
+		});
+		SocketTransport transport = transport();
+
+		transport.exchange("performTransaction", frame());
+		assertThrows(BankUnavailableException.class, () -> transport.exchange("performTransaction", frame()));
+		assertEquals(2, frames.get());
+		assertEquals(1, connections.get());
+	}
+
+	@Test
+	public void closedIdleConnectionIsResentOnANewOne() throws Exception {
+		serve((frame, out) -> {
+			respond(out);
+			// The bank closes every connection after one exchange
+			return false;
+		});
+		SocketTransport transport = transport();
+
+		transport.exchange("performTransaction", frame());
+		// Give the close time to reach the client
+		Thread.sleep(100);
+		ByteBuffer response = transport.exchange("performTransaction", frame());
+		assertEquals(1, response.getInt());
+		assertEquals(2, frames.get());
+		assertEquals(2, connections.get());
+	}
+
+	private SocketTransport transport() {
+		return new SocketTransport("localhost", server.getLocalPort(), 1000, 200, new CircuitBreaker(10, 10000));
+	}
+
+	private void serve(Behaviour behaviour) {
+		acceptor = new Thread(() -> {
+			while (true) {
+				Socket socket;
+				try {
+					socket = server.accept();
+				} catch (IOException e) {
+					return;
+				}
+				connections.incrementAndGet();
+				Thread handler = new Thread(() -> handle(socket, behaviour));
+				handler.setDaemon(true);
+				handler.start();
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	private void handle(Socket socket, Behaviour behaviour) {
+		try (Socket s = socket) {
+			DataInputStream in = new DataInputStream(s.getInputStream());
+			DataOutputStream out = new DataOutputStream(s.getOutputStream());
+			boolean open = true;
+			while (open) {
+				in.readFully(new byte[in.readInt()]);
+				open = behaviour.handle(frames.getAndIncrement(), out);
+			}
+		} catch (IOException e) {
+			// The client went away
+		}
+	}
+
+	private static ByteBuffer frame() {
+		ByteBuffer frame = ByteBuffer.allocate(5);
+		frame.putInt(1).put((byte) 7);
+		frame.flip();
+		return frame;
+	}
+
+	private static void respond(DataOutputStream out) throws IOException {
+		out.writeInt(1);
+		out.writeByte(0);
+		out.flush();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
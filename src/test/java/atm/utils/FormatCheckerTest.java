@@ -15,6 +15,7 @@ import atm.exceptions.InvalidPinFormatException;
 import atm.exceptions.TestCodeLogicException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -34,7 +35,7 @@ public class FormatCheckerTest {
 
     @BeforeEach
     public void setUp() throws Exception {
-        formatChecker = new FormatChecker();
+        formatChecker = new FormatChecker(true);
     }
 
     @AfterEach
@@ -96,7 +97,7 @@ public class FormatCheckerTest {
             IIN = startingValue;
         }
 
-        String card = IIN + createRandomCardString(length - IIN.length());
+        String card = withCheckDigit(IIN + createRandomCardString(length - IIN.length() - 1));
 
         if (card.length() != length) {
             throw new TestCodeLogicException();
@@ -166,6 +167,63 @@ public class FormatCheckerTest {
         );
     }
 
+    @ParameterizedTest(name = "[{index}] - {0}")
+    @MethodSource("checkDigitData")
+    public void checkCardCheckDigitTest(String card, boolean throwsError) {
+        if (throwsError) {
+            assertThrows(InvalidCardNumberException.class, () -> {
+                formatChecker.checkCardFormat(card);
+            });
+        } else {
+            assertDoesNotThrow(() -> {
+                formatChecker.checkCardFormat(card);
+            });
+        }
+    }
+
+    @Test
+    public void checkCardWithoutLuhnTest() {
+        FormatChecker withoutLuhn = new FormatChecker(false);
+        assertDoesNotThrow(() -> {
+            withoutLuhn.checkCardFormat("4000000000000000");
+        });
+        assertThrows(InvalidCardNumberException.class, () -> {
+            formatChecker.checkCardFormat("4000000000000000");
+        });
+    }
+
+    private static Stream<Arguments> checkDigitData() {
+        return Stream.of(
+            Arguments.of("4111111111111111", false),
+            Arguments.of("4111-1111 1111-1111", false),
+            Arguments.of("4111111111111112", true),
+            Arguments.of("4111111111111121", true),
+            Arguments.of("378282246310005", false),
+            Arguments.of("378282246310006", true),
+            Arguments.of("213100000000001", false),
+            Arguments.of("180000000000002", false),
+            Arguments.of("300000000004", false),
+            Arguments.of("4111x111111111111", true),
+            Arguments.of("", true)
+        );
+    }
+
+    // Appends the Luhn check digit that makes the card number valid
+    private static String withCheckDigit(String card) {
+        int sum = 0;
+        for (int i = 0; i < card.length(); i++) {
+            int digit = card.charAt(card.length() - 1 - i) - '0';
+            if (i % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return card + (10 - sum % 10) % 10;
+    }
+
     private static String createRandomCardString(int length) {
         Random random = new Random();
         String res = "";
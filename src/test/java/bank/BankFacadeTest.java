@@ -0,0 +1,85 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bank.db.InMemoryAccountStore;
+import bank.transactions.BankDeposit;
+import bank.transactions.BankTransfer;
+import bank.transactions.BankWithdrawal;
+import bank.transactions.utils.AccountType;
+import bank.transactions.utils.TransactionData;
+import bank.transactions.utils.TransactionResult;
+import bank.transactions.utils.TransactionType;
+import bank.utils.CredentialCache;
+import bank.utils.FeesCalculator;
+
+public class BankFacadeTest {
+	private final String cardNumber = "4000000000000000";
+	private final char[] pin = { '5', '5', '5', '5' };
+	private InMemoryAccountStore store;
+	private BankFacade facade;
+
+	@BeforeEach
+	public void setUp() {
+		store = new InMemoryAccountStore();
+		store.addClient("kevin", false);
+		store.addCard(cardNumber, "kevin", pin);
+		store.addAccount("kevin", AccountType.Chequing, 100000);
+		store.addAccount("kevin", AccountType.Savings, 100000);
+
+		FeesCalculator fees = new FeesCalculator();
+		facade = new BankFacade(store, new CredentialCache(100, 60_000, 60_000), null,
+				new BankWithdrawal(fees, store), new BankDeposit(fees, store), new BankTransfer(fees, store));
+	}
+
+	@Test
+	public void malformedItemsFailWithoutFailingTheBatch() throws Exception {
+		List<TransactionResult> results = facade.performTransactions(Arrays.asList(
+				transaction(TransactionType.Deposit, 2000, AccountType.Chequing),
+				transaction(null, 2000, AccountType.Chequing),
+				transaction(TransactionType.Transfer, 2000, AccountType.Chequing),
+				transaction(TransactionType.Withdrawal, 2000),
+				transaction(TransactionType.Withdrawal, 2000, (AccountType) null),
+				transaction(TransactionType.Transfer, 1000, AccountType.Chequing, AccountType.Savings)));
+
+		assertEquals(6, results.size());
+		assertTrue(results.get(0).isSuccessful());
+		for (int i = 1; i <= 4; i++) {
+			assertFalse(results.get(i).isSuccessful());
+			assertEquals(BankFacade.INVALID_TRANSACTION, results.get(i).getReason());
+		}
+		assertTrue(results.get(5).isSuccessful());
+		assertEquals(results.get(5).getAccountBalancesCents()[0], store.getBalance("kevin", AccountType.Chequing));
+		assertEquals(results.get(5).getAccountBalancesCents()[1], store.getBalance("kevin", AccountType.Savings));
+	}
+
+	@Test
+	public void malformedSingleTransactionFails() {
+		TransactionResult result = facade.performTransaction(transaction(TransactionType.Transfer, 1000,
+				AccountType.Chequing));
+
+		assertFalse(result.isSuccessful());
+		assertEquals(BankFacade.INVALID_TRANSACTION, result.getReason());
+	}
+
+	@Test
+	public void zeroAmountIsLeftToTheTransaction() throws Exception {
+		TransactionResult result = facade.performTransaction(transaction(TransactionType.Deposit, 0,
+				AccountType.Chequing));
+
+		assertTrue(result.isSuccessful());
+		assertEquals(100000, store.getBalance("kevin", AccountType.Chequing));
+	}
+
+	private TransactionData transaction(TransactionType type, long amountCents, AccountType... accounts) {
+		return new TransactionData(cardNumber, pin, type, accounts, amountCents);
+	}
+}
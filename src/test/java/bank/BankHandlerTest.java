@@ -0,0 +1,118 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import bank.db.InMemoryAccountStore;
+import bank.transactions.BankDeposit;
+import bank.transactions.BankTransfer;
+import bank.transactions.BankWithdrawal;
+import bank.transactions.utils.AccountType;
+import bank.transactions.utils.TransactionJson;
+import bank.transactions.utils.TransactionResult;
+import bank.utils.CredentialCache;
+import bank.utils.FeesCalculator;
+
+public class BankHandlerTest {
+	private static final String DEPOSIT = "{\"cardNumber\":\"4000000000000000\",\"pin\":[\"5\",\"5\",\"5\",\"5\"],"
+			+ "\"type\":\"Deposit\",\"accounts\":[\"Chequing\"],";
+
+	private InMemoryAccountStore store;
+	private HttpServer server;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		store = new InMemoryAccountStore();
+		store.addClient("kevin", false);
+		store.addCard("4000000000000000", "kevin", new char[] { '5', '5', '5', '5' });
+		store.addAccount("kevin", AccountType.Chequing, 10000);
+
+		FeesCalculator fees = new FeesCalculator();
+		BankHandler handler = new BankHandler(new BankFacade(store, new CredentialCache(100, 60_000, 60_000), null,
+				new BankWithdrawal(fees, store), new BankDeposit(fees, store), new BankTransfer(fees, store)));
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/performTransaction", handler::performTransaction);
+		server.start();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void depositInUnitsSucceeds() throws Exception {
+		TransactionResult result = perform(DEPOSIT + "\"amount\":20.00}");
+
+		assertTrue(result.isSuccessful());
+		assertEquals(12000 + result.getFeesCents(), store.getBalance("kevin", AccountType.Chequing));
+		assertEquals(store.getBalance("kevin", AccountType.Chequing), result.getAccountBalancesCents()[0]);
+	}
+
+	@Test
+	public void depositInCentsSucceeds() throws Exception {
+		TransactionResult result = perform(DEPOSIT + "\"amountCents\":2000}");
+
+		assertTrue(result.isSuccessful());
+		assertEquals(12000 + result.getFeesCents(), store.getBalance("kevin", AccountType.Chequing));
+	}
+
+	@Test
+	public void fractionOfACentIsRejected() throws Exception {
+		assertEquals(405, post(DEPOSIT + "\"amount\":0.004}").getResponseCode());
+		assertEquals(405, post(DEPOSIT + "\"amountCents\":0.4}").getResponseCode());
+		assertEquals(10000, store.getBalance("kevin", AccountType.Chequing));
+	}
+
+	@Test
+	public void missingAmountIsInvalid() throws Exception {
+		TransactionResult result = perform(DEPOSIT.substring(0, DEPOSIT.length() - 1) + "}");
+
+		assertEquals(BankFacade.INVALID_TRANSACTION, result.getReason());
+		assertEquals(10000, store.getBalance("kevin", AccountType.Chequing));
+	}
+
+	private TransactionResult perform(String body) throws IOException {
+		HttpURLConnection con = post(body);
+		assertEquals(200, con.getResponseCode());
+		return TransactionJson.gson().fromJson(read(con.getInputStream()), TransactionResult.class);
+	}
+
+	private HttpURLConnection post(String body) throws IOException {
+		URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/performTransaction");
+		HttpURLConnection con = (HttpURLConnection) url.openConnection();
+		con.setRequestMethod("POST");
+		con.setRequestProperty("Content-Type", "application/json");
+		con.setDoOutput(true);
+		try (OutputStream out = con.getOutputStream()) {
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+		return con;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		try (InputStream body = in) {
+			StringBuilder text = new StringBuilder();
+			byte[] buffer = new byte[1024];
+			int n;
+			while ((n = body.read(buffer)) != -1) {
+				text.append(new String(buffer, 0, n, StandardCharsets.UTF_8));
+			}
+			return text.toString();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.sun.net.httpserver.HttpServer;
+
+import bank.metrics.MetricsRegistry;
+
+public class RequestExecutorTest {
+	private RequestExecutor executor;
+	private HttpServer server;
+	private ExecutorService clients;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		executor = new RequestExecutor(RequestExecutor.Mode.FixedPool, 1, 4);
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		clients = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		server.stop(0);
+		executor.shutdown();
+		clients.shutdownNow();
+	}
+
+	@Test
+	@Timeout(10)
+	public void queueDepthAndActiveWorkersAreExposed() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		server.createContext("/slow", executor.wrap(exchange -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		}));
+		server.start();
+		MetricsRegistry metrics = new MetricsRegistry();
+		executor.registerMetrics(metrics);
+
+		Future<Integer> first = clients.submit(this::request);
+		Future<Integer> second = clients.submit(this::request);
+		while (executor.getActiveWorkers() < 1 || executor.getQueueDepth() < 1) {
+			Thread.sleep(5);
+		}
+
+		String text = write(metrics);
+		assertTrue(text.contains("# TYPE bank_executor_queued_requests gauge\n"), text);
+		assertTrue(text.contains("bank_executor_queued_requests 1\n"), text);
+		assertTrue(text.contains("bank_executor_active_workers 1\n"), text);
+
+		release.countDown();
+		assertEquals(200, (int) first.get());
+		assertEquals(200, (int) second.get());
+		assertTrue(write(metrics).contains("bank_executor_queued_requests 0\n"));
+	}
+
+	private int request() throws IOException {
+		URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/slow");
+		HttpURLConnection con = (HttpURLConnection) url.openConnection();
+		return con.getResponseCode();
+	}
+
+	private static String write(MetricsRegistry metrics) throws IOException {
+		StringWriter out = new StringWriter();
+		metrics.write(out);
+		return out.toString();
+	}
+}
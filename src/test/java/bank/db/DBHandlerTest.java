@@ -0,0 +1,96 @@
+package bank.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bank.transactions.utils.AccountType;
+
+public class DBHandlerTest {
+	private static final String USER = "ktsiounis";
+	private static final String MIGRATE_TO_CENTS = "bank.db.migrateToCents";
+
+	private File directory;
+	private String url;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("db-handler").toFile();
+		url = "jdbc:sqlite:" + new File(directory, "bank.db").getAbsolutePath();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		System.clearProperty(MIGRATE_TO_CENTS);
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void balancesInUnitsAreRefusedWithoutOptIn() throws Exception {
+		createAccounts("balance real", "1000.0");
+
+		assertThrows(IllegalStateException.class, () -> new DBHandler(url, 1));
+		assertEquals("1000.0", query("SELECT balance FROM accounts;"));
+	}
+
+	@Test
+	public void balancesInUnitsAreMigratedOnOptIn() throws Exception {
+		createAccounts("balance real", "968.965");
+		System.setProperty(MIGRATE_TO_CENTS, "true");
+
+		DBHandler migrated = new DBHandler(url, 1);
+		try {
+			assertEquals(96897, migrated.getBalance(USER, AccountType.Chequing));
+		} finally {
+			migrated.closeConnection();
+		}
+		// The original table is kept as a backup
+		assertEquals("968.965", query("SELECT balance FROM accounts_units;"));
+
+		System.clearProperty(MIGRATE_TO_CENTS);
+		DBHandler reopened = new DBHandler(url, 1);
+		try {
+			assertEquals(96897, reopened.getBalance(USER, AccountType.Chequing));
+		} finally {
+			reopened.closeConnection();
+		}
+	}
+
+	@Test
+	public void unexpectedAccountsTableIsRefused() throws Exception {
+		createAccounts("amount text", "'1000'");
+		System.setProperty(MIGRATE_TO_CENTS, "true");
+
+		assertThrows(IllegalStateException.class, () -> new DBHandler(url, 1));
+		assertEquals("1000", query("SELECT amount FROM accounts;"));
+	}
+
+	private void createAccounts(String balanceColumn, String balance) throws Exception {
+		try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+			stmt.execute("CREATE TABLE accounts (username text NOT NULL, type integer, " + balanceColumn
+					+ ", PRIMARY KEY(username, type));");
+			stmt.execute("INSERT INTO accounts VALUES ('" + USER + "', 0, " + balance + ");");
+		}
+	}
+
+	private String query(String sql) throws Exception {
+		try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery(sql)) {
+			rs.next();
+			return rs.getString(1);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package bank.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bank.exceptions.UnsuccessfulBalanceUpdate;
+import bank.transactions.utils.AccountType;
+
+public class GroupCommitWriterTest {
+	private File database;
+	private ConnectionPool pool;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		database = File.createTempFile("group-commit", ".db");
+		String url = "jdbc:sqlite:" + database.getAbsolutePath();
+		try (Connection connection = DriverManager.getConnection(url);
+				Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE accounts (username text NOT NULL, type integer, cents integer NOT NULL, "
+					+ "PRIMARY KEY(username, type))");
+		}
+		pool = new ConnectionPool(url, 2);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		pool.close();
+		database.delete();
+	}
+
+	@Test
+	public void closeUnderLoadCompletesEveryWrite() throws Exception {
+		GroupCommitWriter writer = new GroupCommitWriter(pool, 16, 1);
+		List<CompletableFuture<Void>> results = new CopyOnWriteArrayList<>();
+		CountDownLatch submitting = new CountDownLatch(4);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			String user = "user" + t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 2000; i++) {
+					results.add(writer.submit(user, new AccountType[] { AccountType.Chequing }, null,
+							new long[] { i }));
+					if (i == 10)
+						submitting.countDown();
+				}
+			});
+			threads[t].start();
+		}
+
+		submitting.await();
+		writer.close();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		int committed = 0;
+		for (CompletableFuture<Void> result : results) {
+			try {
+				result.get(5, TimeUnit.SECONDS);
+				committed++;
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof UnsuccessfulBalanceUpdate);
+			}
+		}
+		assertEquals(4 * 2000, results.size());
+		assertTrue(committed > 0);
+	}
+
+	@Test
+	public void writesAfterCloseFail() throws Exception {
+		GroupCommitWriter writer = new GroupCommitWriter(pool, 16, 1);
+		writer.close();
+
+		CompletableFuture<Void> result = writer.submit("user", new AccountType[] { AccountType.Chequing }, null,
+				new long[] { 100 });
+		assertTrue(result.isCompletedExceptionally());
+	}
+}
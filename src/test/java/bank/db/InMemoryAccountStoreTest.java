@@ -0,0 +1,85 @@
+package bank.db;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bank.exceptions.CardNotFoundException;
+import bank.exceptions.StaleBalanceException;
+import bank.exceptions.UserNotFoundException;
+import bank.transactions.BankDeposit;
+import bank.transactions.utils.AccountContext;
+import bank.transactions.utils.AccountType;
+import bank.transactions.utils.TransactionData;
+import bank.transactions.utils.TransactionResult;
+import bank.transactions.utils.TransactionType;
+import bank.utils.FeesCalculator;
+
+public class InMemoryAccountStoreTest {
+	private final String cardNumber = "4000000000000000";
+	private final char[] pin = { '5', '5', '5', '5' };
+	private InMemoryAccountStore store;
+
+	@BeforeEach
+	public void setUp() {
+		store = new InMemoryAccountStore();
+		store.addClient("kevin", true);
+		store.addCard(cardNumber, "kevin", pin);
+		store.addAccount("kevin", AccountType.Chequing, 10000);
+	}
+
+	@Test
+	public void contextHoldsOwnerAndBalances() throws Exception {
+		AccountContext context = store.getAccountContext(cardNumber);
+
+		assertEquals("kevin", context.getUsername());
+		assertTrue(context.pinMatches(pin));
+		assertTrue(context.isStudent());
+		assertEquals(10000, context.getBalance(AccountType.Chequing));
+		assertFalse(context.hasAccount(AccountType.Savings));
+		assertThrows(CardNotFoundException.class, () -> store.getAccountContext("4000000000000001"));
+		assertThrows(UserNotFoundException.class, () -> store.getBalance("kevin", AccountType.Savings));
+	}
+
+	@Test
+	public void staleUpdateLeavesBalancesUnchanged() throws Exception {
+		store.setBalance("kevin", AccountType.Savings, 5000);
+
+		assertThrows(StaleBalanceException.class, () -> store.updateBalances("kevin",
+				new AccountType[] { AccountType.Chequing, AccountType.Savings },
+				new long[] { 10000, 4000 }, new long[] { 9000, 6000 }));
+		assertEquals(10000, store.getBalance("kevin", AccountType.Chequing));
+		assertEquals(5000, store.getBalance("kevin", AccountType.Savings));
+	}
+
+	@Test
+	public void failedTransactionIsRolledBack() throws Exception {
+		assertThrows(IllegalStateException.class, () -> store.inTransaction(() -> {
+			try {
+				store.updateBalance("kevin", AccountType.Chequing, 10000, 1000);
+				store.setPIN(cardNumber, new char[] { '1', '2', '3', '4' });
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+			throw new IllegalStateException();
+		}));
+
+		assertEquals(10000, store.getBalance("kevin", AccountType.Chequing));
+		assertArrayEquals(pin, store.getPIN("kevin"));
+	}
+
+	@Test
+	public void transactionsRunAgainstTheStore() throws Exception {
+		BankDeposit deposit = new BankDeposit(new FeesCalculator(), store);
+		TransactionResult result = deposit.perform(new TransactionData(cardNumber, pin, TransactionType.Deposit,
+				new AccountType[] { AccountType.Chequing }, 2000));
+
+		assertTrue(result.isSuccessful());
+		assertEquals(result.getAccountBalancesCents()[0], store.getBalance("kevin", AccountType.Chequing));
+	}
+}
@@ -0,0 +1,140 @@
+package bank.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bank.exceptions.UnsuccessfulBalanceUpdate;
+import bank.transactions.utils.AccountType;
+
+public class WriteBehindDBHandlerTest {
+	private static final String USER = "ktsiounis";
+	// Long enough that nothing is flushed during a test
+	private static final long FLUSH_INTERVAL_MILLIS = 60 * 60 * 1000;
+
+	private File directory;
+	private String url;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("write-behind").toFile();
+		File database = new File(directory, "bank.db");
+		Files.copy(Paths.get("bank.db"), database.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		url = "jdbc:sqlite:" + database.getAbsolutePath();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void logIsReplayedAfterACrash() throws Exception {
+		WriteBehindDBHandler crashed = open();
+		long balance = crashed.getBalance(USER, AccountType.Chequing);
+		crashed.updateBalance(USER, AccountType.Chequing, balance, balance - 2000);
+		crashed.setBalance(USER, AccountType.Savings, 1250);
+		// Dropped without closeConnection, so nothing reached SQLite except through the log
+
+		WriteBehindDBHandler reopened = open();
+		try {
+			assertEquals(balance - 2000, reopened.getBalance(USER, AccountType.Chequing));
+			assertEquals(1250, reopened.getBalance(USER, AccountType.Savings));
+		} finally {
+			reopened.closeConnection();
+		}
+		DBHandler sqlite = new DBHandler(url, 1);
+		try {
+			assertEquals(balance - 2000, sqlite.getBalance(USER, AccountType.Chequing));
+		} finally {
+			sqlite.closeConnection();
+		}
+	}
+
+	@Test
+	public void failedTransactionPublishesNothing() throws Exception {
+		WriteBehindDBHandler crashed = open();
+		long balance = crashed.getBalance(USER, AccountType.Chequing);
+		assertThrows(IllegalStateException.class, () -> crashed.inTransaction(() -> {
+			try {
+				crashed.updateBalance(USER, AccountType.Chequing, balance, balance - 2000);
+				assertEquals(balance - 2000, crashed.getBalance(USER, AccountType.Chequing));
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+			throw new IllegalStateException();
+		}));
+		assertEquals(balance, crashed.getBalance(USER, AccountType.Chequing));
+
+		WriteBehindDBHandler reopened = open();
+		try {
+			assertEquals(balance, reopened.getBalance(USER, AccountType.Chequing));
+		} finally {
+			reopened.closeConnection();
+		}
+	}
+
+	@Test
+	public void conflictingWriteFailsTheTransaction() throws Exception {
+		WriteBehindDBHandler store = open();
+		try {
+			long balance = store.getBalance(USER, AccountType.Chequing);
+			assertThrows(UnsuccessfulBalanceUpdate.class, () -> store.inTransaction(() -> {
+				try {
+					store.updateBalance(USER, AccountType.Chequing, balance, balance - 2000);
+					// Another thread changes the account before this transaction commits
+					CompletableFuture.runAsync(() -> {
+						try {
+							store.updateBalance(USER, AccountType.Chequing, balance, balance + 500);
+						} catch (Exception e) {
+							throw new RuntimeException(e);
+						}
+					}).join();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+				return null;
+			}));
+
+			assertEquals(balance + 500, store.getBalance(USER, AccountType.Chequing));
+		} finally {
+			store.closeConnection();
+		}
+	}
+
+	@Test
+	public void cleanBalancesAreEvictedAfterAFlush() throws Exception {
+		WriteBehindDBHandler store = new WriteBehindDBHandler(url, 2, directory, FLUSH_INTERVAL_MILLIS, 0);
+		DBHandler sqlite = new DBHandler(url, 1);
+		try {
+			long balance = store.getBalance(USER, AccountType.Chequing);
+			store.updateBalance(USER, AccountType.Chequing, balance, balance - 2000);
+			store.flush();
+			assertEquals(balance - 2000, sqlite.getBalance(USER, AccountType.Chequing));
+
+			// Nothing is cached any more, so a change made behind its back is read from SQLite
+			sqlite.setBalance(USER, AccountType.Chequing, 1250);
+			assertEquals(1250, store.getBalance(USER, AccountType.Chequing));
+			assertEquals(1250, store.getAccountContext("4000000000000000").getBalance(AccountType.Chequing));
+		} finally {
+			sqlite.closeConnection();
+			store.closeConnection();
+		}
+	}
+
+	private WriteBehindDBHandler open() {
+		return new WriteBehindDBHandler(url, 2, directory, FLUSH_INTERVAL_MILLIS);
+	}
+}
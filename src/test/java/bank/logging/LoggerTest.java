@@ -0,0 +1,70 @@
+package bank.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.jupiter.api.Test;
+
+public class LoggerTest {
+	@Test
+	public void redactsPinsAndCardNumbers() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		LogWriter writer = new LogWriter(16, new PrintStream(bytes, true));
+		Logger log = new Logger("test", writer, 1);
+
+		log.info("Checking credentials for 4000000000000000", "cardNumber", "4000000000000123", "pin", "5555",
+				"secret", "1234".toCharArray(), "account", "Savings");
+		writer.drain();
+		String line = bytes.toString();
+
+		assertTrue(line.contains(" INFO test \"Checking credentials for ****0000\""));
+		assertTrue(line.contains(" cardNumber=****0123"));
+		assertTrue(line.contains(" pin=****"));
+		assertTrue(line.contains(" secret=****"));
+		assertTrue(line.contains(" account=Savings"));
+		assertFalse(line.contains("5555"));
+		assertFalse(line.contains("4000000000000"));
+	}
+
+	@Test
+	public void masksCardNumbersBeforeTheyAreBuffered() {
+		LogEvent event = new LogEvent(0, Level.INFO, "test", "Card 4000000000000000 declined",
+				null, new Object[] { "request", "{card=4000000000000123}", "id", 4000000000000456L, "count", 3 });
+
+		assertEquals("Card ****0000 declined", event.message);
+		assertEquals("{card=****0123}", event.fields[1]);
+		assertEquals("****0456", event.fields[3]);
+		assertEquals(3, event.fields[5]);
+	}
+
+	@Test
+	public void dropsEventsWhenTheBufferIsFull() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		LogWriter writer = new LogWriter(4, new PrintStream(bytes, true));
+		Logger log = new Logger("test", writer, 1);
+
+		for (int i = 0; i < 10; i++) {
+			log.warn("Event", "i", i);
+		}
+		assertEquals(6, writer.getDropped());
+		assertEquals(4, writer.drain());
+		assertTrue(bytes.toString().contains("dropped 6 events"));
+	}
+
+	@Test
+	public void writesOneInEverySampledEvents() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		LogWriter writer = new LogWriter(16, new PrintStream(bytes, true));
+		Logger log = new Logger("test", writer, 1).sampled(5);
+
+		for (int i = 0; i < 10; i++) {
+			log.info("Event");
+		}
+		assertEquals(2, writer.drain());
+		assertTrue(bytes.toString().contains(" sampled=1/5"));
+	}
+}
@@ -0,0 +1,33 @@
+package bank.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+	@Test
+	public void bucketsCoverEveryValueInOrder() {
+		for (long value = 0; value < 100_000; value++) {
+			int bucket = LatencyHistogram.bucket(value);
+			assertTrue(value <= LatencyHistogram.highestValue(bucket));
+			assertTrue(bucket == 0 || value > LatencyHistogram.highestValue(bucket - 1));
+		}
+	}
+
+	@Test
+	public void percentilesAreWithinBucketPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long micros = 1; micros <= 1000; micros++) {
+			histogram.record(micros * 1000);
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1_000_000, histogram.getMax());
+		assertEquals(500_500, histogram.getMean(), 0.001);
+		assertEquals(500_000, histogram.getPercentile(50), 500_000 * 0.04);
+		assertEquals(990_000, histogram.getPercentile(99), 990_000 * 0.04);
+		assertEquals(1_000_000, histogram.getPercentile(100));
+		assertEquals(0, new LatencyHistogram().getPercentile(99));
+	}
+}
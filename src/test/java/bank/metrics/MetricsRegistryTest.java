@@ -0,0 +1,52 @@
+package bank.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class MetricsRegistryTest {
+	@Test
+	public void writesPrometheusText() throws Exception {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.counter("requests_total", "Requests", "endpoint", "a\"b").add(3);
+		registry.timer("query_seconds", "Queries", "query", "getBalance").record(2_000_000);
+
+		StringWriter out = new StringWriter();
+		registry.write(out);
+		String text = out.toString();
+
+		assertTrue(text.contains("# TYPE requests_total counter\n"));
+		assertTrue(text.contains("requests_total{endpoint=\"a\\\"b\"} 3\n"));
+		assertTrue(text.contains("# TYPE query_seconds summary\n"));
+		assertTrue(text.contains("query_seconds{query=\"getBalance\",quantile=\"0.99\"} 0.002\n"));
+		assertTrue(text.contains("query_seconds_count{query=\"getBalance\"} 1\n"));
+	}
+
+	@Test
+	public void gaugesReadTheirValueWhenWritten() throws Exception {
+		MetricsRegistry registry = new MetricsRegistry();
+		AtomicLong depth = new AtomicLong(2);
+		registry.gauge("queue_depth", "Queued requests", depth::get, "pool", "bank");
+		depth.set(5);
+
+		StringWriter out = new StringWriter();
+		registry.write(out);
+		String text = out.toString();
+
+		assertTrue(text.contains("# TYPE queue_depth gauge\n"));
+		assertTrue(text.contains("queue_depth{pool=\"bank\"} 5\n"));
+		assertThrows(IllegalArgumentException.class, () -> registry.counter("queue_depth", "Q"));
+	}
+
+	@Test
+	public void returnsTheSameMetricForTheSameLabels() {
+		MetricsRegistry registry = new MetricsRegistry();
+		assertSame(registry.timer("t", "T", "a", "1"), registry.timer("t", "T", "a", "1"));
+		assertThrows(IllegalArgumentException.class, () -> registry.counter("t", "T", "a", "1"));
+	}
+}
@@ -4,11 +4,13 @@ import bank.db.DBHandler;
 import bank.exceptions.CardNotFoundException;
 import bank.exceptions.UnsuccessfulBalanceUpdate;
 import bank.exceptions.UserNotFoundException;
+import bank.transactions.utils.AccountContext;
 import bank.transactions.utils.AccountType;
 import bank.transactions.utils.TransactionData;
 import bank.transactions.utils.TransactionResult;
 import bank.transactions.utils.TransactionType;
 import bank.utils.FeesCalculator;
+import bank.utils.Money;
 
 import static org.junit.Assert.*;
 import org.junit.jupiter.api.BeforeAll;
@@ -45,15 +47,15 @@ public class BankDepositTest {
     
     public static Stream<Arguments> testCases() {
         return Stream.of(
-        		Arguments.of(101, 1001, true, 0.01, 1001+(101*1.01)),
-                Arguments.of(101, 1000, true, 0.005, 1000+(101*1.005)),
-                Arguments.of(50, 5001, true, 0.05, 5001+(50*1.005)),
-                Arguments.of(50, 1000, true, 0.0, 1000+50),
+        		Arguments.of(10100, 100100, true, 0.01, 100100+(10100*1.01)),
+                Arguments.of(10100, 100000, true, 0.005, 100000+(10100*1.005)),
+                Arguments.of(5000, 500100, true, 0.005, 500100+(5000*1.005)),
+                Arguments.of(5000, 100000, true, 0.0, 100000+5000),
                 
-                Arguments.of(501, 5001, false, 0.01, 5001+(501*1.01)),
-                Arguments.of(501, 1000, false, 0.0, 1000+(501*1.005)),
-                Arguments.of(100, 10001, false, 0.005, 10001+(100*1.005)),
-                Arguments.of(100, 1000, false, 0.0, 1000+100)
+                Arguments.of(50100, 500100, false, 0.01, 500100+(50100*1.01)),
+                Arguments.of(50100, 100000, false, 0.005, 100000+(50100*1.005)),
+                Arguments.of(10000, 1000100, false, 0.005, 1000100+(10000*1.005)),
+                Arguments.of(10000, 100000, false, 0.0, 100000+10000)
         );
     }
     
@@ -66,100 +68,90 @@ public class BankDepositTest {
     //Testing deposit with both stubs
     @ParameterizedTest
     @MethodSource("testCases")
-    public void testA(double amount, double balance, boolean studentStatus, double expectedFees, double expectedBalance) throws CardNotFoundException, UserNotFoundException, UnsuccessfulBalanceUpdate {
+    public void testA(long amount, long balance, boolean studentStatus, double expectedFees, double expectedBalance) throws CardNotFoundException, UserNotFoundException, UnsuccessfulBalanceUpdate {
     	/* Methods that deposit calls:
-    	 * 	-dbHandler.getCardOwner()
-    	 * 	-dbHandler.getBalance()
-    	 * 	-dbHandler.isStudent()
+    	 * 	-dbHandler.getAccountContext()
     	 * 	-feesCalculator.calculateDepositInterest()
     	 * 	-dbHandler.setBalance()
     	 */
 
     	
-    	//add the dbHandler behavior to get card owner
-    	//method takes in (String cardNumber) and returns a string value 
-        when(dbHandler.getCardOwner(cardNumber)).thenReturn(username);
-        
-        //add the dbHandler behavior to get account balance
-        // method takes in (String user, AccountType type) and returns a double value
-        when(dbHandler.getBalance(username, accountTypes[0])).thenReturn(balance);
-        
-        //add the dbHandler behavior to determine if user is a student
-        //method takes in (String user) and returns a boolean value
-        when(dbHandler.isStudent(username)).thenReturn(studentStatus);
+    	//add the dbHandler behavior to load the card owner, student status and account balance
+    	//method takes in (String cardNumber) and returns an AccountContext
+        when(dbHandler.getAccountContext(cardNumber))
+        		.thenReturn(new AccountContext(cardNumber, username, pin, studentStatus).withBalance(accountTypes[0], balance));
         
         //add the feesCalculator behavior to determine the deposit fee
         //method takes in (double amount, double accountBalance, boolean student) and returns a double value
-        when(feesCalculator.calculateDepositInterest(amount, balance, studentStatus)).thenReturn(expectedFees);
+        when(feesCalculator.calculateDepositInterestCents(amount, balance, studentStatus))
+        		.thenReturn(Money.applyRate(amount, expectedFees));
         
         //Don't want setBalance to do anything because it doesn't return anything
-        doNothing().when(dbHandler).setBalance(username, accountTypes[0], expectedBalance);
+        doNothing().when(dbHandler).setBalance(username, accountTypes[0], cents(expectedBalance));
 
         BankDeposit deposit = new BankDeposit(feesCalculator, dbHandler);
         
-        TransactionResult actualResult = deposit.perform(new TransactionData(username, pin , TransactionType.Deposit, accountTypes, amount));
+        TransactionResult actualResult = deposit.perform(new TransactionData(cardNumber, pin , TransactionType.Deposit, accountTypes, amount));
         
         assertEquals(true, actualResult.isSuccessful() );
         assertEquals("", actualResult.getReason() );
-        assertEquals(expectedFees, actualResult.getFees() ,0);
-        assertEquals(expectedBalance, actualResult.getAccountBalances()[0] ,0);
+        assertEquals(Money.applyRate(amount, expectedFees), actualResult.getFeesCents());
+        assertEquals(cents(expectedBalance), actualResult.getAccountBalancesCents()[0]);
     }
     
     //Testing deposit with 1 stub
     @ParameterizedTest
     @MethodSource("testCases")
-    public void testB(double amount, double balance, boolean studentStatus, double expectedFees, double expectedBalance) throws UserNotFoundException, UnsuccessfulBalanceUpdate, CardNotFoundException{
+    public void testB(long amount, long balance, boolean studentStatus, double expectedFees, double expectedBalance) throws UserNotFoundException, UnsuccessfulBalanceUpdate, CardNotFoundException{
         dbHandler = mock(DBHandler.class);
         feesCalculator = new FeesCalculator();	//FeesCalculator stub is switched out for the real one
     	
-    	expectedFees = feesCalculator.calculateDepositInterest(amount, balance, studentStatus); //test case value is replaced with actual value from the method
+    	long expectedFeesCents = feesCalculator.calculateDepositInterestCents(amount, balance, studentStatus); //test case value is replaced with actual value from the method
     	
-    	//add the dbHandler behavior to get card owner
-    	//method takes in (String cardNumber) and returns a string value 
-        when(dbHandler.getCardOwner(cardNumber)).thenReturn(username);
-        
-        //add the dbHandler behavior to get account balance
-        // method takes in (String user, AccountType type) and returns a double value
-        when(dbHandler.getBalance(username, accountTypes[0])).thenReturn(balance);
-        
-        //add the dbHandler behavior to determine if user is a student
-        //method takes in (String user) and returns a boolean value
-        when(dbHandler.isStudent(username)).thenReturn(studentStatus);
+    	//add the dbHandler behavior to load the card owner, student status and account balance
+    	//method takes in (String cardNumber) and returns an AccountContext
+        when(dbHandler.getAccountContext(cardNumber))
+        		.thenReturn(new AccountContext(cardNumber, username, pin, studentStatus).withBalance(accountTypes[0], balance));
         
         //Don't want setBalance to do anything because it doesn't return anything
-        doNothing().when(dbHandler).setBalance(username, accountTypes[0], expectedBalance);
+        doNothing().when(dbHandler).setBalance(username, accountTypes[0], cents(expectedBalance));
         
         BankDeposit deposit = new BankDeposit(feesCalculator, dbHandler);
         
         //getting values for test value verification
-        TransactionResult actualResult = deposit.perform(new TransactionData(username, pin , TransactionType.Deposit, accountTypes, amount));
+        TransactionResult actualResult = deposit.perform(new TransactionData(cardNumber, pin , TransactionType.Deposit, accountTypes, amount));
         
         assertEquals(true, actualResult.isSuccessful() );
         assertEquals("", actualResult.getReason() );
-        assertEquals(expectedFees, actualResult.getFees() ,0);
-        assertEquals(expectedBalance, actualResult.getAccountBalances()[0] ,0);
+        assertEquals(expectedFeesCents, actualResult.getFeesCents());
+        assertEquals(cents(expectedBalance), actualResult.getAccountBalancesCents()[0]);
     }
     
     //Testing deposit with no stubs
     @ParameterizedTest
     @MethodSource("testCases")
-    public void testC(double amount, double balance, boolean studentStatus, double expectedFees, double expectedBalance) throws UserNotFoundException {
+    public void testC(long amount, long balance, boolean studentStatus, double expectedFees, double expectedBalance) throws UserNotFoundException {
 
         dbHandler = new DBHandler();	            //DBHandler stub is switched out for the real one
-        //double balance is ignored here because we ditched the dbHandler stub
+        //balance and studentStatus are ignored here because we ditched the dbHandler stub
         feesCalculator = new FeesCalculator();		//FeesCalculator stub is switched out for the real one
     	BankDeposit deposit = new BankDeposit(feesCalculator, dbHandler);
     	
     	//getting values for test value verification
-    	double initialBalance = dbHandler.getBalance(username, AccountType.Chequing);
-    	expectedFees = feesCalculator.calculateDepositInterest(amount, initialBalance, studentStatus);		//test case value is replaced with actual value from the method
+    	long initialBalance = dbHandler.getBalance(username, AccountType.Chequing);
+    	long expectedFeesCents = feesCalculator.calculateDepositInterestCents(amount, initialBalance, dbHandler.isStudent(username));		//test case value is replaced with actual value from the method
         
-        TransactionResult actualResult = deposit.perform(new TransactionData(username, pin , TransactionType.Deposit, accountTypes, amount));
+        TransactionResult actualResult = deposit.perform(new TransactionData(cardNumber, pin , TransactionType.Deposit, accountTypes, amount));
         
         assertEquals(true, actualResult.isSuccessful() );
         assertEquals("", actualResult.getReason() );
-        assertEquals(expectedFees, actualResult.getFees() ,0);
-        assertEquals(initialBalance+amount+expectedFees, actualResult.getAccountBalances()[0] ,0);
+        assertEquals(expectedFeesCents, actualResult.getFeesCents());
+        assertEquals(initialBalance+amount+expectedFeesCents, actualResult.getAccountBalancesCents()[0]);
+    }
+    
+    // Half a cent of interest rounds to even, as in Money.applyRate
+    private static long cents(double expectedBalance) {
+        return (long) Math.rint(expectedBalance);
     }
     
 }
@@ -0,0 +1,113 @@
+package bank.transactions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import bank.db.InMemoryAccountStore;
+import bank.exceptions.CardNotFoundException;
+import bank.exceptions.UnsuccessfulBalanceUpdate;
+import bank.transactions.utils.AccountContext;
+import bank.transactions.utils.AccountType;
+import bank.transactions.utils.TransactionData;
+import bank.transactions.utils.TransactionResult;
+import bank.transactions.utils.TransactionType;
+import bank.utils.FeesCalculator;
+
+public class BankTransactionRetryTest {
+	private static final String CARD = "4000000000000000";
+	private static final char[] PIN = { '5', '5', '5', '5' };
+
+	/**
+	 * Store in which another writer changes the balance right after each of
+	 * the first few contexts is loaded, so the update based on it is stale.
+	 */
+	private static class InterferingStore extends InMemoryAccountStore {
+		private int interferences;
+		private int loads;
+
+		InterferingStore(int interferences) {
+			this.interferences = interferences;
+		}
+
+		@Override
+		public AccountContext getAccountContext(String cardNumber) throws CardNotFoundException {
+			AccountContext context = super.getAccountContext(cardNumber);
+			loads++;
+			if (interferences > 0) {
+				interferences--;
+				try {
+					setBalance(context.getUsername(), AccountType.Chequing, getBalance(context.getUsername(),
+							AccountType.Chequing) + 100);
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return context;
+		}
+	}
+
+	private static InterferingStore store(int interferences) {
+		InterferingStore store = new InterferingStore(interferences);
+		store.addClient("kevin", false);
+		store.addCard(CARD, "kevin", PIN);
+		store.addAccount("kevin", AccountType.Chequing, 10000);
+		return store;
+	}
+
+	private static TransactionData deposit(long amountCents) {
+		return new TransactionData(CARD, PIN, TransactionType.Deposit, new AccountType[] { AccountType.Chequing },
+				amountCents);
+	}
+
+	@Test
+	public void concurrentWriteIsRetriedOnFreshBalances() throws Exception {
+		InterferingStore store = store(1);
+		BankDeposit deposit = new BankDeposit(new FeesCalculator(), store);
+
+		TransactionResult result = deposit.perform(deposit(2000));
+
+		assertTrue(result.isSuccessful());
+		assertEquals(2, store.loads);
+		// Neither the concurrent write nor the deposit is lost
+		long balance = store.getBalance("kevin", AccountType.Chequing);
+		assertEquals(10100 + 2000 + result.getFeesCents(), balance);
+		assertEquals(balance, result.getAccountBalancesCents()[0]);
+	}
+
+	@Test
+	public void attemptsRunOutCleanly() throws Exception {
+		InterferingStore store = store(Integer.MAX_VALUE);
+		BankDeposit deposit = new BankDeposit(new FeesCalculator(), store);
+
+		TransactionResult result = deposit.perform(deposit(2000));
+
+		assertFalse(result.isSuccessful());
+		assertEquals("Account was updated concurrently. Try again.", result.getReason());
+		assertEquals(3, store.loads);
+		// Only the concurrent writes were applied
+		assertEquals(10300, store.getBalance("kevin", AccountType.Chequing));
+	}
+
+	@Test
+	public void failedUpdateIsNotRetried() throws Exception {
+		InMemoryAccountStore store = new InMemoryAccountStore() {
+			@Override
+			public void updateBalance(String user, AccountType type, long expectedBalance, long balance)
+					throws UnsuccessfulBalanceUpdate {
+				throw new UnsuccessfulBalanceUpdate();
+			}
+		};
+		store.addClient("kevin", false);
+		store.addCard(CARD, "kevin", PIN);
+		store.addAccount("kevin", AccountType.Chequing, 10000);
+
+		TransactionResult result = new BankDeposit(new FeesCalculator(), store).perform(deposit(2000));
+
+		assertFalse(result.isSuccessful());
+		assertEquals("Unsuccessful update of account balance.", result.getReason());
+		assertEquals(10000, store.getBalance("kevin", AccountType.Chequing));
+	}
+}
@@ -5,11 +5,13 @@ import bank.db.DBHandler;
 import bank.exceptions.CardNotFoundException;
 import bank.exceptions.UnsuccessfulBalanceUpdate;
 import bank.exceptions.UserNotFoundException;
+import bank.transactions.utils.AccountContext;
 import bank.transactions.utils.AccountType;
 import bank.transactions.utils.TransactionData;
 import bank.transactions.utils.TransactionResult;
 import bank.transactions.utils.TransactionType;
 import bank.utils.FeesCalculator;
+import bank.utils.Money;
 
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -58,15 +60,13 @@ public class BankTransferTest {
 	//test with two stubs
 	@ParameterizedTest
 	@MethodSource("transferData")
-	public void FeesCalculatorTransferTest_two(double amount, double fromAccountBalance, double toAccountBalance,
-			boolean student, double transferFee) throws UserNotFoundException, UnsuccessfulBalanceUpdate {
+	public void FeesCalculatorTransferTest_two(long amount, long fromAccountBalance, long toAccountBalance,
+			boolean student, double transferFee) throws CardNotFoundException, UserNotFoundException, UnsuccessfulBalanceUpdate {
 	
-		when(dbHandler.isStudent(username)).thenReturn(true);
-		when(feesCalculator.calculateTransferFee(amount, fromAccountBalance, toAccountBalance, student))
-				.thenReturn(transferFee * amount);
-		when(dbHandler.getBalance(username, accounts[0])).thenReturn(fromAccountBalance);
-
-		when(dbHandler.getBalance(username, accounts[1])).thenReturn(toAccountBalance);
+		when(feesCalculator.calculateTransferFeeCents(amount, fromAccountBalance, toAccountBalance, student))
+				.thenReturn(Money.applyRate(amount, transferFee));
+		when(dbHandler.getAccountContext(cardNumber)).thenReturn(new AccountContext(cardNumber, username, pin, true)
+				.withBalance(accounts[0], fromAccountBalance).withBalance(accounts[1], toAccountBalance));
 		
 		dbHandler.setBalance(username, accounts[0], fromAccountBalance);
 		dbHandler.setBalance(username, accounts[1], toAccountBalance);
@@ -75,8 +75,8 @@ public class BankTransferTest {
 		TransactionData tdObject = new TransactionData(cardNumber, pin, TransactionType.Transfer, accounts, amount);
 		TransactionResult result = btObject.perform(tdObject);
 
-		double expectedFee = transferFee * amount;
-		double actualFee = result.getFees();
+		long expectedFee = Money.applyRate(amount, transferFee);
+		long actualFee = result.getFeesCents();
 
 		// test
 		assertEquals(true, result.isSuccessful() );
@@ -87,15 +87,13 @@ public class BankTransferTest {
 //test with two stubs
 	@ParameterizedTest
 	@MethodSource("transferData")
-	public void TransferBalanceTest_two(double amount, double fromAccountBalance, double toAccountBalance,
-			boolean student, double transferFee) throws UserNotFoundException, UnsuccessfulBalanceUpdate {
+	public void TransferBalanceTest_two(long amount, long fromAccountBalance, long toAccountBalance,
+			boolean student, double transferFee) throws CardNotFoundException, UserNotFoundException, UnsuccessfulBalanceUpdate {
 		
-		when(dbHandler.isStudent(username)).thenReturn(true);
-		when(feesCalculator.calculateTransferFee(amount, fromAccountBalance, toAccountBalance, student))
-				.thenReturn(transferFee * amount);
-		when(dbHandler.getBalance(username, accounts[0])).thenReturn(fromAccountBalance);
-
-		when(dbHandler.getBalance(username, accounts[1])).thenReturn(toAccountBalance);
+		when(feesCalculator.calculateTransferFeeCents(amount, fromAccountBalance, toAccountBalance, student))
+				.thenReturn(Money.applyRate(amount, transferFee));
+		when(dbHandler.getAccountContext(cardNumber)).thenReturn(new AccountContext(cardNumber, username, pin, true)
+				.withBalance(accounts[0], fromAccountBalance).withBalance(accounts[1], toAccountBalance));
 		dbHandler.setBalance(username, accounts[0], fromAccountBalance);
 		dbHandler.setBalance(username, accounts[1], toAccountBalance);
 		
@@ -104,11 +102,11 @@ public class BankTransferTest {
 		TransactionData tdObject = new TransactionData(cardNumber, pin, TransactionType.Transfer, accounts, amount);
 		TransactionResult result = btObject.perform(tdObject);
 
-		double senderExpectedFee = fromAccountBalance - amount- (transferFee * amount);
-		double recieverExpectedFee = toAccountBalance + amount ;
+		long senderExpectedFee = fromAccountBalance - amount - Money.applyRate(amount, transferFee);
+		long recieverExpectedFee = toAccountBalance + amount ;
 
-		double senderActualFee = result.getAccountBalances()[0];
-		double recieverActualFee = result.getAccountBalances()[1];
+		long senderActualFee = result.getAccountBalancesCents()[0];
+		long recieverActualFee = result.getAccountBalancesCents()[1];
 
 		// test
 		assertEquals(true, result.isSuccessful() );
@@ -119,15 +117,12 @@ public class BankTransferTest {
 //test with one stub
 	@ParameterizedTest
 	@MethodSource("transferData")
-	public void FeesCalculatorTransferTest_one(double amount, double fromAccountBalance, double toAccountBalance,
-			boolean student, double transferFee) throws UserNotFoundException, UnsuccessfulBalanceUpdate {
+	public void FeesCalculatorTransferTest_one(long amount, long fromAccountBalance, long toAccountBalance,
+			boolean student, double transferFee) throws CardNotFoundException, UserNotFoundException, UnsuccessfulBalanceUpdate {
 		feesCalculator = new FeesCalculator();//use real fees calculator obj
 		//mock db
-		when(dbHandler.isStudent(username)).thenReturn(true);
-		
-		when(dbHandler.getBalance(username, accounts[0])).thenReturn(fromAccountBalance);
-
-		when(dbHandler.getBalance(username, accounts[1])).thenReturn(toAccountBalance);
+		when(dbHandler.getAccountContext(cardNumber)).thenReturn(new AccountContext(cardNumber, username, pin, true)
+				.withBalance(accounts[0], fromAccountBalance).withBalance(accounts[1], toAccountBalance));
 		dbHandler.setBalance(username, accounts[0], fromAccountBalance);
 		dbHandler.setBalance(username, accounts[1], toAccountBalance);
 		
@@ -135,8 +130,8 @@ public class BankTransferTest {
 		TransactionData tdObject = new TransactionData(cardNumber, pin, TransactionType.Transfer, accounts, amount);
 		TransactionResult result = btObject.perform(tdObject);
 
-		double expectedFee = transferFee * amount;
-		double actualFee = result.getFees();
+		long expectedFee = Money.applyRate(amount, transferFee);
+		long actualFee = result.getFeesCents();
 
 		// test
 		assertEquals(true, result.isSuccessful() );
@@ -148,15 +143,12 @@ public class BankTransferTest {
 
 	@ParameterizedTest
 	@MethodSource("transferData")
-	public void TransferBalanceTest_one(double amount, double fromAccountBalance, double toAccountBalance,
-			boolean student, double transferFee) throws UserNotFoundException, UnsuccessfulBalanceUpdate {
+	public void TransferBalanceTest_one(long amount, long fromAccountBalance, long toAccountBalance,
+			boolean student, double transferFee) throws CardNotFoundException, UserNotFoundException, UnsuccessfulBalanceUpdate {
 		feesCalculator = new FeesCalculator();//use real fees calculator obj
 		//mock db
-		when(dbHandler.isStudent(username)).thenReturn(true);
-		
-		when(dbHandler.getBalance(username, accounts[0])).thenReturn(fromAccountBalance);
-
-		when(dbHandler.getBalance(username, accounts[1])).thenReturn(toAccountBalance);
+		when(dbHandler.getAccountContext(cardNumber)).thenReturn(new AccountContext(cardNumber, username, pin, true)
+				.withBalance(accounts[0], fromAccountBalance).withBalance(accounts[1], toAccountBalance));
 		dbHandler.setBalance(username, accounts[0], fromAccountBalance);
 		dbHandler.setBalance(username, accounts[1], toAccountBalance);
 		
@@ -164,11 +156,11 @@ public class BankTransferTest {
 		TransactionData tdObject = new TransactionData(cardNumber, pin, TransactionType.Transfer, accounts, amount);
 		TransactionResult result = btObject.perform(tdObject);
 
-		double senderExpectedFee = fromAccountBalance - amount- (transferFee * amount);
-		double recieverExpectedFee = toAccountBalance + amount ;
+		long senderExpectedFee = fromAccountBalance - amount - Money.applyRate(amount, transferFee);
+		long recieverExpectedFee = toAccountBalance + amount ;
 
-		double senderActualFee = result.getAccountBalances()[0];
-		double recieverActualFee = result.getAccountBalances()[1];
+		long senderActualFee = result.getAccountBalancesCents()[0];
+		long recieverActualFee = result.getAccountBalancesCents()[1];
 
 		// test
 		assertEquals(true, result.isSuccessful() );
@@ -185,8 +177,8 @@ public class BankTransferTest {
 	//test data
 	   private static Stream<Arguments> transferData() {
 	        return Stream.of(
-	                Arguments.of(50, 100, 100, true, 0.01),
-	                Arguments.of(50, 100, 10001, true, 0.005)
+	                Arguments.of(5000, 10000, 10000, true, 0.01),
+	                Arguments.of(5000, 10000, 1000100, true, 0.005)
 	              
 	                
 	          
@@ -10,6 +10,7 @@ import bank.transactions.utils.TransactionData;
 import bank.transactions.utils.TransactionResult;
 import bank.transactions.utils.TransactionType;
 import bank.utils.FeesCalculator;
+import bank.utils.Money;
 
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -39,8 +40,8 @@ public class BankTransferTestNoStubs {
 	private String username = "kevin";
 	private final String cardNumber = "4000000000000000";
 	private final char[] pin = { '5', '5', '5', '5' };
-	private double senBalance;
-	private double recBalance;
+	private long senBalance;
+	private long recBalance;
 
 	private final AccountType[] accounts = { AccountType.Chequing, AccountType.Savings };
 
@@ -56,7 +57,7 @@ public class BankTransferTestNoStubs {
 	//test with no stubs
 	@ParameterizedTest
 	@MethodSource("transferData")
-	public void FeesCalculatorTransferTest_none(double amount, double fromAccountBalance, double toAccountBalance,
+	public void FeesCalculatorTransferTest_none(long amount, long fromAccountBalance, long toAccountBalance,
 			boolean student, double transferFee) throws UserNotFoundException, UnsuccessfulBalanceUpdate {
 		feesCalculator = new FeesCalculator(); // feesCalculator stub is switched out for the real one
 
@@ -70,8 +71,8 @@ public class BankTransferTestNoStubs {
 		TransactionData tdObject = new TransactionData(cardNumber, pin, TransactionType.Transfer, accounts, amount);
 		TransactionResult result = btObject.perform(tdObject);
 
-		double expectedFee = transferFee * amount;
-		double actualFee = result.getFees();
+		long expectedFee = Money.applyRate(amount, transferFee);
+		long actualFee = result.getFeesCents();
 
 		// test
 		assertEquals(true, result.isSuccessful() );
@@ -82,7 +83,7 @@ public class BankTransferTestNoStubs {
 //test with no stubs
 	@ParameterizedTest
 	@MethodSource("transferData")
-	public void TransferBalanceTest_none(double amount, double fromAccountBalance, double toAccountBalance,
+	public void TransferBalanceTest_none(long amount, long fromAccountBalance, long toAccountBalance,
 			boolean student, double transferFee) throws UserNotFoundException, UnsuccessfulBalanceUpdate {
 		
 		dbHandler.setBalance(username, accounts[0], fromAccountBalance);
@@ -93,12 +94,12 @@ public class BankTransferTestNoStubs {
 		TransactionData tdObject = new TransactionData(cardNumber, pin, TransactionType.Transfer, accounts, amount);
 		TransactionResult result = btObject.perform(tdObject);
 
-		double senderExpectedFee = fromAccountBalance - amount- (transferFee * amount);
-		double recieverExpectedFee = toAccountBalance + amount ;
+		long senderExpectedFee = fromAccountBalance - amount - Money.applyRate(amount, transferFee);
+		long recieverExpectedFee = toAccountBalance + amount ;
 		
 		
-		double senderActualFee = result.getAccountBalances()[0];
-		double recieverActualFee = result.getAccountBalances()[1];
+		long senderActualFee = result.getAccountBalancesCents()[0];
+		long recieverActualFee = result.getAccountBalancesCents()[1];
 
 		// test
 		assertEquals(true, result.isSuccessful() );
@@ -119,8 +120,8 @@ public class BankTransferTestNoStubs {
 	//test data
 	   private static Stream<Arguments> transferData() {
 	        return Stream.of(
-	                Arguments.of(50, 100, 100, true, 0.01), 
-	                Arguments.of(50, 100, 10001, true, 0.005)
+	                Arguments.of(5000, 10000, 10000, true, 0.01), 
+	                Arguments.of(5000, 10000, 1000100, true, 0.005)
 	               
 	          
 	                      
@@ -0,0 +1,94 @@
+package bank.transactions.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+public class AccountLocksTest {
+	private static final AccountType[] CHEQUING_TO_SAVINGS = { AccountType.Chequing, AccountType.Savings };
+	private static final AccountType[] SAVINGS_TO_CHEQUING = { AccountType.Savings, AccountType.Chequing };
+
+	@Test
+	public void oneStripeIsOneStripe() {
+		AccountLocks locks = new AccountLocks(1);
+
+		for (AccountType type : AccountType.values()) {
+			assertEquals(0, locks.stripe("kevin", type));
+			assertEquals(0, locks.stripe("maria", type));
+		}
+	}
+
+	@Test
+	public void stripeCountIsRoundedUpToAPowerOfTwo() {
+		AccountLocks locks = new AccountLocks(5);
+		int highest = 0;
+		for (int i = 0; i < 1000; i++) {
+			highest = Math.max(highest, locks.stripe("user" + i, AccountType.Chequing));
+		}
+		assertEquals(7, highest);
+	}
+
+	@Test
+	public void holdsOtherThreadsOffTheLockedAccounts() throws Exception {
+		AccountLocks locks = new AccountLocks(64);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			AtomicBoolean entered = new AtomicBoolean();
+			Future<?> other;
+			try (AccountLocks.Held held = locks.lock("kevin", CHEQUING_TO_SAVINGS)) {
+				other = executor.submit(() -> {
+					try (AccountLocks.Held otherHeld = locks.lock("kevin", new AccountType[] { AccountType.Savings })) {
+						entered.set(true);
+					}
+				});
+				Thread.sleep(100);
+				assertFalse(entered.get());
+			}
+			other.get(5, TimeUnit.SECONDS);
+			assertTrue(entered.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void opposingTransfersDoNotDeadlock() {
+		AccountLocks locks = new AccountLocks(64);
+		int rounds = 100_000;
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			ExecutorService executor = Executors.newFixedThreadPool(2);
+			try {
+				CountDownLatch start = new CountDownLatch(1);
+				Future<?> forward = executor.submit(() -> transfer(locks, CHEQUING_TO_SAVINGS, start, rounds));
+				Future<?> backward = executor.submit(() -> transfer(locks, SAVINGS_TO_CHEQUING, start, rounds));
+				start.countDown();
+				forward.get();
+				backward.get();
+			} finally {
+				executor.shutdownNow();
+			}
+		});
+	}
+
+	private static Void transfer(AccountLocks locks, AccountType[] types, CountDownLatch start, int rounds)
+			throws InterruptedException {
+		start.await();
+		for (int i = 0; i < rounds; i++) {
+			try (AccountLocks.Held held = locks.lock("kevin", types)) {
+				Thread.yield();
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,167 @@
+package bank.transactions.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TransactionCodecTest {
+	private static final int MAX_FRAME_BYTES = 1 << 16;
+	private static final String CARD = "4000000000000000";
+	private static final char[] PIN = { '5', '5', '5', '5' };
+
+	private static TransactionData transfer() {
+		return new TransactionData(CARD, PIN, "token", TransactionType.Transfer,
+				new AccountType[] { AccountType.Chequing, AccountType.Savings }, 1234);
+	}
+
+	private static void assertSameTransaction(TransactionData expected, TransactionData actual) {
+		assertEquals(expected.getCardNumber(), actual.getCardNumber());
+		assertArrayEquals(expected.getPin(), actual.getPin());
+		assertEquals(expected.getToken(), actual.getToken());
+		assertEquals(expected.getType(), actual.getType());
+		assertArrayEquals(expected.getAccounts(), actual.getAccounts());
+		assertEquals(expected.getAmountCents(), actual.getAmountCents());
+	}
+
+	private static ByteBuffer encode(TransactionData data) {
+		ByteBuffer frame = ByteBuffer.allocate(MAX_FRAME_BYTES);
+		TransactionCodec.writeTransaction(frame, data);
+		frame.flip();
+		return frame;
+	}
+
+	@Test
+	public void transactionRoundTrips() {
+		ByteBuffer frame = encode(transfer());
+
+		assertEquals(TransactionCodec.TRANSACTION_REQUEST, TransactionCodec.peekFrame(frame, MAX_FRAME_BYTES));
+		assertEquals(TransactionCodec.TRANSACTION_REQUEST, TransactionCodec.readHeader(frame));
+		assertSameTransaction(transfer(), TransactionCodec.readTransaction(frame));
+		assertFalse(frame.hasRemaining());
+	}
+
+	@Test
+	public void nullFieldsRoundTrip() {
+		TransactionData empty = new TransactionData(null, null, null, null, null, 0);
+		ByteBuffer frame = encode(empty);
+
+		TransactionCodec.readHeader(frame);
+		TransactionData decoded = TransactionCodec.readTransaction(frame);
+		assertNull(decoded.getCardNumber());
+		assertNull(decoded.getPin());
+		assertNull(decoded.getToken());
+		assertNull(decoded.getType());
+		assertNull(decoded.getAccounts());
+	}
+
+	@Test
+	public void batchAndResultsRoundTrip() {
+		ByteBuffer frame = ByteBuffer.allocate(MAX_FRAME_BYTES);
+		TransactionCodec.writeBatch(frame, Arrays.asList(transfer(), transfer()));
+		frame.flip();
+		assertEquals(TransactionCodec.BATCH_REQUEST, TransactionCodec.readHeader(frame));
+		List<TransactionData> batch = TransactionCodec.readBatch(frame);
+		assertEquals(2, batch.size());
+		assertSameTransaction(transfer(), batch.get(1));
+
+		frame.clear();
+		TransactionCodec.writeResults(frame, Arrays.asList(
+				new TransactionResult(true, "", 150, new long[] { 1000, 2025 }),
+				new TransactionResult(false, "Insufficient funds", 0, null)));
+		frame.flip();
+		assertEquals(TransactionCodec.BATCH_RESPONSE, TransactionCodec.readHeader(frame));
+		List<TransactionResult> results = TransactionCodec.readResults(frame);
+		assertTrue(results.get(0).isSuccessful());
+		assertEquals(150, results.get(0).getFeesCents());
+		assertArrayEquals(new long[] { 1000, 2025 }, results.get(0).getAccountBalancesCents());
+		assertFalse(results.get(1).isSuccessful());
+		assertEquals("Insufficient funds", results.get(1).getReason());
+		assertNull(results.get(1).getAccountBalancesCents());
+	}
+
+	@Test
+	public void credentialsRoundTrip() {
+		ByteBuffer frame = ByteBuffer.allocate(MAX_FRAME_BYTES);
+		TransactionCodec.writeCredentials(frame, CARD, PIN);
+		frame.flip();
+		assertEquals(TransactionCodec.CREDENTIALS_REQUEST, TransactionCodec.readHeader(frame));
+		TransactionCodec.Credentials credentials = TransactionCodec.readCredentials(frame);
+		assertEquals(CARD, credentials.getCardNumber());
+		assertArrayEquals(PIN, credentials.getPin());
+
+		frame.clear();
+		TransactionCodec.writeAuthentication(frame, true, "token");
+		frame.flip();
+		assertEquals(TransactionCodec.CREDENTIALS_RESPONSE, TransactionCodec.readHeader(frame));
+		TransactionCodec.Authentication authentication = TransactionCodec.readAuthentication(frame);
+		assertTrue(authentication.isSuccessful());
+		assertEquals("token", authentication.getToken());
+	}
+
+	@Test
+	public void partialFrameIsNotReadYet() {
+		ByteBuffer frame = encode(transfer());
+		int size = frame.remaining();
+
+		for (int cut = 0; cut < size; cut++) {
+			ByteBuffer partial = frame.duplicate();
+			partial.limit(cut);
+			assertEquals(-1, TransactionCodec.peekFrame(partial, MAX_FRAME_BYTES));
+			if (cut >= TransactionCodec.HEADER_BYTES) {
+				assertThrows(IllegalArgumentException.class, () -> TransactionCodec.readHeader(partial));
+			}
+		}
+	}
+
+	@Test
+	public void truncatedPayloadIsRejected() {
+		ByteBuffer frame = encode(transfer());
+		TransactionCodec.readHeader(frame);
+		ByteBuffer payload = frame.slice();
+
+		for (int cut = 0; cut < payload.remaining(); cut++) {
+			ByteBuffer truncated = payload.duplicate();
+			truncated.limit(cut);
+			assertThrows(IllegalArgumentException.class, () -> TransactionCodec.readTransaction(truncated));
+		}
+	}
+
+	@Test
+	public void invalidFramesAreRejected() {
+		ByteBuffer frame = ByteBuffer.allocate(16);
+		frame.putInt(0, MAX_FRAME_BYTES + 1);
+		assertThrows(IllegalArgumentException.class, () -> TransactionCodec.peekFrame(frame, MAX_FRAME_BYTES));
+
+		ByteBuffer batch = ByteBuffer.allocate(8);
+		batch.putInt(0, Integer.MAX_VALUE);
+		assertThrows(IllegalArgumentException.class, () -> TransactionCodec.readBatch(batch));
+
+		ByteBuffer unknownType = encode(transfer());
+		TransactionCodec.readHeader(unknownType);
+		// The type byte follows the card number, PIN and token
+		int typeOffset = unknownType.position() + 2 + CARD.length() + 2 + PIN.length + 2 + "token".length();
+		unknownType.put(typeOffset, (byte) TransactionType.values().length);
+		assertThrows(IllegalArgumentException.class, () -> TransactionCodec.readTransaction(unknownType));
+	}
+
+	@Test
+	public void oversizedFieldsAreRejected() {
+		char[] tooLong = new char[Short.MAX_VALUE + 1];
+		Arrays.fill(tooLong, '4');
+		ByteBuffer frame = ByteBuffer.allocate(4 * MAX_FRAME_BYTES);
+		assertThrows(IllegalArgumentException.class,
+				() -> TransactionCodec.writeCredentials(frame, new String(tooLong), PIN));
+		assertThrows(IllegalArgumentException.class, () -> TransactionCodec.writeCredentials(frame, CARD, tooLong));
+		assertThrows(IllegalArgumentException.class,
+				() -> TransactionCodec.writeResult(frame, new TransactionResult(false, new String(tooLong), 0, null)));
+	}
+}
@@ -0,0 +1,80 @@
+package bank.transactions.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+public class TransactionJsonTest {
+	private final Gson gson = TransactionJson.gson();
+
+	@Test
+	public void transactionKeepsTheAmountInUnits() {
+		TransactionData data = new TransactionData("4000000000000000", new char[] { '5', '5', '5', '5' }, "token",
+				TransactionType.Transfer, new AccountType[] { AccountType.Chequing, AccountType.Savings }, 1234);
+
+		String json = gson.toJson(data);
+		assertTrue(json.contains("\"amount\":12.34"), json);
+		assertFalse(json.contains("amountCents"), json);
+
+		TransactionData decoded = gson.fromJson(json, TransactionData.class);
+		assertEquals(data.getCardNumber(), decoded.getCardNumber());
+		assertArrayEquals(data.getPin(), decoded.getPin());
+		assertEquals(data.getToken(), decoded.getToken());
+		assertEquals(data.getType(), decoded.getType());
+		assertArrayEquals(data.getAccounts(), decoded.getAccounts());
+		assertEquals(1234, decoded.getAmountCents());
+	}
+
+	@Test
+	public void amountIsReadInUnitsOrCents() {
+		assertEquals(2000, gson.fromJson("{\"amount\":20}", TransactionData.class).getAmountCents());
+		assertEquals(2000, gson.fromJson("{\"amountCents\":2000}", TransactionData.class).getAmountCents());
+		assertFalse(gson.fromJson("{\"type\":\"Deposit\"}", TransactionData.class).hasAmount());
+		assertTrue(gson.fromJson("{\"amount\":0}", TransactionData.class).hasAmount());
+	}
+
+	@Test
+	public void fractionOfACentIsRejected() {
+		assertThrows(JsonSyntaxException.class, () -> gson.fromJson("{\"amount\":0.004}", TransactionData.class));
+		assertThrows(JsonSyntaxException.class, () -> gson.fromJson("{\"amountCents\":0.4}", TransactionData.class));
+	}
+
+	@Test
+	public void resultKeepsFeesAndBalancesInUnits() {
+		String json = gson.toJson(new TransactionResult(true, "", 150, new long[] { 1000, 2025 }));
+		assertTrue(json.contains("\"fees\":1.50"), json);
+		assertTrue(json.contains("\"accountBalances\":[10.00,20.25]"), json);
+
+		TransactionResult decoded = gson.fromJson(json, TransactionResult.class);
+		assertTrue(decoded.isSuccessful());
+		assertEquals(150, decoded.getFeesCents());
+		assertArrayEquals(new long[] { 1000, 2025 }, decoded.getAccountBalancesCents());
+
+		TransactionResult failed = gson.fromJson(gson.toJson(new TransactionResult(false, "No", 0, null)),
+				TransactionResult.class);
+		assertEquals("No", failed.getReason());
+		assertNull(failed.getAccountBalancesCents());
+	}
+
+	@Test
+	public void resultIsReadInCentsOrRoundedFromUnits() {
+		TransactionResult cents = gson.fromJson("{\"successful\":true,\"feesCents\":5,\"accountBalancesCents\":[96897]}",
+				TransactionResult.class);
+		assertEquals(5, cents.getFeesCents());
+		assertArrayEquals(new long[] { 96897 }, cents.getAccountBalancesCents());
+
+		// An older bank may report fractions of a cent
+		TransactionResult units = gson.fromJson("{\"successful\":true,\"fees\":0.505,\"accountBalances\":[968.965]}",
+				TransactionResult.class);
+		assertEquals(50, units.getFeesCents());
+		assertArrayEquals(new long[] { 96896 }, units.getAccountBalancesCents());
+	}
+}
@@ -5,6 +5,7 @@ import bank.exceptions.CardNotFoundException;
 import bank.exceptions.UnsuccessfulBalanceUpdate;
 import bank.exceptions.UserNotFoundException;
 import bank.transactions.BankWithdrawal;
+import bank.transactions.utils.AccountContext;
 import bank.transactions.utils.AccountType;
 import bank.transactions.utils.TransactionData;
 import bank.transactions.utils.TransactionResult;
@@ -46,12 +47,11 @@ public class DBMockTest {
 
     @ParameterizedTest(name = "[{index}] - {0} | {1} | {2} | {3} | {4} | {5} ")
     @MethodSource("withdrawalData")
-    public void dbMocked(double amount, double balance, boolean isStudent, int dayOfWeek, double expectedFees, double expectedBalance) throws UserNotFoundException, UnsuccessfulBalanceUpdate, CardNotFoundException {
+    public void dbMocked(long amount, long balance, boolean isStudent, int dayOfWeek, long expectedFees, long expectedBalance) throws UserNotFoundException, UnsuccessfulBalanceUpdate, CardNotFoundException {
 
         // Creating Stubs
-        when(dbHandler.getCardOwner(cardNumber)).thenReturn(username);
-        when(dbHandler.getBalance(username, accountTypes[0])).thenReturn(balance);
-        when(dbHandler.isStudent(username)).thenReturn(isStudent);
+        when(dbHandler.getAccountContext(cardNumber))
+                .thenReturn(new AccountContext(cardNumber, username, pin, isStudent).withBalance(accountTypes[0], balance));
         doNothing().when(dbHandler).setBalance(username,accountTypes[0],balance);
 
         withdrawal = spy(new BankWithdrawal(feesCalculator, dbHandler));
@@ -60,13 +60,13 @@ public class DBMockTest {
         // Making Calls
         TransactionData transactionData = new TransactionData(cardNumber, pin, TransactionType.Withdrawal, accountTypes, amount);
         TransactionResult actualResult = withdrawal.perform(transactionData);
-        TransactionResult expectedResult = new TransactionResult(true, "", expectedFees, new double[]{expectedBalance});
+        TransactionResult expectedResult = new TransactionResult(true, "", expectedFees, new long[]{expectedBalance});
 
         // Compare Results
         assertTrue(actualResult.isSuccessful());
         assertEquals("", actualResult.getReason() );
-        assertEquals(expectedFees, actualResult.getFees() ,0);
-        assertEquals(expectedResult.getAccountBalances()[0], actualResult.getAccountBalances()[0]);
+        assertEquals(expectedFees, actualResult.getFeesCents());
+        assertEquals(expectedResult.getAccountBalancesCents()[0], actualResult.getAccountBalancesCents()[0]);
 
     }
 
@@ -78,12 +78,12 @@ public class DBMockTest {
 
     private static Stream<Arguments> withdrawalData() {
         return Stream.of(
-                Arguments.of(50, 1000, true, Calendar.SATURDAY, 0, 950),               // Test 1
-                Arguments.of(50, 1000, true, Calendar.WEDNESDAY, 0.05, 949.95),        // Test 2
-                Arguments.of(50, 1000, false, Calendar.SUNDAY, 0.05, 949.95),          // Test 3
-                Arguments.of(50, 999, false, Calendar.FRIDAY, 0.1, 948.90),            // Test 4
-                Arguments.of(50, 1001, false, Calendar.FRIDAY, 0.05, 950.95),          // Test 5
-                Arguments.of(50, 10001, false, Calendar.FRIDAY, 0, 9951)               // Test 6
+                Arguments.of(5000, 100000, true, Calendar.SATURDAY, 0, 95000),         // Test 1
+                Arguments.of(5000, 100000, true, Calendar.WEDNESDAY, 5, 94995),        // Test 2
+                Arguments.of(5000, 100000, false, Calendar.SUNDAY, 5, 94995),          // Test 3
+                Arguments.of(5000, 99900, false, Calendar.FRIDAY, 10, 94890),          // Test 4
+                Arguments.of(5000, 100100, false, Calendar.FRIDAY, 5, 95095),          // Test 5
+                Arguments.of(5000, 1000100, false, Calendar.FRIDAY, 0, 995100)         // Test 6
         );
     }
 }
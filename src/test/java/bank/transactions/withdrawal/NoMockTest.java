@@ -36,7 +36,7 @@ public class NoMockTest {
     private DBHandler dbHandler;
     private BankWithdrawal withdrawal;
     private String user;
-    private double prevBalance;
+    private long prevBalance;
     private final String cardNumber = "4000000000000000";
     private final char[] pin = {'5', '5', '5', '5'};
     private final AccountType[] accountTypes = { AccountType.Chequing };
@@ -51,7 +51,7 @@ public class NoMockTest {
 
     @ParameterizedTest(name = "[{index}] - {0} | {1} | {2} | {3} | {4} ")
     @MethodSource("withdrawalData")
-    public void noMocks(double amount, double balance, int dayOfWeek, double expectedFees, double expectedBalance) throws  UnsuccessfulBalanceUpdate, CardNotFoundException {
+    public void noMocks(long amount, long balance, int dayOfWeek, long expectedFees, long expectedBalance) throws  UnsuccessfulBalanceUpdate, CardNotFoundException {
         // Creating Stubs
         dbHandler.setBalance(user, accountTypes[0], balance);
 
@@ -61,13 +61,13 @@ public class NoMockTest {
         // Making Calls
         TransactionData transactionData = new TransactionData(cardNumber, pin, TransactionType.Withdrawal, accountTypes, amount);
         TransactionResult actualResult = withdrawal.perform(transactionData);
-        TransactionResult expectedResult = new TransactionResult(true, "", expectedFees, new double[]{expectedBalance});
+        TransactionResult expectedResult = new TransactionResult(true, "", expectedFees, new long[]{expectedBalance});
 
         // Compare Results
         assertTrue(actualResult.isSuccessful());
         assertEquals("", actualResult.getReason() );
-        assertEquals(expectedFees, actualResult.getFees() ,0);
-        assertEquals(expectedResult.getAccountBalances()[0], actualResult.getAccountBalances()[0]);
+        assertEquals(expectedFees, actualResult.getFeesCents());
+        assertEquals(expectedResult.getAccountBalancesCents()[0], actualResult.getAccountBalancesCents()[0]);
     }
 
     @AfterAll
@@ -81,8 +81,8 @@ public class NoMockTest {
 
     private static Stream<Arguments> withdrawalData() {
         return Stream.of(
-                Arguments.of(50, 1000, Calendar.SATURDAY, 0, 950),               // Test 1
-                Arguments.of(50, 1000, Calendar.WEDNESDAY, 0.05, 949.95)        // Test 2
+                Arguments.of(5000, 100000, Calendar.SATURDAY, 0, 95000),        // Test 1
+                Arguments.of(5000, 100000, Calendar.WEDNESDAY, 5, 94995)        // Test 2
         );
     }
 }
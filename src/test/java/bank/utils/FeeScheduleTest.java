@@ -0,0 +1,62 @@
+package bank.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Paths;
+import java.util.Calendar;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+public class FeeScheduleTest {
+	private static final double[] VALUES = { 0.0, 50.0, 100.0, 150.0, 500.0, 600.0, 999.99, 1000.0, 5000.0,
+			5000.01, 10000.0, 10000.01 };
+
+	@Test
+	public void shippedScheduleMatchesDefault() throws Exception {
+		FeeSchedule shipped = FeeSchedule.load(Paths.get("fees.properties"));
+		FeeSchedule defaults = FeeSchedule.DEFAULT;
+
+		for (boolean student : new boolean[] { false, true }) {
+			for (double amount : VALUES) {
+				for (double balance : VALUES) {
+					assertEquals(defaults.calculateWithdrawalFee(amount, balance, student, Calendar.MONDAY),
+							shipped.calculateWithdrawalFee(amount, balance, student, Calendar.MONDAY));
+					assertEquals(defaults.calculateWithdrawalFee(amount, balance, student, Calendar.SUNDAY),
+							shipped.calculateWithdrawalFee(amount, balance, student, Calendar.SUNDAY));
+					assertEquals(defaults.calculateDepositInterest(amount, balance, student),
+							shipped.calculateDepositInterest(amount, balance, student));
+					for (double to : VALUES) {
+						assertEquals(defaults.calculateTransferFee(amount, balance, to, student),
+								shipped.calculateTransferFee(amount, balance, to, student));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void rulesOverrideDefaults() {
+		Properties properties = new Properties();
+		properties.setProperty("transfer.smallAmount", "200.00");
+		properties.setProperty("transfer.largeRates", "0.04, 0.05, 0.005, 0.01");
+		FeesCalculator feesCalculator = new FeesCalculator();
+
+		assertEquals(150.0 * 0.055, feesCalculator.calculateTransferFee(150.0, 2000.0, 2000.0, false));
+		feesCalculator.setSchedule(FeeSchedule.fromProperties(properties));
+		assertEquals(150.0 * 0.05, feesCalculator.calculateTransferFee(150.0, 2000.0, 2000.0, false));
+		assertEquals(250.0 * 0.04, feesCalculator.calculateTransferFee(250.0, 2000.0, 2000.0, false));
+		assertEquals(600.0 * 0.01, feesCalculator.calculateDepositInterest(600.0, 6000.0, false));
+	}
+
+	@Test
+	public void malformedRulesAreRejected() {
+		Properties properties = new Properties();
+		properties.setProperty("withdrawal.rates", "0.002, 0.001");
+		assertThrows(IllegalArgumentException.class, () -> FeeSchedule.fromProperties(properties));
+
+		properties.setProperty("withdrawal.rates", "0.002, 0.001, abc");
+		assertThrows(IllegalArgumentException.class, () -> FeeSchedule.fromProperties(properties));
+	}
+}
@@ -0,0 +1,189 @@
+package bank.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Calendar;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the table-driven FeesCalculator returns exactly what the
+ * original nested if/else implementation, kept below, returns for every
+ * combination of values around each threshold. The cents variants must
+ * apply the same rate, rounded to the cent.
+ */
+public class FeesCalculatorTableTest {
+	private static final double[] VALUES = {
+			Double.NEGATIVE_INFINITY, -1000.0, -0.01, 0.0, 0.01, 50.0,
+			99.99, 100.0, 100.01, 499.99, 500.0, 500.01,
+			999.99, 1000.0, 1000.01, 4999.99, 5000.0, 5000.01,
+			9999.99, 10000.0, 10000.01, 1e9, Double.POSITIVE_INFINITY, Double.NaN,
+	};
+	private static final long[] CENTS = {
+			-Money.MAX_CENTS, -100000, -1, 0, 1, 5000,
+			9999, 10000, 10001, 49999, 50000, 50001,
+			99999, 100000, 100001, 499999, 500000, 500001,
+			999999, 1000000, 1000001, 100000000000L, Money.MAX_CENTS,
+	};
+	private static final boolean[] STUDENT = { false, true };
+
+	private final FeesCalculator feesCalculator = new FeesCalculator();
+
+	@Test
+	public void withdrawalFeesMatchOriginal() {
+		for (boolean student : STUDENT) {
+			for (int day = 0; day <= 8; day++) {
+				for (double amount : VALUES) {
+					for (double balance : VALUES) {
+						assertEquals(amount * originalWithdrawalRate(amount, balance, student, day),
+								feesCalculator.calculateWithdrawalFee(amount, balance, student, day));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void depositInterestMatchesOriginal() {
+		for (boolean student : STUDENT) {
+			for (double amount : VALUES) {
+				for (double balance : VALUES) {
+					assertEquals(amount * originalDepositRate(amount, balance, student),
+							feesCalculator.calculateDepositInterest(amount, balance, student));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void transferFeesMatchOriginal() {
+		for (boolean student : STUDENT) {
+			for (double amount : VALUES) {
+				for (double from : VALUES) {
+					for (double to : VALUES) {
+						assertEquals(amount * originalTransferRate(amount, from, to, student),
+								feesCalculator.calculateTransferFee(amount, from, to, student));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void withdrawalFeesInCentsMatchOriginal() {
+		for (boolean student : STUDENT) {
+			for (int day = 0; day <= 8; day++) {
+				for (long amount : CENTS) {
+					for (long balance : CENTS) {
+						double rate = originalWithdrawalRate(Money.toDouble(amount), Money.toDouble(balance), student,
+								day);
+						assertEquals(Money.applyRate(amount, rate),
+								feesCalculator.calculateWithdrawalFeeCents(amount, balance, student, day));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void depositInterestInCentsMatchesOriginal() {
+		for (boolean student : STUDENT) {
+			for (long amount : CENTS) {
+				for (long balance : CENTS) {
+					double rate = originalDepositRate(Money.toDouble(amount), Money.toDouble(balance), student);
+					assertEquals(Money.applyRate(amount, rate),
+							feesCalculator.calculateDepositInterestCents(amount, balance, student));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void transferFeesInCentsMatchOriginal() {
+		for (boolean student : STUDENT) {
+			for (long amount : CENTS) {
+				for (long from : CENTS) {
+					for (long to : CENTS) {
+						double rate = originalTransferRate(Money.toDouble(amount), Money.toDouble(from),
+								Money.toDouble(to), student);
+						assertEquals(Money.applyRate(amount, rate),
+								feesCalculator.calculateTransferFeeCents(amount, from, to, student));
+					}
+				}
+			}
+		}
+	}
+
+	private static double originalWithdrawalRate(double amount, double accountBalance, boolean student, int dayOfWeek) {
+		double feePercentage;
+		if (student) {
+			if ((dayOfWeek == Calendar.SATURDAY) || (dayOfWeek == Calendar.SUNDAY)) {
+				feePercentage = 0.0;
+			} else {
+				feePercentage = 0.001;
+			}
+		} else {
+			if (accountBalance < 1000.00) {
+				feePercentage = 0.002;
+			} else if (accountBalance < 10000.00) {
+				feePercentage = 0.001;
+			} else {
+				feePercentage = 0.0;
+			}
+		}
+		return feePercentage;
+	}
+
+	private static double originalDepositRate(double amount, double accountBalance, boolean student) {
+		double interestPercentage;
+		if (student) {
+			if (amount > 100.00) {
+				interestPercentage = accountBalance > 1000.00 ? 0.01 : 0.005;
+			} else {
+				interestPercentage = accountBalance > 5000.00 ? 0.005 : 0.00;
+			}
+		} else {
+			if (amount > 500.00) {
+				interestPercentage = accountBalance > 5000.00 ? 0.01 : 0.005;
+			} else {
+				interestPercentage = accountBalance > 10000.00 ? 0.005 : 0.0;
+			}
+		}
+		return interestPercentage;
+	}
+
+	private static double originalTransferRate(double amount, double fromAccountBalance, double toAccountBalance,
+			boolean student) {
+		double feePercentage;
+		if (student) {
+			if (amount < 100.00) {
+				if (fromAccountBalance < 1000.00) {
+					feePercentage = toAccountBalance < 1000.00 ? 0.01 : 0.005;
+				} else {
+					feePercentage = toAccountBalance < 1000.00 ? 0.05 : 0.025;
+				}
+			} else {
+				if (fromAccountBalance < 1000.00) {
+					feePercentage = toAccountBalance < 1000.00 ? 0.005 : 0.0025;
+				} else {
+					feePercentage = toAccountBalance < 1000.00 ? 0.025 : 0.0125;
+				}
+			}
+		} else {
+			if (amount < 100.00) {
+				if (fromAccountBalance < 1000.00) {
+					feePercentage = toAccountBalance < 1000.00 ? 0.02 : 0.01;
+				} else {
+					feePercentage = toAccountBalance < 1000.00 ? 0.1 : 0.05;
+				}
+			} else {
+				if (fromAccountBalance < 1000.00) {
+					feePercentage = toAccountBalance < 1000.00 ? 0.01 : 0.005;
+				} else {
+					feePercentage = toAccountBalance < 1000.00 ? 0.05 : 0.055;
+				}
+			}
+		}
+		return feePercentage;
+	}
+}
@@ -0,0 +1,69 @@
+package bank.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import bank.db.InMemoryAccountStore;
+import bank.transactions.BankDeposit;
+import bank.transactions.utils.AccountType;
+import bank.transactions.utils.TransactionData;
+import bank.transactions.utils.TransactionType;
+
+public class MoneyTest {
+	@Test
+	public void parsesWholeCents() {
+		assertEquals(1099, Money.parse("10.99"));
+		assertEquals(-1, Money.parse("-0.01"));
+		assertEquals(1000, Money.parse("10"));
+		assertEquals(1230, Money.parse(" 12.300 "));
+	}
+
+	@Test
+	public void rejectsAmountsWithoutExactCents() {
+		assertThrows(IllegalArgumentException.class, () -> Money.parse("0.004"));
+		assertThrows(IllegalArgumentException.class, () -> Money.parse("1e15"));
+		assertThrows(IllegalArgumentException.class, () -> Money.parse("NaN"));
+		assertThrows(IllegalArgumentException.class, () -> Money.parse("ten"));
+		assertTrue(Money.isValid(Money.MAX_CENTS));
+		assertFalse(Money.isValid(Money.MAX_CENTS + 1));
+	}
+
+	@Test
+	public void ratesRoundToNearestCent() {
+		assertEquals(10, Money.applyRate(1000, 0.01));
+		// Half a cent rounds to even
+		assertEquals(12, Money.applyRate(1250, 0.01));
+		assertEquals(14, Money.applyRate(1350, 0.01));
+	}
+
+	@Test
+	public void formatsTwoDecimals() {
+		assertEquals("12.30", Money.format(1230));
+		assertEquals("0.05", Money.format(5));
+		assertEquals("-0.05", Money.format(-5));
+		assertEquals("-12.00", Money.format(-1200));
+	}
+
+	@Test
+	public void repeatedDepositsDoNotDrift() throws Exception {
+		InMemoryAccountStore store = new InMemoryAccountStore();
+		store.addClient("kevin", false);
+		store.addCard("4000000000000000", "kevin", new char[] { '5', '5', '5', '5' });
+		store.addAccount("kevin", AccountType.Chequing, 0);
+		BankDeposit deposit = new BankDeposit(new FeesCalculator(), store);
+
+		double naive = 0.0;
+		for (int i = 0; i < 1000; i++) {
+			deposit.perform(new TransactionData("4000000000000000", new char[] { '5', '5', '5', '5' },
+					TransactionType.Deposit, new AccountType[] { AccountType.Chequing }, 10));
+			naive += 0.1;
+		}
+
+		assertEquals(10000, store.getAccountContext("4000000000000000").getBalance(AccountType.Chequing));
+		assertTrue(naive != 100.0);
+	}
+}
@@ -0,0 +1,70 @@
+package bank.utils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+public class SessionTokensTest {
+	private static final String CARD = "4000000000000000";
+
+	@Test
+	public void verifiesItsOwnTokenForTheSameCard() {
+		SessionTokens tokens = new SessionTokens(60_000);
+		String token = tokens.issue(CARD);
+
+		assertTrue(tokens.verify(token, CARD));
+		assertFalse(tokens.verify(token, "4000000000000001"));
+		assertFalse(new SessionTokens(60_000).verify(token, CARD));
+	}
+
+	@Test
+	public void rejectsExpiredToken() throws Exception {
+		SessionTokens tokens = new SessionTokens(20);
+		String token = tokens.issue(CARD);
+
+		Thread.sleep(50);
+		assertFalse(tokens.verify(token, CARD));
+
+		SessionTokens expired = new SessionTokens(-1);
+		assertFalse(expired.verify(expired.issue(CARD), CARD));
+	}
+
+	@Test
+	public void rejectsTamperedPayload() {
+		SessionTokens tokens = new SessionTokens(20);
+		String token = tokens.issue(CARD);
+		String signature = token.substring(token.indexOf('.') + 1);
+
+		// Pushing the expiry out keeps the old signature, which no longer matches
+		String payload = CARD + ":" + (System.currentTimeMillis() + 3_600_000);
+		String extended = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "." + signature;
+		assertFalse(tokens.verify(extended, CARD));
+	}
+
+	@Test
+	public void rejectsTamperedSignature() {
+		SessionTokens tokens = new SessionTokens(60_000);
+		String token = tokens.issue(CARD);
+		char last = token.charAt(token.length() - 2);
+		String tampered = token.substring(0, token.length() - 2) + (last == 'A' ? 'B' : 'A')
+				+ token.charAt(token.length() - 1);
+
+		assertFalse(tokens.verify(tampered, CARD));
+		assertFalse(tokens.verify(token.substring(0, token.indexOf('.') + 1), CARD));
+	}
+
+	@Test
+	public void rejectsMalformedToken() {
+		SessionTokens tokens = new SessionTokens(60_000);
+
+		assertFalse(tokens.verify(null, CARD));
+		assertFalse(tokens.verify(tokens.issue(CARD), null));
+		assertFalse(tokens.verify("no-dot", CARD));
+		assertFalse(tokens.verify("not base64!.also not", CARD));
+	}
+}